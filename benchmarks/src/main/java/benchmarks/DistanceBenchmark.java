@@ -0,0 +1,51 @@
+package benchmarks;
+
+import math.DistancesImplementor;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the distance functions between two samples.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+    @Param({"16", "128", "1024"})
+    public int features;
+
+    @Setup
+    public void setup() {
+        Synthetic.quiet();
+        INDArray x = Synthetic.blobs(2, features, 2, SEED)[0];
+        a = x.getRow(0);
+        b = x.getRow(1);
+    }
+
+    @Benchmark
+    public double euclidean() {
+        return DistancesImplementor.euclideanDistance.calculate(a, b);
+    }
+
+    @Benchmark
+    public double logEuclidean() {
+        return DistancesImplementor.logEuclideanDistance.calculate(a, b);
+    }
+
+    @Benchmark
+    public double logSquaredEuclidean() {
+        return DistancesImplementor.logSquaredEuclideanDistance.calculate(a, b);
+    }
+
+    private static final long SEED = 42;
+
+    private INDArray a, b;
+}
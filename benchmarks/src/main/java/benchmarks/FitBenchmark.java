@@ -0,0 +1,65 @@
+package benchmarks;
+
+import models.SupervisedEOPF;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+import stream.DatasetView;
+import stream.Splitter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the training and the prediction of the supervised classifier.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FitBenchmark {
+
+    @Param({"500", "2000"})
+    public int n;
+
+    @Param({"16", "128"})
+    public int features;
+
+    @Param({"2", "10"})
+    public int classes;
+
+    @Setup
+    public void setup() {
+        Synthetic.quiet();
+        INDArray[] data = Synthetic.blobs(n, features, classes, SEED);
+        Splitter.Split split = Splitter.stratified(data[0], data[1], 0.5f, SEED);
+
+        x = data[0];
+        y = data[1];
+
+        // classifier used by the prediction benchmark, trained on half of the samples
+        test = split.getTest();
+        fitted = new SupervisedEOPF();
+        fitted.fit(split.getTrain());
+    }
+
+    @Benchmark
+    public SupervisedEOPF fit() {
+        SupervisedEOPF opf = new SupervisedEOPF();
+        opf.fit(x, y);
+        return opf;
+    }
+
+    @Benchmark
+    public INDArray predict() {
+        return fitted.predict(test);
+    }
+
+    private static final long SEED = 42;
+
+    private INDArray x, y;
+    private DatasetView test;
+    private SupervisedEOPF fitted;
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import core.Graph;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+import stream.DatasetView;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the construction of a graph from arrays and from a view of a dataset.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Param({"1000", "10000"})
+    public int n;
+
+    @Param({"16", "128"})
+    public int features;
+
+    @Setup
+    public void setup() {
+        Synthetic.quiet();
+        INDArray[] data = Synthetic.blobs(n, features, CLASSES, SEED);
+        x = data[0];
+        y = data[1];
+
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++)
+            indices[i] = i;
+        view = new DatasetView(x, y, indices);
+    }
+
+    @Benchmark
+    public Graph fromArrays() {
+        return new Graph(x, y);
+    }
+
+    @Benchmark
+    public Graph fromView() {
+        return new Graph(view);
+    }
+
+    private static final int CLASSES = 4;
+    private static final long SEED = 42;
+
+    private INDArray x, y;
+    private DatasetView view;
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import core.Heap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the heap used by the prototypes search and by the IFT.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+
+    @Param({"1000", "100000"})
+    public int n;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+        costs = new double[n];
+        for (int i = 0; i < n; i++)
+            costs[i] = random.nextDouble();
+    }
+
+    /**
+     * Inserts every element, then removes them in order.
+     * */
+    @Benchmark
+    public int insertRemove() {
+        Heap heap = new Heap(n, Heap.Policy.MIN);
+        for (int i = 0; i < n; i++) {
+            heap.getCost()[i] = costs[i];
+            heap.insert(i);
+        }
+
+        int checksum = 0;
+        while (!heap.isEmpty())
+            checksum += heap.remove();
+        return checksum;
+    }
+
+    /**
+     * Inserts the elements through updates, lowering the cost of each one twice, as the IFT does.
+     * */
+    @Benchmark
+    public int updateRemove() {
+        Heap heap = new Heap(n, Heap.Policy.MIN);
+        for (int i = 0; i < n; i++)
+            heap.update(i, costs[i] + 1);
+        for (int i = 0; i < n; i++)
+            heap.update(i, costs[i]);
+
+        int checksum = 0;
+        while (!heap.isEmpty())
+            checksum += heap.remove();
+        return checksum;
+    }
+
+    private static final long SEED = 42;
+
+    private double[] costs;
+}
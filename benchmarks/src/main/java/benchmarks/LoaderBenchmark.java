@@ -0,0 +1,84 @@
+package benchmarks;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+import stream.ByteLoader;
+import stream.Dataset;
+import stream.Ingest;
+import stream.Loader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the dataset parsers over synthetic files written at setup.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Param({"10000", "100000"})
+    public int n;
+
+    @Param({"16", "128"})
+    public int features;
+
+    @Setup
+    public void setup() throws IOException {
+        Synthetic.quiet();
+        INDArray[] data = Synthetic.blobs(n, features, CLASSES, SEED);
+        csv = Synthetic.write(data[0], data[1], "csv");
+        txt = Synthetic.write(data[0], data[1], "txt");
+        json = Synthetic.write(data[0], data[1], "json");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(txt);
+        Files.deleteIfExists(json);
+    }
+
+    @Benchmark
+    public INDArray loaderCSV() {
+        return new Loader().loadCSV(csv.toString());
+    }
+
+    @Benchmark
+    public INDArray loaderText() {
+        return new Loader().loadText(txt.toString());
+    }
+
+    @Benchmark
+    public INDArray loaderJSON() {
+        return new Loader().loadJSON(json.toString());
+    }
+
+    @Benchmark
+    public INDArray byteLoaderCSV() {
+        return new ByteLoader().loadCSV(csv.toString());
+    }
+
+    @Benchmark
+    public INDArray byteLoaderText() {
+        return new ByteLoader().loadText(txt.toString());
+    }
+
+    @Benchmark
+    public Dataset ingestCSV() throws IOException {
+        return Ingest.read(csv.toString());
+    }
+
+    private static final int CLASSES = 4;
+    private static final long SEED = 42;
+
+    private Path csv, txt, json;
+}
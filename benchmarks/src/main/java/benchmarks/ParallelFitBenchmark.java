@@ -0,0 +1,50 @@
+package benchmarks;
+
+import models.ParallelSupervisedEOPF;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the training of the parallel supervised classifier with different numbers of threads.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelFitBenchmark {
+
+    @Param({"2000"})
+    public int n;
+
+    @Param({"16", "128"})
+    public int features;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    @Setup
+    public void setup() {
+        Synthetic.quiet();
+        INDArray[] data = Synthetic.blobs(n, features, CLASSES, SEED);
+        x = data[0];
+        y = data[1];
+    }
+
+    @Benchmark
+    public ParallelSupervisedEOPF fit() {
+        ParallelSupervisedEOPF opf = new ParallelSupervisedEOPF();
+        opf.fit(x, y, threads);
+        return opf;
+    }
+
+    private static final int CLASSES = 4;
+    private static final long SEED = 42;
+
+    private INDArray x, y;
+}
@@ -0,0 +1,147 @@
+package benchmarks;
+
+import math.Distance;
+import math.DistancesImplementor;
+import math.General;
+import models.SupervisedEOPF;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import stream.Dataset;
+import stream.DatasetView;
+import stream.Splitter;
+import tools.SyntheticDataset;
+import utils.Precision;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the single precision mode of the classifier with the double precision one: for each synthetic dataset
+ * and distance it trains both, on the fly and with pre-computed distances, and reports the agreement of their
+ * predictions, their accuracy, their fit time and the bytes of their features and distance matrices.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmarks.PrecisionComparison [--n 1000,3000] [--features 16,128]
+ * [--kinds blobs,overlapping,sparse] [--classes 4] [--out precision.csv]}
+ *
+ * @author De Caro Antonio
+ */
+public class PrecisionComparison {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        int[] sizes = ints(options.getOrDefault("n", "1000,3000"));
+        int[] features = ints(options.getOrDefault("features", "16,128"));
+        int classes = Integer.parseInt(options.getOrDefault("classes", "4"));
+        String out = options.getOrDefault("out", "precision.csv");
+
+        Synthetic.quiet();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+            writer.println(HEADER);
+            for (String kind : options.getOrDefault("kinds", "blobs,overlapping,sparse").split(",")) {
+                for (int n : sizes) {
+                    for (int f : features) {
+                        Dataset dataset = SyntheticDataset.generate(
+                                SyntheticDataset.Kind.valueOf(kind.trim().toUpperCase(Locale.ROOT)), n, f, classes, SEED);
+                        Splitter.Split split = Splitter.stratified(dataset.getX(), dataset.getY(), 0.5f, SEED);
+                        INDArray[] train = rows(split.getTrain());
+                        INDArray[] test = rows(split.getTest());
+
+                        for (Distance distance : DISTANCES) {
+                            for (boolean precomputed : new boolean[]{false, true}) {
+                                Measure reference = measure(train, test, distance, precomputed, Precision.DOUBLE);
+                                Measure single = measure(train, test, distance, precomputed, Precision.FLOAT);
+                                write(writer, kind.trim(), n, f, distance, precomputed, reference, single);
+                            }
+                        }
+                        writer.flush();
+                    }
+                }
+            }
+        }
+        System.out.println("Results written to " + out);
+    }
+
+    /**
+     * Trains a classifier in a precision and predicts the test set.
+     * */
+    private static Measure measure(INDArray[] train, INDArray[] test, Distance distance, boolean precomputed,
+                                   Precision precision) {
+        Measure measure = new Measure();
+        SupervisedEOPF opf = new SupervisedEOPF(distance);
+        opf.setPrecision(precision);
+        INDArray x = precision.cast(train[0]);
+        measure.featureBytes = x.length() * x.dataType().width();
+
+        long start = System.nanoTime();
+        if (precomputed) {
+            INDArray distances = General.precomputeDistances(x, distance, 1, precision);
+            measure.matrixBytes = distances.length() * distances.dataType().width();
+            opf.setPreComputedDistances(distances);
+        }
+        opf.fit(x, train[1]);
+        measure.fit = System.nanoTime() - start;
+
+        measure.predictions = opf.predict(test[0]);
+        measure.accuracy = General.opfAccuracy(test[1], measure.predictions);
+        return measure;
+    }
+
+    /**
+     * Copies the rows of a view, so each precision gets its own arrays.
+     * */
+    private static INDArray[] rows(DatasetView view) {
+        return new INDArray[]{view.getX().getRows(view.getIndices()), view.getLabels()};
+    }
+
+    private static void write(PrintWriter writer, String kind, int n, int features, Distance distance,
+                              boolean precomputed, Measure reference, Measure single) {
+        long agreeing = 0;
+        for (long i = 0; i < reference.predictions.length(); i++)
+            if (reference.predictions.getDouble(i) == single.predictions.getDouble(i))
+                agreeing++;
+
+        writer.printf(Locale.ROOT, "%s,%d,%d,%s,%b,%.5f,%.5f,%.5f,%.3f,%.3f,%d,%d,%d,%d%n", kind, n, features,
+                DistancesImplementor.getName(distance), precomputed,
+                agreeing / (double) reference.predictions.length(), reference.accuracy, single.accuracy,
+                reference.fit / 1e6, single.fit / 1e6, reference.featureBytes, single.featureBytes,
+                reference.matrixBytes, single.matrixBytes);
+        System.out.printf(Locale.ROOT, "%s (%d, %d) %s%s: agreement %.5f, accuracy %.4f / %.4f%n", kind, n, features,
+                DistancesImplementor.getName(distance), precomputed ? " pre-computed" : "",
+                agreeing / (double) reference.predictions.length(), reference.accuracy, single.accuracy);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Options must be given as `--name value`: " + Arrays.toString(args));
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static int[] ints(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * The measures of a classifier.
+     * */
+    private static class Measure {
+        private INDArray predictions;
+        private double accuracy;
+        private long fit, featureBytes, matrixBytes;
+    }
+
+    private static final String HEADER = "kind,n,features,distance,precomputed,agreement,accuracy_double," +
+            "accuracy_float,fit_double_ms,fit_float_ms,feature_bytes_double,feature_bytes_float," +
+            "matrix_bytes_double,matrix_bytes_float";
+    private static final Distance[] DISTANCES = {DistancesImplementor.euclideanDistance,
+            DistancesImplementor.logEuclideanDistance, DistancesImplementor.logSquaredEuclideanDistance};
+    private static final long SEED = 42;
+}
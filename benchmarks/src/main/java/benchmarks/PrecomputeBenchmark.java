@@ -0,0 +1,47 @@
+package benchmarks;
+
+import math.DistancesImplementor;
+import math.General;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the computation of the whole distance matrix of a dataset.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrecomputeBenchmark {
+
+    @Param({"500", "2000"})
+    public int n;
+
+    @Param({"16", "128"})
+    public int features;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Setup
+    public void setup() {
+        Synthetic.quiet();
+        x = Synthetic.blobs(n, features, CLASSES, SEED)[0];
+    }
+
+    @Benchmark
+    public INDArray precompute() {
+        return General.precomputeDistances(x, DistancesImplementor.euclideanDistance, threads);
+    }
+
+    private static final int CLASSES = 4;
+    private static final long SEED = 42;
+
+    private INDArray x;
+}
@@ -0,0 +1,145 @@
+package benchmarks;
+
+import math.General;
+import math.QuantizedMatrix;
+import models.SupervisedEOPF;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import stream.Dataset;
+import stream.DatasetView;
+import stream.Splitter;
+import tools.SyntheticDataset;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the quantized features with the full precision ones: for each synthetic dataset it trains a classifier
+ * on the double features and one for each kind of codes and parameters, and reports the agreement of their
+ * predictions, their accuracy, their fit time and the bytes of their features.
+ * Quantized classifiers predict the test set quantized with the parameters of the training set.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmarks.QuantizationComparison [--n 1000,3000] [--features 16,128]
+ * [--kinds blobs,overlapping,sparse] [--classes 4] [--out quantization.csv]}
+ *
+ * @author De Caro Antonio
+ */
+public class QuantizationComparison {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        int[] sizes = ints(options.getOrDefault("n", "1000,3000"));
+        int[] features = ints(options.getOrDefault("features", "16,128"));
+        int classes = Integer.parseInt(options.getOrDefault("classes", "4"));
+        String out = options.getOrDefault("out", "quantization.csv");
+
+        Synthetic.quiet();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+            writer.println(HEADER);
+            for (String kind : options.getOrDefault("kinds", "blobs,overlapping,sparse").split(",")) {
+                for (int n : sizes) {
+                    for (int f : features) {
+                        Dataset dataset = SyntheticDataset.generate(
+                                SyntheticDataset.Kind.valueOf(kind.trim().toUpperCase(Locale.ROOT)), n, f, classes, SEED);
+                        Splitter.Split split = Splitter.stratified(dataset.getX(), dataset.getY(), 0.5f, SEED);
+                        INDArray[] train = rows(split.getTrain());
+                        INDArray[] test = rows(split.getTest());
+
+                        Measure reference = measure(train, test, null, false);
+                        for (QuantizedMatrix.Type type : QuantizedMatrix.Type.values()) {
+                            for (boolean perFeature : new boolean[]{false, true}) {
+                                Measure quantized = measure(train, test, type, perFeature);
+                                write(writer, kind.trim(), n, f, type, perFeature, reference, quantized);
+                            }
+                        }
+                        writer.flush();
+                    }
+                }
+            }
+        }
+        System.out.println("Results written to " + out);
+    }
+
+    /**
+     * Trains a classifier on the double features, if the type is null, or on the quantized ones and predicts
+     * the test set.
+     * */
+    private static Measure measure(INDArray[] train, INDArray[] test, QuantizedMatrix.Type type, boolean perFeature) {
+        Measure measure = new Measure();
+        SupervisedEOPF opf = new SupervisedEOPF();
+
+        long start = System.nanoTime();
+        if (type == null) {
+            measure.featureBytes = train[0].length() * train[0].dataType().width();
+            opf.fit(train[0], train[1]);
+            measure.fit = System.nanoTime() - start;
+            measure.predictions = opf.predict(test[0]);
+        } else {
+            QuantizedMatrix x = QuantizedMatrix.quantize(train[0], type, perFeature);
+            measure.featureBytes = x.bytes();
+            opf.fit(x, train[1]);
+            measure.fit = System.nanoTime() - start;
+            measure.predictions = opf.predict(x.quantizeLike(test[0]));
+        }
+        measure.accuracy = General.opfAccuracy(test[1], measure.predictions);
+        return measure;
+    }
+
+    /**
+     * Copies the rows of a view, as double features.
+     * */
+    private static INDArray[] rows(DatasetView view) {
+        return new INDArray[]{view.getX().getRows(view.getIndices()).castTo(DataType.DOUBLE),
+                view.getLabels()};
+    }
+
+    private static void write(PrintWriter writer, String kind, int n, int features, QuantizedMatrix.Type type,
+                              boolean perFeature, Measure reference, Measure quantized) {
+        long agreeing = 0;
+        for (long i = 0; i < reference.predictions.length(); i++)
+            if (reference.predictions.getDouble(i) == quantized.predictions.getDouble(i))
+                agreeing++;
+
+        String parameters = perFeature ? "feature" : "dataset";
+        writer.printf(Locale.ROOT, "%s,%d,%d,%s,%s,%.5f,%.5f,%.5f,%.3f,%.3f,%d,%d%n", kind, n, features, type,
+                parameters, agreeing / (double) reference.predictions.length(), reference.accuracy,
+                quantized.accuracy, reference.fit / 1e6, quantized.fit / 1e6, reference.featureBytes,
+                quantized.featureBytes);
+        System.out.printf(Locale.ROOT, "%s (%d, %d) %s per %s: agreement %.5f, accuracy %.4f / %.4f%n", kind, n,
+                features, type, parameters, agreeing / (double) reference.predictions.length(), reference.accuracy,
+                quantized.accuracy);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Options must be given as `--name value`: " + Arrays.toString(args));
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static int[] ints(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * The measures of a classifier.
+     * */
+    private static class Measure {
+        private INDArray predictions;
+        private double accuracy;
+        private long fit, featureBytes;
+    }
+
+    private static final String HEADER = "kind,n,features,type,parameters,agreement,accuracy_double," +
+            "accuracy_quantized,fit_double_ms,fit_quantized_ms,feature_bytes_double,feature_bytes_quantized";
+    private static final long SEED = 42;
+}
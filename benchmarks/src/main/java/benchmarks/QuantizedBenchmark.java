@@ -0,0 +1,61 @@
+package benchmarks;
+
+import math.DistancesImplementor;
+import math.QuantizedMatrix;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the squared euclidean distance between two quantized samples, with the scalar and the vectorized
+ * kernels, against the float distance between the same samples.
+ *
+ * @author De Caro Antonio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuantizedBenchmark {
+
+    @Param({"16", "128", "1024"})
+    public int features;
+
+    @Param({"UINT8", "INT8"})
+    public QuantizedMatrix.Type type;
+
+    @Param({"false", "true"})
+    public boolean perFeature;
+
+    @Setup
+    public void setup() {
+        Synthetic.quiet();
+        INDArray x = Synthetic.blobs(2, features, 2, SEED)[0];
+        a = x.getRow(0);
+        b = x.getRow(1);
+        quantized = QuantizedMatrix.quantize(x, type, perFeature);
+    }
+
+    @Benchmark
+    public float vectorized() {
+        return quantized.squaredDistance(0, quantized, 1);
+    }
+
+    @Benchmark
+    public float scalar() {
+        return quantized.squaredDistanceScalar(0, quantized, 1);
+    }
+
+    @Benchmark
+    public double dense() {
+        return DistancesImplementor.euclideanDistance.calculate(a, b);
+    }
+
+    private static final long SEED = 42;
+
+    private INDArray a, b;
+    private QuantizedMatrix quantized;
+}
@@ -0,0 +1,158 @@
+package benchmarks;
+
+import math.General;
+import math.IncrementalPCA;
+import math.RandomProjection;
+import math.Reducer;
+import models.SupervisedEOPF;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import stream.Dataset;
+import stream.DatasetView;
+import stream.Splitter;
+import tools.SyntheticDataset;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the classifier on reduced features with the one on the full features: for each high dimensional
+ * synthetic dataset, reducer and number of components it reports the speed-up of the fit and of the prediction,
+ * reducer included, against the agreement of the predictions and the loss of accuracy.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmarks.ReductionComparison [--n 2000] [--features 256,1024]
+ * [--components 16,32,64] [--reducers sparse,gaussian,pca] [--kinds overlapping,sparse] [--classes 4]
+ * [--out reduction.csv]}
+ *
+ * @author De Caro Antonio
+ */
+public class ReductionComparison {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        int[] sizes = ints(options.getOrDefault("n", "2000"));
+        int[] features = ints(options.getOrDefault("features", "256,1024"));
+        int[] components = ints(options.getOrDefault("components", "16,32,64"));
+        String[] reducers = options.getOrDefault("reducers", "sparse,gaussian,pca").split(",");
+        int classes = Integer.parseInt(options.getOrDefault("classes", "4"));
+        String out = options.getOrDefault("out", "reduction.csv");
+
+        Synthetic.quiet();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+            writer.println(HEADER);
+            for (String kind : options.getOrDefault("kinds", "overlapping,sparse").split(",")) {
+                for (int n : sizes) {
+                    for (int f : features) {
+                        Dataset dataset = SyntheticDataset.generate(
+                                SyntheticDataset.Kind.valueOf(kind.trim().toUpperCase(Locale.ROOT)), n, f, classes, SEED);
+                        Splitter.Split split = Splitter.stratified(dataset.getX(), dataset.getY(), 0.5f, SEED);
+                        INDArray[] train = rows(split.getTrain());
+                        INDArray[] test = rows(split.getTest());
+
+                        Measure reference = measure(train, test, null);
+                        for (String name : reducers) {
+                            for (int k : components) {
+                                if (k >= f)
+                                    continue;
+                                Measure reduced = measure(train, test, reducer(name.trim(), k));
+                                write(writer, kind.trim(), n, f, name.trim(), k, reference, reduced);
+                            }
+                        }
+                        writer.flush();
+                    }
+                }
+            }
+        }
+        System.out.println("Results written to " + out);
+    }
+
+    /**
+     * Trains a classifier, on the reduced features if the reducer is not null, and predicts the test set.
+     * */
+    private static Measure measure(INDArray[] train, INDArray[] test, Reducer reducer) {
+        Measure measure = new Measure();
+        SupervisedEOPF opf = new SupervisedEOPF();
+        opf.setReducer(reducer);
+
+        long start = System.nanoTime();
+        opf.fit(train[0], train[1]);
+        measure.fit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        measure.predictions = opf.predict(test[0]);
+        measure.predict = System.nanoTime() - start;
+        measure.accuracy = General.opfAccuracy(test[1], measure.predictions);
+        return measure;
+    }
+
+    private static Reducer reducer(String name, int components) {
+        switch (name) {
+            case "sparse":
+                return new RandomProjection(components, RandomProjection.Kind.SPARSE, SEED);
+            case "gaussian":
+                return new RandomProjection(components, RandomProjection.Kind.GAUSSIAN, SEED);
+            case "pca":
+                return new IncrementalPCA(components);
+            default:
+                throw new IllegalArgumentException("Unknown reducer `" + name + "`, expected sparse, gaussian or pca");
+        }
+    }
+
+    /**
+     * Copies the rows of a view.
+     * */
+    private static INDArray[] rows(DatasetView view) {
+        return new INDArray[]{view.getX().getRows(view.getIndices()), view.getLabels()};
+    }
+
+    private static void write(PrintWriter writer, String kind, int n, int features, String reducer, int components,
+                              Measure reference, Measure reduced) {
+        long agreeing = 0;
+        for (long i = 0; i < reference.predictions.length(); i++)
+            if (reference.predictions.getDouble(i) == reduced.predictions.getDouble(i))
+                agreeing++;
+
+        double fitSpeedup = reference.fit / (double) reduced.fit;
+        double predictSpeedup = reference.predict / (double) reduced.predict;
+        writer.printf(Locale.ROOT, "%s,%d,%d,%s,%d,%.5f,%.5f,%.5f,%.3f,%.3f,%.3f,%.3f,%.2f,%.2f%n", kind, n, features,
+                reducer, components, agreeing / (double) reference.predictions.length(), reference.accuracy,
+                reduced.accuracy, reference.fit / 1e6, reduced.fit / 1e6, reference.predict / 1e6,
+                reduced.predict / 1e6, fitSpeedup, predictSpeedup);
+        System.out.printf(Locale.ROOT, "%s (%d, %d) %s %d: accuracy %.4f / %.4f, speed-up fit %.2fx, predict %.2fx%n",
+                kind, n, features, reducer, components, reference.accuracy, reduced.accuracy, fitSpeedup,
+                predictSpeedup);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Options must be given as `--name value`: " + Arrays.toString(args));
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static int[] ints(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * The measures of a classifier.
+     * */
+    private static class Measure {
+        private INDArray predictions;
+        private double accuracy;
+        private long fit, predict;
+    }
+
+    private static final String HEADER = "kind,n,features,reducer,components,agreement,accuracy_full," +
+            "accuracy_reduced,fit_full_ms,fit_reduced_ms,predict_full_ms,predict_reduced_ms,fit_speedup," +
+            "predict_speedup";
+    private static final long SEED = 42;
+}
@@ -0,0 +1,208 @@
+package benchmarks;
+
+import math.General;
+import models.ParallelSupervisedEOPF;
+import models.SupervisedEOPF;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import stream.Dataset;
+import stream.DatasetView;
+import stream.Ingest;
+import stream.Splitter;
+import tools.SyntheticDataset;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * End to end scalability harness: for each configuration of a grid it generates a synthetic dataset, writes it,
+ * and measures load, fit, predict and accuracy of the sequential and of the parallel classifier.
+ * Each row of the resulting CSV reports the phase timings, the throughput, the peak heap and the speedup of the
+ * fit over the sequential classifier.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmarks.Scalability [--n 1000,5000] [--features 16,128]
+ * [--kinds blobs,overlapping,sparse] [--threads 1,2,4] [--classes 4] [--format csv] [--repeats 1]
+ * [--out scalability.csv]}
+ *
+ * @author De Caro Antonio
+ */
+public class Scalability {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        int[] sizes = ints(options.getOrDefault("n", "1000,5000"));
+        int[] features = ints(options.getOrDefault("features", "16,128"));
+        int[] threads = ints(options.getOrDefault("threads", "1,2,4"));
+        int classes = Integer.parseInt(options.getOrDefault("classes", "4"));
+        int repeats = Integer.parseInt(options.getOrDefault("repeats", "1"));
+        String format = options.getOrDefault("format", "csv");
+        String out = options.getOrDefault("out", "scalability.csv");
+
+        List<SyntheticDataset.Kind> kinds = new ArrayList<>();
+        for (String kind : options.getOrDefault("kinds", "blobs,overlapping,sparse").split(","))
+            kinds.add(SyntheticDataset.Kind.valueOf(kind.trim().toUpperCase(Locale.ROOT)));
+
+        Synthetic.quiet();
+        warmup(format);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+            writer.println(HEADER);
+            for (SyntheticDataset.Kind kind : kinds)
+                for (int n : sizes)
+                    for (int f : features)
+                        for (int r = 0; r < repeats; r++)
+                            run(writer, kind, n, f, classes, threads, format, SEED + r);
+        }
+        System.out.println("Results written to " + out);
+    }
+
+    /**
+     * Measures a configuration: the sequential classifier first, as reference of the speedup,
+     * then the parallel classifier with each number of threads.
+     * */
+    private static void run(PrintWriter writer, SyntheticDataset.Kind kind, int n, int features, int classes,
+                            int[] threads, String format, long seed) throws IOException {
+        Path file = Files.createTempFile("jopf-scalability", "." + format);
+        try {
+            SyntheticDataset.write(SyntheticDataset.generate(kind, n, features, classes, seed), file.toString());
+
+            Measure sequential = measure(file, seed, 0);
+            write(writer, kind, n, features, classes, sequential, sequential);
+            for (int t : threads)
+                write(writer, kind, n, features, classes, measure(file, seed, t), sequential);
+            writer.flush();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Runs a small configuration whose measures are discarded, so the first measures do not include the JIT
+     * compilation and the initialization of the native backend.
+     * */
+    private static void warmup(String format) throws IOException {
+        Path file = Files.createTempFile("jopf-scalability", "." + format);
+        try {
+            SyntheticDataset.write(SyntheticDataset.generate(SyntheticDataset.Kind.BLOBS, WARMUP_SIZE, 16, 2, SEED),
+                    file.toString());
+            measure(file, SEED, 0);
+            measure(file, SEED, 2);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Loads the dataset, splits it in half and measures the training and the prediction.
+     * @param threads the number of threads of the parallel classifier, or 0 for the sequential classifier.
+     * */
+    private static Measure measure(Path file, long seed, int threads) throws IOException {
+        System.gc();
+        resetPeakHeap();
+        Measure measure = new Measure(threads);
+
+        long start = System.nanoTime();
+        Dataset dataset = Ingest.read(file.toString());
+        measure.load = System.nanoTime() - start;
+
+        Splitter.Split split = Splitter.stratified(dataset.getX(), dataset.getY(), 0.5f, seed);
+        DatasetView train = split.getTrain();
+        DatasetView test = split.getTest();
+
+        SupervisedEOPF opf;
+        start = System.nanoTime();
+        if (threads == 0) {
+            opf = new SupervisedEOPF();
+            opf.fit(train);
+        } else {
+            ParallelSupervisedEOPF parallel = new ParallelSupervisedEOPF();
+            parallel.fit(train, threads);
+            opf = parallel;
+        }
+        measure.fit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        INDArray predictions = opf.predict(test);
+        measure.predict = System.nanoTime() - start;
+
+        measure.accuracy = General.opfAccuracy(test.getLabels(), predictions);
+        measure.trainSize = train.size();
+        measure.testSize = test.size();
+        measure.peakHeap = peakHeap();
+        System.out.printf(Locale.ROOT, "%s (%d, %d) %s: fit %.1f ms, accuracy %.4f%n", file.getFileName(),
+                dataset.getRows(), dataset.getX().columns(), measure.model(), measure.fit / 1e6, measure.accuracy);
+        return measure;
+    }
+
+    private static void write(PrintWriter writer, SyntheticDataset.Kind kind, int n, int features, int classes,
+                              Measure measure, Measure sequential) {
+        writer.printf(Locale.ROOT, "%s,%d,%d,%d,%s,%d,%.3f,%.3f,%.3f,%.5f,%.1f,%.1f,%.1f,%.3f%n",
+                kind.name().toLowerCase(Locale.ROOT), n, features, classes, measure.model(), Math.max(1, measure.threads),
+                measure.load / 1e6, measure.fit / 1e6, measure.predict / 1e6, measure.accuracy,
+                measure.trainSize / (measure.fit / 1e9), measure.testSize / (measure.predict / 1e9),
+                measure.peakHeap / (double) (1 << 20), sequential.fit / (double) measure.fit);
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+    }
+
+    // sum of the peak usages of the heap pools, since the last reset
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Options must be given as `--name value`: " + Arrays.toString(args));
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static int[] ints(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * The measures of a run.
+     * */
+    private static class Measure {
+
+        Measure(int threads) {
+            this.threads = threads;
+        }
+
+        String model() {
+            return threads == 0 ? "SupervisedEOPF" : "ParallelSupervisedEOPF";
+        }
+
+        private final int threads;
+        private long load, fit, predict, peakHeap;
+        private int trainSize, testSize;
+        private double accuracy;
+    }
+
+    private static final String HEADER = "kind,n,features,classes,model,threads,load_ms,fit_ms,predict_ms,accuracy," +
+            "fit_samples_per_s,predict_samples_per_s,peak_heap_mb,speedup";
+    private static final long SEED = 42;
+    private static final int WARMUP_SIZE = 500;
+}
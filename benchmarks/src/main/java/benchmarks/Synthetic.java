@@ -0,0 +1,59 @@
+package benchmarks;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import stream.Dataset;
+import tools.SyntheticDataset;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates the reproducible synthetic datasets used by the benchmarks, so they never need to download data.
+ *
+ * @author De Caro Antonio
+ */
+final class Synthetic {
+
+    /**
+     * Generates Gaussian blobs: each class is a unit variance blob around a random center.
+     * Labels are assigned in turn, so every class has the same number of samples.
+     * @param n the number of samples.
+     * @param features the number of features.
+     * @param classes the number of classes.
+     * @param seed the seed of the random generator.
+     * @return the (n, features) array of features and the array of labels (1 to classes).
+     * */
+    static INDArray[] blobs(int n, int features, int classes, long seed) {
+        Dataset dataset = SyntheticDataset.generate(SyntheticDataset.Kind.BLOBS, n, features, classes, seed);
+        return new INDArray[]{dataset.getX(), dataset.getY()};
+    }
+
+    /**
+     * Writes a dataset in OPF format (id, label, features).
+     * @param x the array of features.
+     * @param y the array of labels.
+     * @param format one of csv, txt, json, dat or opfb.
+     * @return the path of the temporary file.
+     * */
+    static Path write(INDArray x, INDArray y, String format) throws IOException {
+        Path path = Files.createTempFile("jopf-bench", "." + format);
+        int[] ids = new int[x.rows()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = i;
+
+        SyntheticDataset.write(new Dataset(ids, x, y, y.maxNumber().intValue()), path.toString());
+        return path;
+    }
+
+    /**
+     * Silences the info logs of the library, that would otherwise be part of the measures.
+     * */
+    static void quiet() {
+        Logger.getLogger("").setLevel(Level.WARNING);
+    }
+
+    private Synthetic() {}
+}
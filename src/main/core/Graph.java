@@ -1,12 +1,16 @@
 package core;
 
+import math.FeatureMatrix;
 import org.jetbrains.annotations.NotNull;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
-import stream.Loader;
-import stream.Parser;
+import stream.Dataset;
+import stream.DatasetView;
+import stream.Ingest;
 import utils.Constants;
+import utils.exceptions.SizeError;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.logging.Logger;
@@ -42,28 +46,67 @@ public class Graph implements Serializable {
             logger.severe("graph has not been properly created");
     }
 
+    /**
+     * Class constructor.
+     * Construct the graph over a view of a dataset, without copying its rows.
+     * Each node keeps, as index, the row of the sample in the original dataset.
+     * @param view the view of the dataset.
+     * */
+    public Graph(@NotNull DatasetView view) {
+        this.nodes = new ArrayList<>();
+        this.orderedNodes = new ArrayList<>();
+
+        // iterate for every sample in the view
+        for (int i = 0; i < view.size(); i++) {
+            INDArray feature = view.getFeatures(i);
+            int label = view.getY() == null ? 1 : view.getLabel(i);
+            nodes.add(new Node(view.getIndex(i), label, feature));
+        }
+
+        // calculates the number of features
+        this.nFeatures = (int) view.getX().shape()[1];
+    }
+
+    /**
+     * Class constructor.
+     * Construct the graph over the rows of a feature matrix, e.g. a sparse or quantized one, without converting them.
+     * @param x the matrix of features.
+     * @param y array of labels; can be null for unlabeled samples.
+     * */
+    public Graph(@NotNull FeatureMatrix x, INDArray y) {
+        this.nodes = new ArrayList<>();
+        this.orderedNodes = new ArrayList<>();
+
+        if (y != null && y.length() != x.rows())
+            throw new SizeError("`X` and `Y` should have the same amount of samples");
+
+        // each node refers to its row of the matrix
+        for (int i = 0; i < x.rows(); i++)
+            nodes.add(new Node(i, y == null ? 1 : y.getInt(i), x, i));
+
+        // calculates the number of features
+        this.nFeatures = x.columns();
+    }
+
     /**
      * Class constructor.
      * Construct the graph reading the xArray and yArray from a file.
-     * @param filename the filename of the dataset. Format: .json, .csv, .txt.
+     * @param filename the filename of the dataset. Format: .json, .csv, .txt, .opfb, .dat (LibOPF).
      * */
     public Graph(@NotNull String filename) {
-        // create the loader
-        Loader loader = new Loader();
-        Parser parser;
-
-        // read the file
-        if (filename.endsWith("csv"))
-            parser = new Parser(loader.loadCSV(filename));
-        else if (filename.endsWith("txt"))
-            parser = new Parser(loader.loadText(filename));
-        else if (filename.endsWith("json"))
-            parser = new Parser(loader.loadJSON(filename));
-        else
-            throw new IllegalArgumentException("File extension not recognized. It should be `.csv`, `.json` or `.txt`");
+        this.nodes = new ArrayList<>();
+        this.orderedNodes = new ArrayList<>();
+
+        // read the file, splitting features and labels while reading
+        Dataset dataset;
+        try {
+            dataset = Ingest.read(filename);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Dataset could not been properly loaded: " + e.getMessage());
+        }
 
         // build the graph
-        build(parser.getX(), parser.getY());
+        build(dataset.getX(), dataset.getY());
     }
 
     /**
@@ -141,6 +184,13 @@ public class Graph implements Serializable {
         this.trained = trained;
     }
 
+    /**
+     * @return whether the features of the nodes are dense arrays, rather than rows of a feature matrix
+     * */
+    public boolean isDense() {
+        return nodes.isEmpty() || nodes.get(0).getMatrix() == null;
+    }
+
     /**
      * @return the number of features
      * */
@@ -168,6 +218,9 @@ public class Graph implements Serializable {
         this.nFeatures = (int) nodes.get(0).getFeatures().shape()[0];
     }
 
+    // fixed to the one computed by previous versions, so that their serialized models can be read
+    private static final long serialVersionUID = 4287460423662358023L;
+
     // list of nodes
     private ArrayList<Node> nodes;
 
@@ -76,6 +76,48 @@ public class Heap {
         this.cost = cost;
     }
 
+    /**
+     * Gets the node values, in heap order.
+     * */
+    public int[] getValues() {
+        return p;
+    }
+
+    /**
+     * Gets the position in the heap of each node, or -1 if the node is not in the heap.
+     * */
+    public int[] getPositions() {
+        return pos;
+    }
+
+    /**
+     * Gets the position of the last element, or -1 if the heap is empty.
+     * */
+    public int getLast() {
+        return last;
+    }
+
+    /**
+     * Restores the whole state of the heap, e.g. from a checkpoint.
+     * @param cost cost of each node.
+     * @param color color of each node.
+     * @param values node values, in heap order.
+     * @param positions position in the heap of each node.
+     * @param last position of the last element.
+     * */
+    public void restore(double[] cost, int[] color, int[] values, int[] positions, int last) {
+        if (cost.length != size || color.length != size || values.length != size || positions.length != size)
+            throw new SizeError("The size of the arrays must be equals to: " + size);
+        if (last < -1 || last >= size)
+            throw new SizeError("The last position must be between -1 and " + (size - 1));
+
+        this.cost = cost;
+        this.color = color;
+        this.p = values;
+        this.pos = positions;
+        this.last = last;
+    }
+
     /**
      * Check if the heap is empty or not
      * @return true if the heap is empty, false otherwise
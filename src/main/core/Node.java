@@ -1,5 +1,8 @@
 package core;
 
+import math.Distance;
+import math.DistancesImplementor;
+import math.FeatureMatrix;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import utils.Constants;
 import utils.exceptions.ValueError;
@@ -29,6 +32,60 @@ public class Node implements Serializable {
         this.relevant = Constants.IRRELEVANT;
     }
 
+    /**
+     * Class constructor, for a node whose features are a row of a feature matrix, e.g. a sparse or quantized one.
+     * @param idx the node's identifier.
+     * @param label the node's label.
+     * @param matrix the matrix of features.
+     * @param row the row of the node in the matrix.
+     * */
+    public Node(int idx, int label, FeatureMatrix matrix, int row) {
+        this(idx, label, (INDArray) null);
+        this.matrix = matrix;
+        this.row = row;
+    }
+
+    /**
+     * Computes the distance to another node, on their dense features or on the rows of their feature matrices.
+     * Arcs involving a feature matrix are computed from the squared euclidean distance of the matrix.
+     * @param distance the distance function.
+     * @param node the other node.
+     * @return the distance.
+     * @throws IllegalArgumentException if a node is in a feature matrix and the distance is not one of
+     *                                  {@link DistancesImplementor}, or the matrices are of different kinds.
+     * */
+    public double distance(Distance distance, Node node) {
+        if (matrix == null && node.matrix == null)
+            return distance.calculate(features, node.features);
+
+        float squared;
+        if (matrix != null && node.matrix != null)
+            squared = matrix.squaredDistance(row, node.matrix, node.row);
+        else if (matrix != null)
+            squared = matrix.squaredDistance(row, node.features, node.squaredNorm());
+        else
+            squared = node.matrix.squaredDistance(node.row, features, squaredNorm());
+        return DistancesImplementor.fromSquaredEuclidean(distance, squared);
+    }
+
+    /**
+     * @return the squared norm of the node's features.
+     * */
+    public float squaredNorm() {
+        if (matrix != null)
+            return matrix.squaredNorm(row);
+
+        // dense norms are computed once, when first needed; concurrent computations give the same value
+        if (!normed) {
+            float norm = 0.0f;
+            for (int i = 0; i < features.length(); i++)
+                norm += features.getFloat(i) * features.getFloat(i);
+            squaredNorm = norm;
+            normed = true;
+        }
+        return squaredNorm;
+    }
+
     /**
      * @return node's index
      * */
@@ -82,7 +139,7 @@ public class Node implements Serializable {
     }
 
     /**
-     * @return node's features array
+     * @return node's features array, or null if its features are in a feature matrix
      * */
     public INDArray getFeatures() {
         return features;
@@ -90,6 +147,22 @@ public class Node implements Serializable {
 
     public void setFeatures(INDArray features) {
         this.features = features;
+        this.matrix = null;
+        this.normed = false;
+    }
+
+    /**
+     * @return the matrix holding node's features, or null if its features are a dense array
+     * */
+    public FeatureMatrix getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * @return the row of the node in its feature matrix
+     * */
+    public int getRow() {
+        return row;
     }
 
     /**
@@ -209,6 +282,9 @@ public class Node implements Serializable {
                 '}';
     }
 
+    // fixed to the one computed by previous versions, so that their serialized models can be read
+    private static final long serialVersionUID = 8395885037932963667L;
+
     // initially, we need to set the node's index
     private int index;
 
@@ -224,6 +300,14 @@ public class Node implements Serializable {
     // array of features
     private INDArray features;
 
+    // or matrix of features, and the row of the node in it
+    private FeatureMatrix matrix;
+    private int row;
+
+    // squared norm of dense features, when computed
+    private transient float squaredNorm;
+    private transient volatile boolean normed;
+
     // cost of the node
     private double cost;
 
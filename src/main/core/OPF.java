@@ -2,11 +2,20 @@ package core;
 
 import math.Distance;
 import math.DistancesImplementor;
+import math.FeatureMatrix;
+import math.Reducer;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import stream.Loader;
+import stream.BinaryModel;
+import stream.ByteLoader;
+import stream.DatasetView;
+import stream.LibOPF;
+import utils.Precision;
+import utils.events.ReduceEvent;
+import utils.exceptions.BuildError;
 import utils.exceptions.ValueError;
 
 import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -18,20 +27,12 @@ public abstract class OPF implements Serializable, Cloneable {
 
     /**
      * Read OPF state from a file.
+     * Both the binary model format and models serialized by previous versions are supported.
      * @param fname filename in which read the OPF state
+     * @see BinaryModel
      */
     public static OPF load(String fname) throws IOException, ClassNotFoundException {
-        // creates the input stream
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fname))) {
-            // read object from file
-            Object obj = ois.readObject();
-            // if the object is properly read, cast and return
-            if (obj instanceof OPF) {
-                return (OPF) obj;
-            }
-            // else returns null
-            return null;
-        }
+        return BinaryModel.read(fname);
     }
 
     /**
@@ -53,15 +54,17 @@ public abstract class OPF implements Serializable, Cloneable {
     }
 
     /**
-     * Save OPF state into a file.
+     * Save OPF state into a file, using the binary model format.
+     * Classifiers the format cannot represent, e.g. untrained ones, sparse or quantized ones, or ones with a custom
+     * distance, are saved with Java serialization instead; {@link #load(String)} reads both.
      * @param fname filename of the file in which store OPF state.
+     * @see BinaryModel
      * */
     public void save(String fname) throws IOException {
-        // creates the output stream
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(fname))) {
-            // save the object into the file
-            oos.writeObject(this);
-        }
+        if (BinaryModel.isWritable(this))
+            BinaryModel.write(this, fname);
+        else
+            BinaryModel.writeSerialized(this, fname);
     }
 
     /**
@@ -73,7 +76,7 @@ public abstract class OPF implements Serializable, Cloneable {
         logger.info("Reading distances from file");
 
         // create loader
-        Loader loader = new Loader();
+        ByteLoader loader = new ByteLoader();
 
         // check if extension is .csv
         if (filename.endsWith("csv"))
@@ -85,9 +88,20 @@ public abstract class OPF implements Serializable, Cloneable {
             // if yes, call the method that actually loads txt
             preComputedDistances = loader.loadText(filename);
 
+        // check if extension is .dat
+        else if (filename.endsWith(LibOPF.EXTENSION)) {
+            // if yes, read the LibOPF binary distances
+            try {
+                preComputedDistances = LibOPF.readDistances(filename);
+            } catch (IOException e) {
+                logger.severe(e.getMessage());
+                preComputedDistances = null;
+            }
+        }
+
         // if extension is not recognized
         else
-            throw new IllegalArgumentException("File extension not recognized, It should be `.csv` or `.txt`");
+            throw new IllegalArgumentException("File extension not recognized, It should be `.csv`, `.txt` or `.dat`");
 
         // check if distances have been properly loaded
         if (preComputedDistances == null)
@@ -101,6 +115,21 @@ public abstract class OPF implements Serializable, Cloneable {
      * */
     public abstract void fit(INDArray xTrain, INDArray yTrain);
 
+    /**
+     * Fits a view of a dataset in the classifier, without copying its rows.
+     * Nodes are identified by their row in the original dataset, so pre-computed distances
+     * should be the ones of the whole dataset.
+     * @param train the training view.
+     * */
+    public abstract void fit(DatasetView train);
+
+    /**
+     * Fits a feature matrix, e.g. a sparse or quantized one, in the classifier without converting it.
+     * @param xTrain matrix of features.
+     * @param yTrain Array of labels.
+     * */
+    public abstract void fit(FeatureMatrix xTrain, INDArray yTrain);
+
     /**
      * Predicts new data using the pre-trained classifier.
      * @param X Array of features.
@@ -108,6 +137,21 @@ public abstract class OPF implements Serializable, Cloneable {
      * */
     public abstract INDArray predict(INDArray X);
 
+    /**
+     * Predicts a view of a dataset using the pre-trained classifier, without copying its rows.
+     * @param view the view to predict.
+     * @return A list of predictions for each sample of the view.
+     * */
+    public abstract INDArray predict(DatasetView view);
+
+    /**
+     * Predicts a feature matrix, e.g. a sparse or quantized one, using the pre-trained classifier without
+     * converting it. The classifier can be trained on dense features or on a matrix of the same kind.
+     * @param X matrix of features.
+     * @return A list of predictions for each record of the data.
+     * */
+    public abstract INDArray predict(FeatureMatrix X);
+
     /**
      * Gets subgraph.
      *
@@ -124,6 +168,123 @@ public abstract class OPF implements Serializable, Cloneable {
      */
     public void setGraph(Graph graph) {
         this.graph = graph;
+        modelChanged();
+    }
+
+    /**
+     * Gets the version of the classifier.
+     * Each version is unique among all the classifiers, and changes every time the classifier is modified.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        if (version == 0)
+            version = VERSIONS.incrementAndGet();
+        return version;
+    }
+
+    /**
+     * Gets prediction cache.
+     *
+     * @return the prediction cache, or null if predictions are not cached
+     */
+    public PredictionCache getPredictionCache() {
+        return predictionCache;
+    }
+
+    /**
+     * Sets prediction cache.
+     *
+     * @param predictionCache the prediction cache; can be null to disable caching.
+     */
+    public void setPredictionCache(PredictionCache predictionCache) {
+        this.predictionCache = predictionCache;
+    }
+
+    /**
+     * Gets metrics.
+     *
+     * @return the metrics collected by the classifier, or null if metrics are not collected
+     */
+    public OPFMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets metrics.
+     *
+     * @param metrics the metrics to collect training and prediction data into; can be null to disable them.
+     */
+    public void setMetrics(OPFMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets training monitor.
+     *
+     * @return the monitor of the trainings, or null if trainings are not monitored
+     */
+    public TrainingMonitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Sets training monitor, reporting the progress of the next trainings and stopping them on cancellation
+     * or when their budget is over.
+     *
+     * @param monitor the monitor; can be null to disable monitoring.
+     */
+    public void setMonitor(TrainingMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Gets precision.
+     *
+     * @return the floating point precision of the classifier
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Sets precision. The features given to {@code fit} and {@code predict} are cast to it, and arc weights
+     * and path costs are rounded to it; dataset views and pre-computed distances are used as they are stored,
+     * so they should be loaded or computed in the same precision to save their memory.
+     * Double precision is the default one.
+     *
+     * @param precision the precision
+     * @see math.General#precomputeDistances(INDArray, Distance, int, Precision)
+     */
+    public void setPrecision(Precision precision) {
+        if (precision == null)
+            throw new ValueError("The precision cannot be null");
+
+        this.precision = precision;
+        modelChanged();
+    }
+
+    /**
+     * Gets reducer.
+     *
+     * @return the dimensionality reduction of the features, or null if features are used as they are
+     */
+    public Reducer getReducer() {
+        return reducer;
+    }
+
+    /**
+     * Sets reducer. It is fit on the features given to {@code fit}, and reduces them and the ones given to
+     * {@code predict}, so every distance visits fewer values; dataset views are copied to be reduced, so they cannot
+     * be paired with pre-computed distances, and feature matrices cannot be reduced. Pre-computed distances set by
+     * hand for dense features should be the ones of the reduced features.
+     * The reducer is part of the model, and is saved with it.
+     *
+     * @param reducer the reducer; can be null to use the features as they are.
+     */
+    public void setReducer(Reducer reducer) {
+        this.reducer = reducer;
+        modelChanged();
     }
 
     /**
@@ -161,15 +322,126 @@ public abstract class OPF implements Serializable, Cloneable {
      */
     public void setDistance(Distance distance) {
         this.distance = distance;
+        modelChanged();
+    }
+
+    /**
+     * Checks that the pre-computed distances can be used with a graph.
+     * @param graph the graph.
+     * @throws BuildError if some node is not covered by the distance matrix.
+     * */
+    protected void checkPreComputedDistances(Graph graph) {
+        long rows = preComputedDistances.shape()[0];
+        long columns = preComputedDistances.shape()[1];
+
+        // the matrix should be square, and cover the index of every node
+        boolean valid = rows == columns;
+        for (int i = 0; valid && i < graph.getNodes().size(); i++)
+            valid = graph.getNodes().get(i).getIndex() < rows;
+
+        if (!valid)
+            throw new BuildError("Pre-computed distance matrix should have the size of `n_nodes x n_nodes`");
+    }
+
+    /**
+     * Prepares dense features for a training or a prediction: reduces them, fitting the reducer on the training
+     * ones, and casts them to the precision of the classifier.
+     * @param x the features.
+     * @param training whether the features are the training ones.
+     * @return the features to build the graph on.
+     * */
+    protected INDArray prepare(INDArray x, boolean training) {
+        if (reducer != null) {
+            ReduceEvent event = new ReduceEvent();
+            event.begin();
+
+            if (training)
+                reducer.fit(x);
+            x = reducer.transform(x);
+
+            event.commit(x.rows(), reducer.getFeatures(), reducer.getComponents(),
+                    reducer.getClass().getSimpleName(), training);
+        }
+        return precision.cast(x);
+    }
+
+    /**
+     * Checks that features can be used as they are, without a reducer.
+     * @throws BuildError if the classifier has a reducer.
+     * */
+    protected void checkNotReduced() {
+        if (reducer != null)
+            throw new BuildError("Feature matrices cannot be reduced, use dense features or remove the reducer.");
+    }
+
+    /**
+     * Checks that a dataset view can be copied to be reduced: its copy renumbers the nodes, and the pre-computed
+     * distances of the whole dataset are the ones of the features before the reduction.
+     * @throws BuildError if the classifier has pre-computed distances.
+     * */
+    protected void checkReducibleView() {
+        if (isDistancesPrecomputed())
+            throw new BuildError("Reduced dataset views cannot use pre-computed distances, remove the distances " +
+                    "or the reducer.");
+    }
+
+    /**
+     * Copies the fitted reducer, so that a training that does not complete can put back the reducer of the trained
+     * model in place of the one fitted on its features.
+     * @return a copy of the reducer, or null if the classifier has no fitted reducer.
+     * */
+    protected Reducer copyFittedReducer() {
+        if (reducer == null || !reducer.isFitted())
+            return null;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(reducer);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (Reducer) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("The reducer could not be copied", e);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        // distances of DistancesImplementor are restored as copies, which the kernels would not recognise
+        if (distance != null)
+            distance = DistancesImplementor.resolve(distance);
+
+        // classifiers serialized before the precision was introduced are in double precision
+        if (precision == null)
+            precision = Precision.DOUBLE;
     }
 
     protected OPF clone() throws CloneNotSupportedException {
         return (OPF) super.clone();
     }
 
+    /**
+     * Marks the classifier as modified, so that cached predictions become stale.
+     * */
+    protected void modelChanged() {
+        version = VERSIONS.incrementAndGet();
+    }
+
     private static final long serialVersionUID = 1L;
 
+    // generator of the classifiers versions
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
     protected Distance distance;
     protected Graph graph;
     protected INDArray preComputedDistances;
+    protected Precision precision = Precision.DOUBLE;
+    protected Reducer reducer;
+    protected transient PredictionCache predictionCache;
+    protected transient OPFMetrics metrics;
+    protected transient TrainingMonitor monitor;
+    private transient long version;
 }
@@ -0,0 +1,334 @@
+package core;
+
+import utils.exceptions.ValueError;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Training and prediction metrics of a classifier: time spent in each phase, counters of the work done by
+ * the algorithm, and a histogram of the latency of single predictions.
+ * Metrics are collected only when set on the classifier ({@link OPF#setMetrics(OPFMetrics)}): the hot loops
+ * count in local variables, and add them here once per phase, so a disabled (null) metrics costs nothing.
+ * A metrics can be shared by several classifiers, and read while they run; it can be observed through
+ * {@link Listener}s or registered as a JMX MBean.
+ *
+ * @author De Caro Antonio
+ */
+public class OPFMetrics implements OPFMetricsMXBean {
+
+    private static final Logger logger = Logger.getLogger(OPFMetrics.class.getName());
+
+    /**
+     * Class constructor.
+     * */
+    public OPFMetrics() {
+        this.phaseTimes = new LongAdder[Phase.values().length];
+        this.phaseCounts = new LongAdder[Phase.values().length];
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = new LongAdder();
+            phaseCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the completion of a phase, and notifies the listeners.
+     * @param phase the phase.
+     * @param nanos the duration of the phase, in nanoseconds.
+     * @param samples the number of nodes or samples processed by the phase.
+     * */
+    public void phaseCompleted(Phase phase, long nanos, long samples) {
+        phaseTimes[phase.ordinal()].add(nanos);
+        phaseCounts[phase.ordinal()].increment();
+
+        for (Listener listener : listeners)
+            listener.phaseCompleted(phase, nanos, samples);
+    }
+
+    /**
+     * Records the latency of the prediction of a single sample.
+     * @param nanos the latency, in nanoseconds.
+     * */
+    public void predicted(long nanos) {
+        // the bucket `b` counts the latencies in [2^(b-1), 2^b)
+        latencies.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+        predictions.increment();
+    }
+
+    /**
+     * Adds the counters of a phase.
+     * @param evaluations the arc weights evaluated, computed or read from pre-computed distances.
+     * @param inserts the nodes inserted into the heap.
+     * @param updates the costs decreased of nodes already in the heap.
+     * @param removes the nodes removed from the heap.
+     * @param relaxations the paths that improved the cost of a node.
+     * */
+    public void add(long evaluations, long inserts, long updates, long removes, long relaxations) {
+        distanceEvaluations.add(evaluations);
+        heapInserts.add(inserts);
+        heapUpdates.add(updates);
+        heapRemoves.add(removes);
+        this.relaxations.add(relaxations);
+    }
+
+    /**
+     * Adds the prototypes found by a training.
+     * @param prototypes the number of prototypes.
+     * */
+    public void addPrototypes(long prototypes) {
+        this.prototypes.add(prototypes);
+    }
+
+    /**
+     * Adds the nodes conquered by a training, i.e. whose optimum path has been found.
+     * @param conquered the number of nodes.
+     * */
+    public void addConquered(long conquered) {
+        this.conquered.add(conquered);
+    }
+
+    /**
+     * Adds a listener, notified at the end of each phase on the thread running it.
+     * @param listener the listener.
+     * */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener the listener.
+     * */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, as {@code jopf:type=OPFMetrics,name=<name>}.
+     * @param name the name of the metrics.
+     * @return true if the metrics has been registered, false otherwise.
+     * */
+    public boolean register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("jopf:type=OPFMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+            return true;
+        } catch (JMException e) {
+            logger.warning("Metrics could not be registered: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if registered.
+     * */
+    public void unregister() {
+        if (objectName == null)
+            return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warning("Metrics could not be unregistered: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    /**
+     * Gets the total time spent in a phase.
+     * @param phase the phase.
+     * @return the time, in nanoseconds.
+     * */
+    public long getPhaseNanos(Phase phase) {
+        return phaseTimes[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets how many times a phase has been completed.
+     * @param phase the phase.
+     * @return the number of times.
+     * */
+    public long getPhaseCount(Phase phase) {
+        return phaseCounts[phase.ordinal()].sum();
+    }
+
+    /**
+     * Estimates a percentile of the latency of single predictions, as the upper bound of its histogram bucket.
+     * @param percentile the percentile, between 0 and 100.
+     * @return the latency, in nanoseconds, or 0 if nothing has been predicted.
+     * */
+    public long getPredictLatencyPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new ValueError("The percentile must be between 0 and 100");
+
+        long[] histogram = getPredictLatencyHistogram();
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            seen += histogram[b];
+            if (seen >= Math.max(1, rank))
+                return b == 0 ? 0 : b >= 63 ? Long.MAX_VALUE : 1L << b;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public long[] getPredictLatencyHistogram() {
+        long[] histogram = new long[latencies.length()];
+        for (int b = 0; b < histogram.length; b++)
+            histogram[b] = latencies.get(b);
+        return histogram;
+    }
+
+    @Override
+    public long getPredictLatencyP50Nanos() {
+        return getPredictLatencyPercentile(50);
+    }
+
+    @Override
+    public long getPredictLatencyP99Nanos() {
+        return getPredictLatencyPercentile(99);
+    }
+
+    @Override
+    public long getPrototypesNanos() {
+        return getPhaseNanos(Phase.PROTOTYPES);
+    }
+
+    @Override
+    public long getIftNanos() {
+        return getPhaseNanos(Phase.IFT);
+    }
+
+    @Override
+    public long getPredictionNanos() {
+        return getPhaseNanos(Phase.PREDICTION);
+    }
+
+    @Override
+    public long getFits() {
+        return getPhaseCount(Phase.IFT);
+    }
+
+    @Override
+    public long getPredictions() {
+        return predictions.sum();
+    }
+
+    @Override
+    public long getDistanceEvaluations() {
+        return distanceEvaluations.sum();
+    }
+
+    @Override
+    public long getHeapInserts() {
+        return heapInserts.sum();
+    }
+
+    @Override
+    public long getHeapUpdates() {
+        return heapUpdates.sum();
+    }
+
+    @Override
+    public long getHeapRemoves() {
+        return heapRemoves.sum();
+    }
+
+    @Override
+    public long getRelaxations() {
+        return relaxations.sum();
+    }
+
+    @Override
+    public long getPrototypes() {
+        return prototypes.sum();
+    }
+
+    @Override
+    public long getConquered() {
+        return conquered.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i].reset();
+            phaseCounts[i].reset();
+        }
+        for (int b = 0; b < latencies.length(); b++)
+            latencies.set(b, 0);
+        for (LongAdder counter : new LongAdder[]{predictions, distanceEvaluations, heapInserts, heapUpdates,
+                heapRemoves, relaxations, prototypes, conquered})
+            counter.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OPFMetrics{prototypes=%d ms, ift=%d ms, prediction=%d ms, predictions=%d, " +
+                        "p50=%d ns, p99=%d ns, distances=%d, inserts=%d, updates=%d, removes=%d, relaxations=%d, " +
+                        "prototypes=%d, conquered=%d}",
+                getPrototypesNanos() / 1_000_000, getIftNanos() / 1_000_000, getPredictionNanos() / 1_000_000,
+                getPredictions(), getPredictLatencyP50Nanos(), getPredictLatencyP99Nanos(), getDistanceEvaluations(),
+                getHeapInserts(), getHeapUpdates(), getHeapRemoves(), getRelaxations(), getPrototypes(), getConquered());
+    }
+
+    /**
+     * The phases of training and prediction.
+     * */
+    public enum Phase {
+        /**
+         * Search of the prototypes (minimum spanning tree).
+         * */
+        PROTOTYPES,
+        /**
+         * Computation of the optimum paths from the prototypes (IFT).
+         * */
+        IFT,
+        /**
+         * Prediction of a set of samples.
+         * */
+        PREDICTION
+    }
+
+    /**
+     * Listener notified at the end of each phase.
+     * */
+    public interface Listener {
+        /**
+         * Called when a phase is completed.
+         * @param phase the phase.
+         * @param nanos the duration of the phase, in nanoseconds.
+         * @param samples the number of nodes or samples processed by the phase.
+         * */
+        void phaseCompleted(Phase phase, long nanos, long samples);
+    }
+
+    private final LongAdder[] phaseTimes, phaseCounts;
+    private final AtomicLongArray latencies = new AtomicLongArray(65);
+    private final LongAdder predictions = new LongAdder();
+    private final LongAdder distanceEvaluations = new LongAdder();
+    private final LongAdder heapInserts = new LongAdder();
+    private final LongAdder heapUpdates = new LongAdder();
+    private final LongAdder heapRemoves = new LongAdder();
+    private final LongAdder relaxations = new LongAdder();
+    private final LongAdder prototypes = new LongAdder();
+    private final LongAdder conquered = new LongAdder();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ObjectName objectName;
+}
@@ -0,0 +1,90 @@
+package core;
+
+/**
+ * Management interface of {@link OPFMetrics}, so the metrics of a classifier can be scraped through JMX.
+ * Times are cumulative, in nanoseconds.
+ *
+ * @author De Caro Antonio
+ */
+public interface OPFMetricsMXBean {
+
+    /**
+     * @return the time spent finding prototypes.
+     * */
+    long getPrototypesNanos();
+
+    /**
+     * @return the time spent computing the optimum paths.
+     * */
+    long getIftNanos();
+
+    /**
+     * @return the time spent predicting.
+     * */
+    long getPredictionNanos();
+
+    /**
+     * @return the number of completed trainings.
+     * */
+    long getFits();
+
+    /**
+     * @return the number of predicted samples.
+     * */
+    long getPredictions();
+
+    /**
+     * @return the median latency of a single prediction, as the upper bound of its histogram bucket.
+     * */
+    long getPredictLatencyP50Nanos();
+
+    /**
+     * @return the 99th percentile of the latency of a single prediction, as the upper bound of its histogram bucket.
+     * */
+    long getPredictLatencyP99Nanos();
+
+    /**
+     * @return the latency histogram: bucket {@code b} counts the predictions that took [2^(b-1), 2^b) nanoseconds.
+     * */
+    long[] getPredictLatencyHistogram();
+
+    /**
+     * @return the arc weights evaluated, computed or read from pre-computed distances.
+     * */
+    long getDistanceEvaluations();
+
+    /**
+     * @return the nodes inserted into the heap.
+     * */
+    long getHeapInserts();
+
+    /**
+     * @return the costs decreased of nodes already in the heap.
+     * */
+    long getHeapUpdates();
+
+    /**
+     * @return the nodes removed from the heap.
+     * */
+    long getHeapRemoves();
+
+    /**
+     * @return the paths that improved the cost of a node.
+     * */
+    long getRelaxations();
+
+    /**
+     * @return the prototypes found.
+     * */
+    long getPrototypes();
+
+    /**
+     * @return the nodes whose optimum path has been found.
+     * */
+    long getConquered();
+
+    /**
+     * Resets all the metrics.
+     * */
+    void reset();
+}
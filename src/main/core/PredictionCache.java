@@ -0,0 +1,216 @@
+package core;
+
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import utils.exceptions.ValueError;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of predictions, that can be placed in front of the OPF predict path.
+ * Each sample is identified by two independent 64 bits hashes of its raw features and by the
+ * version of the classifier that predicted it, so entries become stale as soon as the classifier
+ * is fitted again, learned or pruned.
+ * The cache is direct mapped: a new entry replaces the one in its slot. Lookups do not allocate.
+ *
+ * @author De Caro Antonio
+ */
+public class PredictionCache {
+
+    /**
+     * Class constructor.
+     * @param capacity the maximum number of cached predictions, rounded up to a power of two.
+     * */
+    public PredictionCache(int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY)
+            throw new ValueError("`capacity` must be > 0 and <= " + MAX_CAPACITY);
+
+        // round the capacity up to a power of two
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        this.slots = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Computes the two hashes of a features array in a single pass over its raw values, read straight from the
+     * buffer when the array is contiguous.
+     * @param features the features array.
+     * @param hashes the array receiving the primary hash, at index 0, and the secondary one used to verify it,
+     *               at index 1; it can be reused by the lookups of a thread.
+     * */
+    public static void hash(INDArray features, long[] hashes) {
+        long length = features.length();
+        long h = SEED_1 ^ length, c = SEED_2 + length;
+
+        // the buffer of a view starts at its first value
+        DataBuffer data = features.data();
+        boolean contiguous = features.elementWiseStride() == 1;
+        if (contiguous && data.dataType() == DataType.DOUBLE) {
+            DoubleIndexer indexer = (DoubleIndexer) data.indexer();
+            for (long i = 0; i < length; i++) {
+                long bits = Double.doubleToRawLongBits(indexer.get(i));
+                h = Long.rotateLeft((h ^ bits) * PRIME_1, 31) * PRIME_2;
+                c = (c + bits) * PRIME_3 + (c >>> 29);
+            }
+        } else if (contiguous && data.dataType() == DataType.FLOAT) {
+            FloatIndexer indexer = (FloatIndexer) data.indexer();
+            for (long i = 0; i < length; i++) {
+                long bits = Float.floatToRawIntBits(indexer.get(i));
+                h = Long.rotateLeft((h ^ bits) * PRIME_1, 31) * PRIME_2;
+                c = (c + bits) * PRIME_3 + (c >>> 29);
+            }
+        } else {
+            boolean single = data.dataType() == DataType.FLOAT;
+            for (long i = 0; i < length; i++) {
+                long bits = single ? Float.floatToRawIntBits(features.getFloat(i))
+                        : Double.doubleToRawLongBits(features.getDouble(i));
+                h = Long.rotateLeft((h ^ bits) * PRIME_1, 31) * PRIME_2;
+                c = (c + bits) * PRIME_3 + (c >>> 29);
+            }
+        }
+
+        hashes[0] = mix(h);
+        hashes[1] = mix(c);
+    }
+
+    /**
+     * Computes the primary hash of a features array.
+     * @param features the features array.
+     * @return the hash value.
+     * @see #hash(INDArray, long[])
+     * */
+    public static long hash(INDArray features) {
+        long[] hashes = new long[2];
+        hash(features, hashes);
+        return hashes[0];
+    }
+
+    /**
+     * Looks up a prediction.
+     * @param version the version of the classifier.
+     * @param hash the primary hash of the sample.
+     * @param check the secondary hash of the sample.
+     * @return the cached entry, or null if there is no such entry.
+     * */
+    public Entry get(long version, long hash, long check) {
+        Entry entry = slots[(int) hash & mask];
+        if (entry != null && entry.version == version && entry.hash == hash && entry.check == check) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a prediction.
+     * @param version the version of the classifier.
+     * @param hash the primary hash of the sample.
+     * @param check the secondary hash of the sample.
+     * @param label the predicted label.
+     * @param conqueror the identifier of the conqueror node, or NIL if none.
+     * */
+    public void put(long version, long hash, long check, int label, int conqueror) {
+        // entries are immutable, so they can be safely published without locking
+        slots[(int) hash & mask] = new Entry(version, hash, check, label, conqueror);
+    }
+
+    /**
+     * Removes every cached prediction.
+     * */
+    public void clear() {
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = null;
+    }
+
+    /**
+     * @return the capacity of the cache.
+     * */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return the number of lookups served by the cache.
+     * */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups not served by the cache.
+     * */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio between hits and lookups, or 0 if there were no lookups.
+     * */
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Final mixing step of the hashes.
+     * */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * A cached prediction.
+     * */
+    public static final class Entry {
+        Entry(long version, long hash, long check, int label, int conqueror) {
+            this.version = version;
+            this.hash = hash;
+            this.check = check;
+            this.label = label;
+            this.conqueror = conqueror;
+        }
+
+        /**
+         * @return the predicted label.
+         * */
+        public int getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the identifier of the conqueror node, or NIL if none.
+         * */
+        public int getConqueror() {
+            return conqueror;
+        }
+
+        private final long version, hash, check;
+        private final int label, conqueror;
+    }
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private static final long SEED_1 = 0x9e3779b97f4a7c15L;
+    private static final long SEED_2 = 0x632be59bd9b4e019L;
+    private static final long PRIME_1 = 0x87c37b91114253d5L;
+    private static final long PRIME_2 = 0x4cf5ad432745937fL;
+    private static final long PRIME_3 = 0x100000001b3L;
+
+    private final Entry[] slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+}
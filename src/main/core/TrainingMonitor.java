@@ -0,0 +1,154 @@
+package core;
+
+import utils.exceptions.CancelledError;
+import utils.exceptions.ValueError;
+
+import java.time.Duration;
+
+/**
+ * Monitors a training: reports its progress to a listener, and stops it when it is cancelled or when its
+ * wall-clock budget is over. The budget starts with the first training call ({@code fit}, {@code learn} or
+ * {@code prune}), so the trainings nested in {@code learn} and {@code prune} share it.
+ * A cancelled or expired {@code fit} throws a {@link CancelledError}, leaving the classifier as it was before;
+ * {@code learn} and {@code prune} keep the best classifier found so far instead.
+ * A monitor is meant for a single training job: once cancelled or expired, it stays so.
+ *
+ * @author De Caro Antonio
+ */
+public class TrainingMonitor {
+
+    /**
+     * Class constructor, for a training without time budget.
+     * */
+    public TrainingMonitor() {
+        this(null);
+    }
+
+    /**
+     * Class constructor.
+     * @param budget the wall-clock budget of the training; can be null for no budget.
+     * @throws ValueError if the budget is negative.
+     * */
+    public TrainingMonitor(Duration budget) {
+        if (budget != null && budget.isNegative())
+            throw new ValueError("The budget must be a non negative duration");
+
+        this.budget = budget;
+        this.lastSteps = new int[Phase.values().length];
+    }
+
+    /**
+     * Sets the listener of the progress.
+     * @param listener the listener; can be null to not report the progress.
+     * */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Cancels the training. It can be called from any thread; the training stops at its next check.
+     * */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the training has been cancelled.
+     * */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the budget of the training is over.
+     * */
+    public boolean isExpired() {
+        return budget != null && started && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @return true if the training should stop, being cancelled or out of budget.
+     * */
+    public boolean isStopped() {
+        return isCancelled() || isExpired();
+    }
+
+    /**
+     * Checks whether the training should go on.
+     * @throws CancelledError if the training has been cancelled, or its budget is over.
+     * */
+    public void check() {
+        if (cancelled)
+            throw new CancelledError("The training has been cancelled");
+        if (isExpired())
+            throw new CancelledError("The training budget of " + budget.toMillis() + " milliseconds is over");
+    }
+
+    /**
+     * Marks the beginning of a training. The budget starts with the first one.
+     * */
+    public void start() {
+        if (!started) {
+            deadline = budget != null ? System.nanoTime() + budget.toNanos() : 0;
+            started = true;
+        }
+    }
+
+    /**
+     * Reports the progress of a phase. The listener is notified only when the completed fraction
+     * moves by at least one percent, so this can be called at every iteration.
+     * @param phase the phase.
+     * @param done the units of work done.
+     * @param total the units of work of the whole phase.
+     * */
+    public void progress(Phase phase, long done, long total) {
+        if (listener == null || total <= 0)
+            return;
+
+        int step = (int) (done * STEPS / total);
+        if (step == lastSteps[phase.ordinal()])
+            return;
+
+        lastSteps[phase.ordinal()] = step;
+        listener.progress(phase, (double) done / total);
+    }
+
+    /**
+     * The phases of a training.
+     * */
+    public enum Phase {
+        /**
+         * Search of the prototypes: fraction of the nodes of the minimum spanning tree.
+         * */
+        PROTOTYPES,
+        /**
+         * Computation of the optimum paths: fraction of the nodes conquered.
+         * */
+        IFT,
+        /**
+         * Learning over a validation set: fraction of the iterations.
+         * */
+        LEARN
+    }
+
+    /**
+     * Listener of the progress of a training.
+     * */
+    public interface Listener {
+        /**
+         * Called when the progress of a phase changes.
+         * @param phase the phase.
+         * @param fraction the completed fraction of the phase, between 0 and 1.
+         * */
+        void progress(Phase phase, double fraction);
+    }
+
+    // number of progress notifications in a phase
+    private static final int STEPS = 100;
+
+    private final Duration budget;
+    private final int[] lastSteps;
+    private volatile Listener listener;
+    private volatile boolean cancelled, started;
+    private volatile long deadline;
+}
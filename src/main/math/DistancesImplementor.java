@@ -2,6 +2,10 @@ package math;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
 import utils.Constants;
+import utils.exceptions.ValueError;
+
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Method;
 
 /**
  * This class implements different ways to calculate the distance between two points.
@@ -33,4 +37,97 @@ public class DistancesImplementor {
         // calculates the squared euclidean distance for each dimension
         return Constants.MAX_ARC_WEIGHT * Math.log(euclideanDistance.calculate(x, y) + 1);
     };
+
+    /**
+     * Gets the name of a distance function, used to store it in model files.
+     * @param distance the distance function.
+     * @return the name of the distance, or an empty string if it is not one of this class.
+     * */
+    public static String getName(Distance distance) {
+        if (distance == euclideanDistance)
+            return EUCLIDEAN_DISTANCE;
+        else if (distance == logEuclideanDistance)
+            return LOG_EUCLIDEAN_DISTANCE;
+        else if (distance == logSquaredEuclideanDistance)
+            return LOG_SQUARED_EUCLIDEAN_DISTANCE;
+        else
+            return "";
+    }
+
+    /**
+     * Gets a distance function given its name.
+     * @param name the name of the distance.
+     * @return the distance function.
+     * @throws ValueError if the name is not one of a distance of this class.
+     * */
+    public static Distance fromName(String name) {
+        switch (name) {
+            case EUCLIDEAN_DISTANCE:
+                return euclideanDistance;
+            case LOG_EUCLIDEAN_DISTANCE:
+                return logEuclideanDistance;
+            case LOG_SQUARED_EUCLIDEAN_DISTANCE:
+                return logSquaredEuclideanDistance;
+            default:
+                throw new ValueError("Distance function not supported: '" + name + "'");
+        }
+    }
+
+    /**
+     * Gets the distance of this class a deserialized distance stands for: serialization restores a copy of the
+     * lambda, which the identity checks of this class would not recognise.
+     * @param distance the deserialized distance function.
+     * @return the distance of this class with the same implementation, or the given one if there is none.
+     * */
+    public static Distance resolve(Distance distance) {
+        String method = getImplementation(distance);
+        if (method == null)
+            return distance;
+        for (Distance d : new Distance[] {euclideanDistance, logEuclideanDistance, logSquaredEuclideanDistance})
+            if (d == distance || method.equals(getImplementation(d)))
+                return d;
+        return distance;
+    }
+
+    /**
+     * @return the name of the method of this class implementing a lambda distance, or null if it is not one.
+     * */
+    private static String getImplementation(Distance distance) {
+        try {
+            Method writeReplace = distance.getClass().getDeclaredMethod("writeReplace");
+            writeReplace.setAccessible(true);
+            Object replacement = writeReplace.invoke(distance);
+            if (!(replacement instanceof SerializedLambda))
+                return null;
+            SerializedLambda lambda = (SerializedLambda) replacement;
+            if (!lambda.getImplClass().equals(DistancesImplementor.class.getName().replace('.', '/')))
+                return null;
+            return lambda.getImplMethodName();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes a distance given the squared euclidean distance between two points, as accumulated by
+     * {@link DistancesImplementor#euclideanDistance}. Used by kernels that do not work on arrays.
+     * @param distance the distance function, one of this class.
+     * @param squared the squared euclidean distance.
+     * @return the distance.
+     * @throws IllegalArgumentException if the distance is not one of this class.
+     * */
+    public static double fromSquaredEuclidean(Distance distance, float squared) {
+        if (distance == euclideanDistance)
+            return squared;
+        else if (distance == logEuclideanDistance)
+            return Constants.MAX_ARC_WEIGHT * Math.log(Math.sqrt((double) squared + 1));
+        else if (distance == logSquaredEuclideanDistance)
+            return Constants.MAX_ARC_WEIGHT * Math.log((double) squared + 1);
+        else
+            throw new IllegalArgumentException("Distance function not supported");
+    }
+
+    private static final String EUCLIDEAN_DISTANCE = "euclideanDistance";
+    private static final String LOG_EUCLIDEAN_DISTANCE = "logEuclideanDistance";
+    private static final String LOG_SQUARED_EUCLIDEAN_DISTANCE = "logSquaredEuclideanDistance";
 }
@@ -0,0 +1,64 @@
+package math;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Serializable;
+
+/**
+ * A matrix of features with its own storage, e.g. sparse or quantized, whose rows are the features of the nodes of
+ * a graph. It computes the squared euclidean distance between its rows, and between a row and a dense vector;
+ * the distances of {@link DistancesImplementor} are derived from it.
+ *
+ * @author De Caro Antonio
+ * @see SparseMatrix
+ * @see QuantizedMatrix
+ */
+public interface FeatureMatrix extends Serializable {
+
+    /**
+     * @return the number of rows.
+     * */
+    int rows();
+
+    /**
+     * @return the number of columns.
+     * */
+    int columns();
+
+    /**
+     * @return the bytes of the stored values and of the arrays derived from them, e.g. indexes and norms.
+     * */
+    long bytes();
+
+    /**
+     * @param row the row.
+     * @return the squared norm of the row.
+     * */
+    float squaredNorm(int row);
+
+    /**
+     * Computes the squared euclidean distance between a row and a row of another matrix of the same kind.
+     * @param row the row of this matrix.
+     * @param other the other matrix.
+     * @param otherRow the row of the other matrix.
+     * @return the squared euclidean distance.
+     * @throws IllegalArgumentException if the other matrix is of another kind.
+     * */
+    float squaredDistance(int row, FeatureMatrix other, int otherRow);
+
+    /**
+     * Computes the squared euclidean distance between a row and a dense vector.
+     * @param row the row of this matrix.
+     * @param dense the dense vector.
+     * @param denseSquaredNorm the squared norm of the dense vector.
+     * @return the squared euclidean distance.
+     * */
+    float squaredDistance(int row, INDArray dense, float denseSquaredNorm);
+
+    /**
+     * Computes the hash of the values of a row.
+     * @param row the row.
+     * @return the hash.
+     * */
+    int hash(int row);
+}
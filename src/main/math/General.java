@@ -2,13 +2,12 @@ package math;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import utils.ExecutionRuntime;
+import utils.Precision;
+import utils.events.PrecomputeEvent;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -103,6 +102,8 @@ public class General {
      * */
     public static INDArray precomputeDistances(INDArray data, Distance distance) {
         logger.info("Pre computing distances ...");
+        PrecomputeEvent event = new PrecomputeEvent();
+        event.begin();
         int len = data.rows();
 
         INDArray distances = Nd4j.zeros(len, len);
@@ -115,15 +116,16 @@ public class General {
             }
         }
 
+        event.commit(len, 1, DistancesImplementor.getName(distance));
         logger.info("Distances precomputed.");
         return distances;
     }
 
     /**
-     * Computes distances of a given dataset with parallelization.
+     * Computes distances of a given dataset with parallelization, on the threads of the {@link ExecutionRuntime}.
      * @param data features data
      * @param distance distance functions
-     * @param threads number of threads
+     * @param threads maximum number of threads to use
      * @return the distances
      * */
     public static INDArray precomputeDistances(INDArray data, Distance distance, int threads) {
@@ -136,55 +138,51 @@ public class General {
             return General.precomputeDistances(data, distance);
         }
 
-        int len = data.rows();
-
-        INDArray distances = Nd4j.zeros(len, len);
-
-        class Worker implements Runnable {
-            Worker(int len, ArrayList<Integer> slice, INDArray distances) {
-                this.len = len;
-                this.slice = slice;
-                this.distances = distances;
-            }
+        return precomputeDistances(data, distance, threads, Nd4j.zeros(data.rows(), data.rows()),
+                Precision.DOUBLE);
+    }
 
-            @Override
-            public void run() {
-                for (int i : slice) {
-                    for (int j = 0; j < len; j++) {
-                        if (i == j)
-                            continue;
-                        distances.putScalar(new int[]{i, j}, distance.calculate(data.getRow(i), data.getRow(j)));
-                    }
-                }
-            }
+    /**
+     * Computes distances of a given dataset with parallelization, in a given precision. Single precision
+     * takes half of the memory of double precision.
+     * @param data features data
+     * @param distance distance functions
+     * @param threads maximum number of threads to use
+     * @param precision the precision of the distances
+     * @return the distances
+     * */
+    public static INDArray precomputeDistances(INDArray data, Distance distance, int threads, Precision precision) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("The number of threads has to be greater or equals 1");
 
-            private final int len;
-            private final ArrayList<Integer> slice;
-            private final INDArray distances;
-        }
+        return precomputeDistances(data, distance, threads,
+                Nd4j.zeros(precision.getDataType(), data.rows(), data.rows()), precision);
+    }
 
-        ArrayList<Integer>[] slices = new ArrayList[threads];
-        for (int i = 0, j = 0; i < len; i++) {
-            if (slices[j] == null)
-                slices[j] = new ArrayList<>();
-            slices[j].add(i);
-            j = (j + 1) % threads;
-        }
+    /**
+     * Computes distances of a given dataset into a matrix, rounding them to a precision.
+     * */
+    private static INDArray precomputeDistances(INDArray data, Distance distance, int threads,
+                                                INDArray distances, Precision precision) {
+        int len = data.rows();
 
         logger.info("Pre computing distances ...");
+        PrecomputeEvent event = new PrecomputeEvent();
+        event.begin();
+
+        // rows are balanced among the threads of the runtime
+        ExecutionRuntime.forEach(0, len, threads, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                for (int j = 0; j < len; j++) {
+                    if (i == j)
+                        continue;
+                    double weight = distance.calculate(data.getRow(i), data.getRow(j));
+                    distances.putScalar(i, j, precision.round(weight));
+                }
+            }
+        });
 
-        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads);
-
-        for (int i = 0; i < threads; i++) {
-            executor.execute(new Worker(len, slices[i], distances));
-        }
-        executor.shutdown();
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            logger.severe(e.getLocalizedMessage());
-        }
-
+        event.commit(len, threads, DistancesImplementor.getName(distance));
         logger.info("Distances precomputed.");
         return distances;
     }
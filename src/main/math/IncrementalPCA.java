@@ -0,0 +1,148 @@
+package math;
+
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.eigen.Eigen;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+/**
+ * Reduces the features to their principal components, fitted a batch of samples at a time (Ross et al.,
+ * "Incremental Learning for Robust Visual Tracking"), so the memory needed is linear in the number of features
+ * rather than quadratic as for the covariance matrix.
+ * Each batch is stacked under the current components, scaled by their singular values, and a row correcting the
+ * change of the mean; the top right singular vectors of the stack are the new components. The singular vectors are
+ * computed from the eigenvectors of the small {@code stack * stack^T} matrix.
+ *
+ * @author De Caro Antonio
+ */
+public class IncrementalPCA extends LinearReducer {
+
+    /**
+     * Class constructor, with batches of five times the components.
+     * @param components the number of components the features are reduced to.
+     * */
+    public IncrementalPCA(int components) {
+        this(components, 5 * components);
+    }
+
+    /**
+     * Class constructor.
+     * @param components the number of components the features are reduced to.
+     * @param batchSize the number of samples of each batch, at least the components.
+     * @throws ValueError if the batches are smaller than the components.
+     * */
+    public IncrementalPCA(int components, int batchSize) {
+        super(components);
+        if (batchSize < components)
+            throw new ValueError("The batches should have at least as many samples as the components");
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void fit(INDArray x) {
+        long rows = x.rows();
+        if (rows < getComponents() || x.columns() < getComponents())
+            throw new SizeError(String.format("Fitting %d components needs at least %d samples and features",
+                    getComponents(), getComponents()));
+
+        samples = 0;
+        singularValues = null;
+        for (long start = 0; start < rows; start += batchSize) {
+            // the last batch joins the previous one, if it is smaller than the components
+            long end = rows - (start + batchSize) < getComponents() ? rows : start + batchSize;
+            partialFit(x.get(NDArrayIndex.interval(start, end), NDArrayIndex.all()));
+            start = end - batchSize;
+        }
+    }
+
+    /**
+     * Updates the components with a batch of samples. The first batch should have at least as many samples as the
+     * components.
+     * @param batch the (rows, features) batch.
+     * @throws SizeError if the batch has not the features of the previous ones, or the first batch is too small.
+     * */
+    public void partialFit(INDArray batch) {
+        int k = getComponents();
+        batch = batch.castTo(DataType.DOUBLE);
+        long rows = batch.rows();
+        if (samples == 0 && (rows < k || batch.columns() < k))
+            throw new SizeError(String.format("The first batch should have at least %d samples and features", k));
+        if (samples > 0 && batch.columns() != getFeatures())
+            throw new SizeError(String.format("Samples should have %d features, found %d", getFeatures(),
+                    batch.columns()));
+
+        INDArray batchMean = batch.mean(0).reshape(1, batch.columns());
+        INDArray stack = batch.subRowVector(batchMean);
+        INDArray mean = batchMean;
+        if (samples > 0) {
+            // the previous components, and the shift of the mean
+            INDArray previousMean = getMean();
+            double total = samples + rows;
+            INDArray scaled = getProjection().transpose().mulColumnVector(singularValues);
+            INDArray correction = previousMean.sub(batchMean).muli(Math.sqrt(samples * rows / total));
+            stack = Nd4j.vstack(scaled, stack, correction);
+            mean = previousMean.mul(samples / total).addi(batchMean.mul(rows / total));
+        }
+
+        // right singular vectors of the stack, from the eigenvectors of stack * stack^T (ascending eigenvalues)
+        INDArray gram = stack.mmul(stack.transpose());
+        INDArray eigenvalues = Eigen.symmetricGeneralizedEigenvalues(gram, true);
+        int size = (int) eigenvalues.length();
+
+        INDArray components = Nd4j.zeros(DataType.DOUBLE, k, stack.columns());
+        INDArray values = Nd4j.zeros(DataType.DOUBLE, k, 1);
+        for (int c = 0; c < k; c++) {
+            int e = size - 1 - c;
+            double value = Math.sqrt(Math.max(eigenvalues.getDouble(e), 0.0));
+            values.putScalar(c, 0, value);
+            // a null singular value leaves the component null
+            if (value > EPSILON)
+                components.putRow(c, gram.getColumn(e).reshape(1, size).mmul(stack).divi(value));
+        }
+
+        samples += rows;
+        singularValues = values;
+        setProjection(mean, components.transpose());
+    }
+
+    /**
+     * @return the batch size.
+     * */
+    @Override
+    public long[] getParameters() {
+        return new long[] {batchSize};
+    }
+
+    @Override
+    protected void setParameters(long[] parameters) {
+        if (parameters.length != 1 || parameters[0] < getComponents() || parameters[0] > Integer.MAX_VALUE)
+            throw new ValueError("Incremental PCA parameters should be a batch size, at least the components");
+        batchSize = (int) parameters[0];
+    }
+
+    /**
+     * @return the number of samples of each batch.
+     * */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of samples fitted so far.
+     * */
+    public long getSamples() {
+        return samples;
+    }
+
+    private static final long serialVersionUID = 1L;
+    // singular values below it are null
+    private static final double EPSILON = 1e-12;
+
+    private int batchSize;
+    private long samples;
+    // (components, 1) singular values of the fitted samples
+    private INDArray singularValues;
+}
@@ -0,0 +1,142 @@
+package math;
+
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import utils.exceptions.BuildError;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A reduction that centers the features and projects them on a matrix: {@code (x - mean) * projection}.
+ * The fitted state is only the mean and the projection, so models can store it and restore it with
+ * {@link #setProjection(INDArray, INDArray)}, whatever the way it was fitted.
+ *
+ * @author De Caro Antonio
+ */
+public abstract class LinearReducer implements Reducer {
+
+    /**
+     * Class constructor.
+     * @param components the number of components the features are reduced to.
+     * @throws ValueError if the components are not positive.
+     * */
+    protected LinearReducer(int components) {
+        if (components <= 0)
+            throw new ValueError("The number of components should be positive");
+        this.components = components;
+    }
+
+    /**
+     * Restores a saved reduction, with its class, its parameters and its fitted state.
+     * @param type the name of the class of the reduction, having a constructor taking the components.
+     * @param components the number of components.
+     * @param parameters the parameters of the reduction, see {@link #getParameters()}; an empty array keeps the
+     *                   default ones, e.g. for models saved before the parameters were.
+     * @param mean the mean of the features.
+     * @param projection the (features, components) projection.
+     * @return the fitted reduction.
+     * @throws ValueError if the class is not a linear reduction, or the parameters are not the ones of the class.
+     * */
+    public static LinearReducer restore(String type, int components, long[] parameters, INDArray mean,
+                                        INDArray projection) {
+        LinearReducer reducer;
+        try {
+            Class<?> reducerClass = Class.forName(type);
+            if (!LinearReducer.class.isAssignableFrom(reducerClass))
+                throw new ValueError("Reducer type not supported: " + type);
+            reducer = (LinearReducer) reducerClass.getConstructor(int.class).newInstance(components);
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException |
+                IllegalAccessException | InvocationTargetException e) {
+            throw new ValueError("Reducer type not supported: " + type);
+        }
+
+        if (parameters.length > 0)
+            reducer.setParameters(parameters);
+        reducer.setProjection(mean, projection);
+        return reducer;
+    }
+
+    @Override
+    public INDArray transform(INDArray x) {
+        if (!isFitted())
+            throw new BuildError("The reducer has not been fitted.");
+        if (x.columns() != getFeatures())
+            throw new SizeError(String.format("Samples should have %d features, found %d", getFeatures(),
+                    x.columns()));
+
+        return x.castTo(DataType.DOUBLE).subRowVector(mean).mmul(projection);
+    }
+
+    @Override
+    public boolean isFitted() {
+        return projection != null;
+    }
+
+    @Override
+    public int getFeatures() {
+        return projection == null ? 0 : projection.rows();
+    }
+
+    @Override
+    public int getComponents() {
+        return components;
+    }
+
+    /**
+     * @return the mean subtracted from the features, or null if the reduction has not been fitted.
+     * */
+    public INDArray getMean() {
+        return mean;
+    }
+
+    /**
+     * @return the (features, components) projection, or null if the reduction has not been fitted.
+     * */
+    public INDArray getProjection() {
+        return projection;
+    }
+
+    /**
+     * Gets the configuration of the reduction besides the components, e.g. the seed of a random projection, so that
+     * models can store it and restore it with {@link #restore(String, int, long[], INDArray, INDArray)}.
+     * @return the parameters; none by default.
+     * */
+    public long[] getParameters() {
+        return new long[0];
+    }
+
+    /**
+     * Sets the configuration of a restored reduction.
+     * @param parameters the parameters, as returned by {@link #getParameters()}.
+     * @throws ValueError if the parameters are not the ones of the reduction.
+     * */
+    protected void setParameters(long[] parameters) {
+        if (parameters.length != 0)
+            throw new ValueError(getClass().getName() + " has no parameters");
+    }
+
+    /**
+     * Sets the fitted state, e.g. to restore a saved reduction.
+     * @param mean the mean of the features.
+     * @param projection the (features, components) projection.
+     * @throws SizeError if the mean has not a value for each feature, or the projection has not the components of
+     *                   the reduction.
+     * */
+    public void setProjection(INDArray mean, INDArray projection) {
+        if (projection.rank() != 2 || projection.columns() != components)
+            throw new SizeError(String.format("The projection should be a (features, %d) matrix", components));
+        if (mean.length() != projection.rows())
+            throw new SizeError(String.format("The mean should have %d features", projection.rows()));
+
+        this.mean = mean.castTo(DataType.DOUBLE).reshape(1, projection.rows());
+        this.projection = projection.castTo(DataType.DOUBLE);
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    private final int components;
+    private INDArray mean;
+    private INDArray projection;
+}
@@ -0,0 +1,402 @@
+package math;
+
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.util.Arrays;
+
+/**
+ * A matrix of features quantized to one byte per value, stored row-major: the value of column {@code j} is
+ * {@code offset[j] + scale[j] * code}, with the scale and offset of the whole dataset or of each feature.
+ * <ul>
+ *     <li>{@link Type#UINT8} maps the range {@code [min, max]} to the codes {@code 0 ... 255};</li>
+ *     <li>{@link Type#INT8} maps the range {@code [-max|x|, max|x|]} to the codes {@code -127 ... 127}, so zero is
+ *     kept exactly and the offset is zero.</li>
+ * </ul>
+ * Rows of matrices sharing the same parameters, e.g. a training set and a test set quantized with
+ * {@link #quantizeLike(INDArray)}, are compared without dequantizing: the offsets cancel out, so with a scale per
+ * dataset the squared euclidean distance is {@code scale^2 * sum((a - b)^2)}, accumulated in integers, and with a
+ * scale per feature it is {@code sum(scale[j]^2 * (a - b)^2)}. Both kernels have a vectorized path, used by
+ * default, whose loops are branch-free with one accumulator, the shape the JIT turns into SIMD code, and a scalar
+ * path, one value at a time, as a reference. Other rows, and dense vectors, are compared on the dequantized values.
+ *
+ * @author De Caro Antonio
+ */
+public class QuantizedMatrix implements FeatureMatrix {
+
+    /**
+     * The kind of the codes.
+     * */
+    public enum Type {
+        /** Unsigned codes in {@code [0, 255]}, mapping the range of the values. */
+        UINT8,
+        /** Signed codes in {@code [-127, 127]}, mapping a range symmetric around zero. */
+        INT8
+    }
+
+    /**
+     * Quantizes a dense matrix.
+     * @param x the (rows, columns) dense matrix.
+     * @param type the kind of the codes.
+     * @param perFeature whether each feature gets its own scale and offset, rather than sharing them.
+     * @return the quantized matrix.
+     * @throws SizeError if the matrix is not two-dimensional.
+     * */
+    public static QuantizedMatrix quantize(INDArray x, Type type, boolean perFeature) {
+        if (x.rank() != 2)
+            throw new SizeError("Quantized features should be a (rows, columns) matrix");
+
+        int rows = x.rows();
+        int columns = x.columns();
+        float[] data = values(x);
+
+        // the range of each feature, or of the whole dataset
+        float[] min = new float[columns], max = new float[columns];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                float value = data[i * columns + j];
+                min[j] = Math.min(min[j], value);
+                max[j] = Math.max(max[j], value);
+            }
+        }
+        if (!perFeature) {
+            float globalMin = Float.POSITIVE_INFINITY, globalMax = Float.NEGATIVE_INFINITY;
+            for (int j = 0; j < columns; j++) {
+                globalMin = Math.min(globalMin, min[j]);
+                globalMax = Math.max(globalMax, max[j]);
+            }
+            Arrays.fill(min, globalMin);
+            Arrays.fill(max, globalMax);
+        }
+
+        float[] scales = new float[columns], offsets = new float[columns];
+        for (int j = 0; j < columns; j++) {
+            float scale;
+            if (type == Type.UINT8) {
+                scale = (max[j] - min[j]) / 255;
+                offsets[j] = rows == 0 ? 0.0f : min[j];
+            } else {
+                scale = Math.max(Math.abs(min[j]), Math.abs(max[j])) / 127;
+            }
+            // constant features only need a code
+            scales[j] = scale > 0 && Float.isFinite(scale) ? scale : 1.0f;
+        }
+
+        return new QuantizedMatrix(type, perFeature, columns, encode(data, rows, columns, type, scales, offsets),
+                scales, offsets);
+    }
+
+    /**
+     * Quantizes a dense matrix with the parameters of this one, e.g. a test set with those of the training set,
+     * so that their rows are compared with the integer kernels. Values out of the range of this matrix are clamped.
+     * @param x the (rows, columns) dense matrix.
+     * @return the quantized matrix, sharing the parameters of this one.
+     * @throws SizeError if the matrix has a different number of columns.
+     * */
+    public QuantizedMatrix quantizeLike(INDArray x) {
+        if (x.rank() != 2 || x.columns() != columns)
+            throw new SizeError(String.format("Quantized features should be a (rows, %d) matrix", columns));
+
+        int rows = x.rows();
+        return new QuantizedMatrix(type, perFeature, columns, encode(values(x), rows, columns, type, scales, offsets),
+                scales, offsets);
+    }
+
+    private QuantizedMatrix(Type type, boolean perFeature, int columns, byte[] codes, float[] scales,
+                            float[] offsets) {
+        this.type = type;
+        this.perFeature = perFeature;
+        this.rows = columns == 0 ? 0 : codes.length / columns;
+        this.columns = columns;
+        this.codes = codes;
+        this.scales = scales;
+        this.offsets = offsets;
+
+        this.weights = new float[columns];
+        for (int j = 0; j < columns; j++)
+            weights[j] = scales[j] * scales[j];
+
+        this.squaredNorms = new float[rows];
+        for (int i = 0; i < rows; i++) {
+            float norm = 0.0f;
+            for (int j = 0; j < columns; j++) {
+                float value = value(i, j);
+                norm += value * value;
+            }
+            squaredNorms[i] = norm;
+        }
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @return the kind of the codes.
+     * */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return whether each feature has its own scale and offset.
+     * */
+    public boolean isPerFeature() {
+        return perFeature;
+    }
+
+    /**
+     * @param column the column.
+     * @return the scale of the column.
+     * */
+    public float getScale(int column) {
+        return scales[column];
+    }
+
+    /**
+     * @param column the column.
+     * @return the offset of the column.
+     * */
+    public float getOffset(int column) {
+        return offsets[column];
+    }
+
+    /**
+     * @param row the row.
+     * @param column the column.
+     * @return the code of the value, in {@code [0, 255]} or {@code [-127, 127]}.
+     * */
+    public int getCode(int row, int column) {
+        return code(codes[row * columns + column]);
+    }
+
+    /**
+     * @param row the row.
+     * @param column the column.
+     * @return the dequantized value.
+     * */
+    public float value(int row, int column) {
+        return offsets[column] + scales[column] * getCode(row, column);
+    }
+
+    /**
+     * @param other another quantized matrix.
+     * @return whether the rows of the two matrices are compared on their codes.
+     * */
+    public boolean sharesParameters(QuantizedMatrix other) {
+        return type == other.type && scales == other.scales && offsets == other.offsets;
+    }
+
+    @Override
+    public long bytes() {
+        return codes.length + 4L * (scales.length + offsets.length + weights.length + squaredNorms.length);
+    }
+
+    @Override
+    public float squaredNorm(int row) {
+        return squaredNorms[row];
+    }
+
+    @Override
+    public float squaredDistance(int row, FeatureMatrix other, int otherRow) {
+        return squaredDistance(row, other, otherRow, true);
+    }
+
+    /**
+     * Computes the squared euclidean distance between a row and a row of another quantized matrix with the
+     * scalar kernels, one value at a time; they are the reference of the vectorized ones.
+     * @param row the row of this matrix.
+     * @param other the other matrix.
+     * @param otherRow the row of the other matrix.
+     * @return the squared euclidean distance.
+     * @throws IllegalArgumentException if the other matrix is not quantized.
+     * */
+    public float squaredDistanceScalar(int row, FeatureMatrix other, int otherRow) {
+        return squaredDistance(row, other, otherRow, false);
+    }
+
+    @Override
+    public float squaredDistance(int row, INDArray dense, float denseSquaredNorm) {
+        if (dense.length() != columns)
+            throw new SizeError(String.format("Dense vector has %d features, expected %d", dense.length(), columns));
+
+        int from = row * columns;
+        float sum = 0.0f;
+        for (int j = 0; j < columns; j++) {
+            float d = offsets[j] + scales[j] * code(codes[from + j]) - dense.getFloat(j);
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public int hash(int row) {
+        int h = 1;
+        for (int j = row * columns; j < (row + 1) * columns; j++)
+            h = 31 * h + codes[j];
+        return 31 * h + Arrays.hashCode(scales) + 31 * Arrays.hashCode(offsets);
+    }
+
+    private float squaredDistance(int row, FeatureMatrix other, int otherRow, boolean vectorized) {
+        if (!(other instanceof QuantizedMatrix))
+            throw new IllegalArgumentException("Quantized features can only be compared with dense or quantized ones");
+
+        QuantizedMatrix quantized = (QuantizedMatrix) other;
+        if (quantized.columns != columns)
+            throw new SizeError(String.format("Quantized rows have %d and %d features", columns, quantized.columns));
+
+        int from = row * columns, otherFrom = otherRow * columns;
+        if (!sharesParameters(quantized))
+            return dequantizedDistance(from, quantized, otherFrom);
+
+        boolean unsigned = type == Type.UINT8;
+        if (!perFeature) {
+            long sum = vectorized
+                    ? integerDistance(codes, from, quantized.codes, otherFrom, columns, unsigned)
+                    : integerDistanceScalar(codes, from, quantized.codes, otherFrom, columns, unsigned);
+            return (float) (weights.length == 0 ? 0.0 : weights[0] * (double) sum);
+        }
+        return vectorized
+                ? weightedDistance(codes, from, quantized.codes, otherFrom, weights, unsigned)
+                : weightedDistanceScalar(codes, from, quantized.codes, otherFrom, weights, unsigned);
+    }
+
+    /**
+     * Sums the squared differences of the codes in {@code int} blocks, small enough not to overflow. The loops
+     * have a single {@code int} accumulator and no branches, the shape the JIT vectorizes.
+     * */
+    private static long integerDistance(byte[] a, int aFrom, byte[] b, int bFrom, int length, boolean unsigned) {
+        long sum = 0;
+        for (int start = 0; start < length; start += INTEGER_BLOCK) {
+            int end = Math.min(length, start + INTEGER_BLOCK);
+            int block = 0;
+            if (unsigned) {
+                for (int j = start; j < end; j++) {
+                    int d = (a[aFrom + j] & 0xFF) - (b[bFrom + j] & 0xFF);
+                    block += d * d;
+                }
+            } else {
+                for (int j = start; j < end; j++) {
+                    int d = a[aFrom + j] - b[bFrom + j];
+                    block += d * d;
+                }
+            }
+            sum += block;
+        }
+        return sum;
+    }
+
+    private static long integerDistanceScalar(byte[] a, int aFrom, byte[] b, int bFrom, int length,
+                                              boolean unsigned) {
+        long sum = 0;
+        for (int j = 0; j < length; j++) {
+            int d = unsigned
+                    ? (a[aFrom + j] & 0xFF) - (b[bFrom + j] & 0xFF)
+                    : a[aFrom + j] - b[bFrom + j];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the squared differences of the codes weighted by the squared scale of each feature, with the branch on
+     * the type out of the loops.
+     * */
+    private static float weightedDistance(byte[] a, int aFrom, byte[] b, int bFrom, float[] weights,
+                                          boolean unsigned) {
+        float sum = 0.0f;
+        if (unsigned) {
+            for (int j = 0; j < weights.length; j++) {
+                int d = (a[aFrom + j] & 0xFF) - (b[bFrom + j] & 0xFF);
+                sum += weights[j] * (d * d);
+            }
+        } else {
+            for (int j = 0; j < weights.length; j++) {
+                int d = a[aFrom + j] - b[bFrom + j];
+                sum += weights[j] * (d * d);
+            }
+        }
+        return sum;
+    }
+
+    private static float weightedDistanceScalar(byte[] a, int aFrom, byte[] b, int bFrom, float[] weights,
+                                                boolean unsigned) {
+        float sum = 0.0f;
+        for (int j = 0; j < weights.length; j++) {
+            int d = unsigned
+                    ? (a[aFrom + j] & 0xFF) - (b[bFrom + j] & 0xFF)
+                    : a[aFrom + j] - b[bFrom + j];
+            sum += weights[j] * (d * d);
+        }
+        return sum;
+    }
+
+    /**
+     * Compares two rows with different parameters on their dequantized values.
+     * */
+    private float dequantizedDistance(int from, QuantizedMatrix other, int otherFrom) {
+        float sum = 0.0f;
+        for (int j = 0; j < columns; j++) {
+            float d = offsets[j] + scales[j] * code(codes[from + j])
+                    - (other.offsets[j] + other.scales[j] * other.code(other.codes[otherFrom + j]));
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private int code(byte code) {
+        return type == Type.UINT8 ? code & 0xFF : code;
+    }
+
+    /**
+     * Quantizes row-major values, rounding to the nearest code and clamping to the range of the type.
+     * */
+    private static byte[] encode(float[] data, int rows, int columns, Type type, float[] scales, float[] offsets) {
+        int min = type == Type.UINT8 ? 0 : -127;
+        int max = type == Type.UINT8 ? 255 : 127;
+
+        byte[] codes = new byte[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                float value = data[i * columns + j];
+                if (Float.isNaN(value))
+                    throw new ValueError(String.format("Value (%d, %d) is not a number", i, j));
+                int code = Math.round((value - offsets[j]) / scales[j]);
+                codes[i * columns + j] = (byte) Math.max(min, Math.min(max, code));
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * @return the values of a matrix in a row-major float array.
+     * */
+    private static float[] values(INDArray x) {
+        return x.castTo(DataType.FLOAT).dup('c').data().asFloat();
+    }
+
+    private static final long serialVersionUID = 1L;
+    // columns summed in an int: 32768 * 255^2 < 2^31
+    private static final int INTEGER_BLOCK = 32768;
+
+    private final Type type;
+    private final boolean perFeature;
+    private final int rows;
+    private final int columns;
+    private final byte[] codes;
+    private final float[] scales;
+    private final float[] offsets;
+    // squared scales of the features
+    private final float[] weights;
+    private final float[] squaredNorms;
+}
@@ -0,0 +1,122 @@
+package math;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.exceptions.ValueError;
+
+import java.util.Random;
+
+/**
+ * Reduces the features with a random matrix, which preserves the distances between samples up to a factor
+ * {@code 1 +- eps} once the components are {@link #minComponents(int, double)} (Johnson-Lindenstrauss lemma).
+ * Fitting only reads the number of features, so it takes the same time whatever the number of samples.
+ * <ul>
+ *     <li>{@link Kind#GAUSSIAN} draws the entries from {@code N(0, 1 / components)};</li>
+ *     <li>{@link Kind#SPARSE} draws them from {@code +-sqrt(1 / (density * components))} with probability
+ *     {@code density / 2} each, and zero otherwise, with {@code density = 1 / sqrt(features)}.</li>
+ * </ul>
+ *
+ * @author De Caro Antonio
+ */
+public class RandomProjection extends LinearReducer {
+
+    /**
+     * The distribution of the entries of the projection.
+     * */
+    public enum Kind {
+        GAUSSIAN,
+        SPARSE
+    }
+
+    /**
+     * Class constructor, for a sparse projection.
+     * @param components the number of components the features are reduced to.
+     * */
+    public RandomProjection(int components) {
+        this(components, Kind.SPARSE, DEFAULT_SEED);
+    }
+
+    /**
+     * Class constructor.
+     * @param components the number of components the features are reduced to.
+     * @param kind the distribution of the entries.
+     * @param seed the seed of the entries, so that fits on the same features give the same projection.
+     * */
+    public RandomProjection(int components, Kind kind, long seed) {
+        super(components);
+        this.kind = kind;
+        this.seed = seed;
+    }
+
+    /**
+     * Computes the components that preserve the distances between some samples up to a factor {@code 1 +- eps}.
+     * @param samples the number of samples.
+     * @param eps the tolerated distortion, in {@code (0, 1)}.
+     * @return the number of components.
+     * @throws ValueError if the distortion is out of range.
+     * */
+    public static int minComponents(int samples, double eps) {
+        if (eps <= 0 || eps >= 1)
+            throw new ValueError("The distortion should be in (0, 1)");
+        return (int) Math.ceil(4 * Math.log(samples) / (eps * eps / 2 - eps * eps * eps / 3));
+    }
+
+    @Override
+    public void fit(INDArray x) {
+        int features = x.columns();
+        int components = getComponents();
+        Random random = new Random(seed);
+
+        double[] entries = new double[features * components];
+        if (kind == Kind.GAUSSIAN) {
+            double deviation = 1 / Math.sqrt(components);
+            for (int i = 0; i < entries.length; i++)
+                entries[i] = random.nextGaussian() * deviation;
+        } else {
+            double density = 1 / Math.sqrt(features);
+            double value = Math.sqrt(1 / (density * components));
+            for (int i = 0; i < entries.length; i++) {
+                double p = random.nextDouble();
+                entries[i] = p < density / 2 ? -value : p < density ? value : 0.0;
+            }
+        }
+
+        setProjection(Nd4j.zeros(features), Nd4j.create(entries, features, components));
+    }
+
+    /**
+     * @return the ordinal of the kind and the seed.
+     * */
+    @Override
+    public long[] getParameters() {
+        return new long[] {kind.ordinal(), seed};
+    }
+
+    @Override
+    protected void setParameters(long[] parameters) {
+        if (parameters.length != 2 || parameters[0] < 0 || parameters[0] >= Kind.values().length)
+            throw new ValueError("Random projection parameters should be a kind and a seed");
+        kind = Kind.values()[(int) parameters[0]];
+        seed = parameters[1];
+    }
+
+    /**
+     * @return the distribution of the entries.
+     * */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the seed of the entries.
+     * */
+    public long getSeed() {
+        return seed;
+    }
+
+    private static final long serialVersionUID = 1L;
+    private static final long DEFAULT_SEED = 42;
+
+    private Kind kind;
+    private long seed;
+}
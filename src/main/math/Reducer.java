@@ -0,0 +1,46 @@
+package math;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Serializable;
+
+/**
+ * A dimensionality reduction stage: it is fit on the training features, and maps both the training and the
+ * prediction features to fewer components, so every distance computed by the classifier visits fewer values.
+ *
+ * @author De Caro Antonio
+ * @see core.OPF#setReducer(Reducer)
+ * @see LinearReducer
+ */
+public interface Reducer extends Serializable {
+
+    /**
+     * Fits the reduction on a matrix of features, replacing any previous fit.
+     * @param x the (rows, features) matrix.
+     * */
+    void fit(INDArray x);
+
+    /**
+     * Reduces a matrix of features.
+     * @param x the (rows, features) matrix.
+     * @return the (rows, components) matrix.
+     * @throws utils.exceptions.BuildError if the reduction has not been fitted.
+     * @throws utils.exceptions.SizeError if the matrix has not the features of the fit.
+     * */
+    INDArray transform(INDArray x);
+
+    /**
+     * @return whether the reduction has been fitted.
+     * */
+    boolean isFitted();
+
+    /**
+     * @return the number of features of the fit, 0 if the reduction has not been fitted.
+     * */
+    int getFeatures();
+
+    /**
+     * @return the number of components the features are reduced to.
+     * */
+    int getComponents();
+}
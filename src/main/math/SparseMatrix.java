@@ -0,0 +1,187 @@
+package math;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.util.Arrays;
+
+/**
+ * A matrix of features stored in compressed sparse row (CSR) format: the non-zero values of row {@code i} and
+ * their columns are at positions {@code [indptr[i], indptr[i + 1])} of {@code values} and {@code indices},
+ * with the columns in ascending order.
+ * The squared norm of each row is computed once, so the squared euclidean distance between two rows is
+ * {@code |a|^2 + |b|^2 - 2 a.b}, where the dot product only visits the non-zero values.
+ * Values and distances are accumulated in {@code float}, as {@link DistancesImplementor#euclideanDistance}.
+ *
+ * @author De Caro Antonio
+ */
+public class SparseMatrix implements FeatureMatrix {
+
+    /**
+     * Class constructor.
+     * @param columns the number of columns.
+     * @param indptr the position of the first value of each row, followed by the number of values.
+     * @param indices the column of each value, ascending within a row.
+     * @param values the non-zero values.
+     * @throws SizeError if the arrays do not have consistent sizes.
+     * @throws ValueError if a column is out of range, or the columns of a row are not ascending.
+     * */
+    public SparseMatrix(int columns, int[] indptr, int[] indices, float[] values) {
+        if (indptr.length == 0 || indptr[0] != 0 || indices.length != values.length
+                || indptr[indptr.length - 1] != values.length)
+            throw new SizeError("`indptr` should start with 0 and end with the number of values");
+
+        this.rows = indptr.length - 1;
+        this.columns = columns;
+        this.indptr = indptr;
+        this.indices = indices;
+        this.values = values;
+        this.squaredNorms = new float[rows];
+
+        for (int i = 0; i < rows; i++) {
+            if (indptr[i + 1] < indptr[i])
+                throw new SizeError(String.format("Row %d has a negative number of values", i));
+
+            float norm = 0.0f;
+            for (int k = indptr[i]; k < indptr[i + 1]; k++) {
+                if (indices[k] < 0 || indices[k] >= columns || (k > indptr[i] && indices[k] <= indices[k - 1]))
+                    throw new ValueError(String.format("Row %d should have ascending columns in [0, %d)", i, columns));
+                norm += values[k] * values[k];
+            }
+            squaredNorms[i] = norm;
+        }
+    }
+
+    /**
+     * Builds a sparse matrix from the non-zero values of a dense one.
+     * @param dense the (rows, columns) dense matrix.
+     * @return the sparse matrix.
+     * */
+    public static SparseMatrix fromDense(INDArray dense) {
+        int rows = dense.rows();
+        int columns = dense.columns();
+        int[] indptr = new int[rows + 1];
+        int[] indices = new int[rows];
+        float[] values = new float[rows];
+
+        int size = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                float value = dense.getFloat(i, j);
+                if (value == 0.0f)
+                    continue;
+                if (size == values.length) {
+                    indices = Arrays.copyOf(indices, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                indices[size] = j;
+                values[size++] = value;
+            }
+            indptr[i + 1] = size;
+        }
+        return new SparseMatrix(columns, indptr, Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of non-zero values.
+     * */
+    public int nonZeros() {
+        return values.length;
+    }
+
+    @Override
+    public long bytes() {
+        return 4L * (indptr.length + indices.length + values.length + squaredNorms.length);
+    }
+
+    @Override
+    public float squaredNorm(int row) {
+        return squaredNorms[row];
+    }
+
+    /**
+     * Computes the dot product between a row and a row of another sparse matrix, merging their columns.
+     * @param row the row of this matrix.
+     * @param other the other matrix.
+     * @param otherRow the row of the other matrix.
+     * @return the dot product.
+     * */
+    public float dot(int row, SparseMatrix other, int otherRow) {
+        int k = indptr[row], end = indptr[row + 1];
+        int l = other.indptr[otherRow], otherEnd = other.indptr[otherRow + 1];
+
+        float dot = 0.0f;
+        while (k < end && l < otherEnd) {
+            int column = indices[k], otherColumn = other.indices[l];
+            if (column == otherColumn)
+                dot += values[k++] * other.values[l++];
+            else if (column < otherColumn)
+                k++;
+            else
+                l++;
+        }
+        return dot;
+    }
+
+    /**
+     * Computes the dot product between a row and a dense vector, visiting the non-zero values of the row only.
+     * @param row the row of this matrix.
+     * @param dense the dense vector.
+     * @return the dot product.
+     * */
+    public float dot(int row, INDArray dense) {
+        float dot = 0.0f;
+        for (int k = indptr[row]; k < indptr[row + 1]; k++)
+            dot += values[k] * dense.getFloat(indices[k]);
+        return dot;
+    }
+
+    @Override
+    public float squaredDistance(int row, FeatureMatrix other, int otherRow) {
+        if (!(other instanceof SparseMatrix))
+            throw new IllegalArgumentException("Sparse features can only be compared with dense or sparse ones");
+
+        SparseMatrix sparse = (SparseMatrix) other;
+        float distance = squaredNorms[row] + sparse.squaredNorms[otherRow] - 2 * dot(row, sparse, otherRow);
+        // cancellation can leave a small negative value for close rows
+        return Math.max(distance, 0.0f);
+    }
+
+    @Override
+    public float squaredDistance(int row, INDArray dense, float denseSquaredNorm) {
+        if (dense.length() != columns)
+            throw new SizeError(String.format("Dense vector has %d features, expected %d", dense.length(), columns));
+
+        float distance = squaredNorms[row] + denseSquaredNorm - 2 * dot(row, dense);
+        // cancellation can leave a small negative value for close rows
+        return Math.max(distance, 0.0f);
+    }
+
+    @Override
+    public int hash(int row) {
+        int h = 1;
+        for (int k = indptr[row]; k < indptr[row + 1]; k++)
+            h = 31 * (31 * h + indices[k]) + Float.floatToIntBits(values[k]);
+        return h;
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    private final int rows;
+    private final int columns;
+    private final int[] indptr;
+    private final int[] indices;
+    private final float[] values;
+    private final float[] squaredNorms;
+}
@@ -0,0 +1,292 @@
+package models;
+
+import core.Graph;
+import core.Heap;
+import core.Node;
+import core.PredictionCache;
+import math.Distance;
+import math.DistancesImplementor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * The state of a training at the beginning of an iteration of its prototypes or IFT phase.
+ * Restoring the state and going on with the iteration gives the same result as an uninterrupted training.
+ * Checkpoints are identified by a fingerprint of the training graph, so a checkpoint is never
+ * resumed on different data.
+ *
+ * @author De Caro Antonio
+ */
+class Checkpoint {
+
+    private static final Logger logger = Logger.getLogger(Checkpoint.class.getName());
+
+    /**
+     * Phase finding the prototypes.
+     * */
+    static final byte PROTOTYPES = 0;
+
+    /**
+     * Phase computing the optimum paths (IFT).
+     * */
+    static final byte IFT = 1;
+
+    /**
+     * Captures the state of a training. The arrays of the heap are not copied, so the checkpoint
+     * should be written before the training goes on.
+     * @param phase the current phase.
+     * @param graph the training graph.
+     * @param distance the distance function.
+     * @param heap the heap of the current phase.
+     * @param prototypes the prototypes found so far; can be null if there are none.
+     * @param iterations the number of iterations done in the current phase.
+     * */
+    Checkpoint(byte phase, Graph graph, Distance distance, Heap heap, List<Integer> prototypes, int iterations) {
+        int n = graph.getNodes().size();
+        this.phase = phase;
+        this.fingerprint = fingerprint(graph, distance);
+        this.iterations = iterations;
+
+        this.heapCost = heap.getCost();
+        this.heapColor = heap.getColor();
+        this.heapValues = heap.getValues();
+        this.heapPositions = heap.getPositions();
+        this.heapLast = heap.getLast();
+
+        this.pred = new int[n];
+        this.status = new int[n];
+        this.predictedLabel = new int[n];
+        this.cost = new double[n];
+        for (int i = 0; i < n; i++) {
+            Node node = graph.getNodes().get(i);
+            pred[i] = node.getPred();
+            status[i] = node.getStatus();
+            predictedLabel[i] = node.getPredictedLabel();
+            cost[i] = node.getCost();
+        }
+
+        this.prototypes = prototypes == null ? new int[0] : toArray(prototypes);
+        this.ordered = toArray(graph.getOrderedNodes());
+    }
+
+    /**
+     * Class constructor.
+     * */
+    private Checkpoint(byte phase, long fingerprint, int iterations) {
+        this.phase = phase;
+        this.fingerprint = fingerprint;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Writes the checkpoint, replacing the previous one only once it is completely written.
+     * @param filename the checkpoint path.
+     * @throws IOException if the checkpoint cannot be written.
+     * */
+    void write(String filename) throws IOException {
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(phase);
+            out.writeLong(fingerprint);
+            out.writeInt(iterations);
+            out.writeInt(heapLast);
+
+            writeDoubles(out, heapCost);
+            writeInts(out, heapColor);
+            writeInts(out, heapValues);
+            writeInts(out, heapPositions);
+            writeInts(out, pred);
+            writeInts(out, status);
+            writeInts(out, predictedLabel);
+            writeDoubles(out, cost);
+            writeInts(out, prototypes);
+            writeInts(out, ordered);
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint of a training.
+     * @param filename the checkpoint path.
+     * @param graph the training graph.
+     * @param distance the distance function.
+     * @return the checkpoint, or null if there is no valid checkpoint of this training.
+     * */
+    static Checkpoint read(String filename, Graph graph, Distance distance) {
+        if (filename == null || !Files.exists(Paths.get(filename)))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(filename)), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warning("Not a checkpoint, ignoring it: " + filename);
+                return null;
+            }
+
+            byte phase = in.readByte();
+            long fingerprint = in.readLong();
+            if (fingerprint != fingerprint(graph, distance)) {
+                logger.warning("Checkpoint of a different training, ignoring it: " + filename);
+                return null;
+            }
+
+            Checkpoint checkpoint = new Checkpoint(phase, fingerprint, in.readInt());
+            checkpoint.heapLast = in.readInt();
+            checkpoint.heapCost = readDoubles(in);
+            checkpoint.heapColor = readInts(in);
+            checkpoint.heapValues = readInts(in);
+            checkpoint.heapPositions = readInts(in);
+            checkpoint.pred = readInts(in);
+            checkpoint.status = readInts(in);
+            checkpoint.predictedLabel = readInts(in);
+            checkpoint.cost = readDoubles(in);
+            checkpoint.prototypes = readInts(in);
+            checkpoint.ordered = readInts(in);
+            return checkpoint;
+
+        } catch (IOException e) {
+            logger.warning("Checkpoint could not be read, ignoring it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes a checkpoint, once the training is over.
+     * @param filename the checkpoint path.
+     * */
+    static void delete(String filename) {
+        try {
+            Files.deleteIfExists(Paths.get(filename));
+        } catch (IOException e) {
+            logger.warning("Checkpoint could not be deleted: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Restores the state of the nodes and of the heap.
+     * @param graph the training graph.
+     * @param heap the heap of the current phase.
+     * */
+    void restore(Graph graph, Heap heap) {
+        heap.restore(heapCost, heapColor, heapValues, heapPositions, heapLast);
+
+        for (int i = 0; i < graph.getNodes().size(); i++) {
+            Node node = graph.getNodes().get(i);
+            node.setPred(pred[i]);
+            node.setStatus(status[i]);
+            node.setPredictedLabel(predictedLabel[i]);
+            node.setCost(cost[i]);
+        }
+
+        graph.getOrderedNodes().clear();
+        for (int index : ordered)
+            graph.getOrderedNodes().add(index);
+    }
+
+    /**
+     * @return the phase of the checkpoint.
+     * */
+    byte getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return the number of iterations done in the phase.
+     * */
+    int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the prototypes found so far.
+     * */
+    List<Integer> getPrototypes() {
+        List<Integer> list = new ArrayList<>();
+        for (int prototype : prototypes)
+            list.add(prototype);
+        return list;
+    }
+
+    /**
+     * Computes the fingerprint of a training: its size, distance, node identifiers and labels,
+     * and the features of some nodes.
+     * */
+    private static long fingerprint(Graph graph, Distance distance) {
+        int n = graph.getNodes().size();
+        long h = 31L * n + graph.getFeatures();
+        h = 31 * h + DistancesImplementor.getName(distance).hashCode();
+        for (Node node : graph.getNodes())
+            h = 31 * (31 * h + node.getIndex()) + node.getLabel();
+
+        int step = Math.max(1, n / FINGERPRINT_SAMPLES);
+        for (int i = 0; i < n; i += step) {
+            Node node = graph.getNodes().get(i);
+            h = 31 * h + (node.getMatrix() != null
+                    ? node.getMatrix().hash(node.getRow())
+                    : PredictionCache.hash(node.getFeatures()));
+        }
+        return h;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values)
+            out.writeInt(value);
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values)
+            out.writeDouble(value);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = in.readInt();
+        return values;
+    }
+
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = in.readDouble();
+        return values;
+    }
+
+    private static final int MAGIC = 0x4A4F5043;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // number of nodes whose features are part of the fingerprint
+    private static final int FINGERPRINT_SAMPLES = 64;
+
+    private final byte phase;
+    private final long fingerprint;
+    private final int iterations;
+    private int heapLast;
+    private double[] heapCost, cost;
+    private int[] heapColor, heapValues, heapPositions, pred, status, predictedLabel, prototypes, ordered;
+}
@@ -0,0 +1,267 @@
+package models;
+
+import core.Graph;
+import core.Node;
+import math.Distance;
+import org.bytedeco.javacpp.Pointer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.ExecutionRuntime;
+import utils.Precision;
+import utils.exceptions.ValueError;
+
+/**
+ * The way a training is run: on the sequential engine or in parallel rounds, on how many threads, and
+ * whether the arcs are pre-computed or computed on the fly.
+ * A plan comes from a cost model of the training, whose constants are measured by a short calibration
+ * on the training graph itself:
+ * <ul>
+ *     <li>the time of an arc, computed by the distance or read from the pre-computed distances;</li>
+ *     <li>the time of a parallel round, i.e. splitting the nodes and joining their results, for each
+ *     candidate number of threads.</li>
+ * </ul>
+ * Both prototypes search and IFT evaluate about {@code n^2 / 2} arcs in {@code n} rounds, so that
+ * {@code t} threads take {@code n^2 * arc / t + 2 * n * round(t)}. Pre-computing the arcs costs a parallel pass
+ * over the {@code n^2} arcs, and it is only considered if the distance matrix fits in half of the free
+ * off-heap memory.
+ * The numbers of threads of a plan are the ones its stages run on: the {@link ExecutionRuntime} runs each of
+ * them on at most as many threads.
+ *
+ * @author De Caro Antonio
+ */
+public final class ExecutionPlan {
+
+    /**
+     * Plans the training of a graph.
+     * @param graph the training graph.
+     * @param distance the distance of the classifier.
+     * @param preComputedDistances the pre-computed distances of the classifier; can be null.
+     * @param precision the precision of the classifier.
+     * @param maxThreads the maximum number of threads to use.
+     * @return the plan.
+     * @throws ValueError if the maximum number of threads is lower than 1.
+     * */
+    public static ExecutionPlan of(Graph graph, Distance distance, INDArray preComputedDistances, Precision precision,
+                                   int maxThreads) {
+        if (maxThreads <= 0)
+            throw new ValueError("The number of threads has to be greater or equals 1");
+
+        int n = graph.getNodes().size();
+        boolean precomputed = preComputedDistances != null;
+
+        // too few nodes to be worth a calibration
+        if (n < MIN_NODES)
+            return new ExecutionPlan(1, 0, 0, 0, 0);
+
+        // time of an arc, as the training would get it
+        double arcNanos = precomputed
+                ? lookupNanos(graph, preComputedDistances)
+                : arcNanos(graph, distance);
+
+        // candidate numbers of threads: the sequential engine, the powers of 2 and the parallelism of the runtime,
+        // which is not worth more than the processors of the machine
+        int parallelism = Math.min(maxThreads, ExecutionRuntime.getParallelism());
+        parallelism = Math.min(parallelism, Runtime.getRuntime().availableProcessors());
+        int[] threads = candidates(parallelism);
+        double[] rounds = new double[threads.length];
+        for (int i = 1; i < threads.length; i++)
+            rounds[i] = roundNanos(n, threads[i]);
+
+        int best = fastest(n, arcNanos, threads, rounds);
+        double estimated = time(n, arcNanos, threads[best], rounds[best]);
+
+        // checks if reading the arcs from a distance matrix would pay off its computation
+        boolean precompute = false;
+        if (!precomputed && fits(graph, precision)) {
+            double lookup = lookupNanos(graph, Nd4j.zeros(precision.getDataType(), CALIBRATION_ARCS, CALIBRATION_ARCS));
+            int bestLookup = fastest(n, lookup, threads, rounds);
+            double time = (double) n * n * arcNanos / parallelism
+                    + time(n, lookup, threads[bestLookup], rounds[bestLookup]);
+            if (time < estimated) {
+                precompute = true;
+                arcNanos = lookup;
+                best = bestLookup;
+                estimated = time;
+            }
+        }
+
+        return new ExecutionPlan(threads[best], precompute ? parallelism : 0, arcNanos, rounds[best], estimated);
+    }
+
+    /**
+     * @return the number of threads of the training; 1 means the sequential engine.
+     * */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return true if the training runs in parallel rounds, false if it runs on the sequential engine.
+     * */
+    public boolean isParallel() {
+        return threads > 1;
+    }
+
+    /**
+     * @return true if the arcs are pre-computed before the training.
+     * */
+    public boolean isPrecompute() {
+        return precomputeThreads > 0;
+    }
+
+    /**
+     * @return the number of threads pre-computing the arcs; 0 if they are computed on the fly.
+     * */
+    public int getPrecomputeThreads() {
+        return precomputeThreads;
+    }
+
+    /**
+     * @return the measured time of an arc, in nanoseconds.
+     * */
+    public double getArcNanos() {
+        return arcNanos;
+    }
+
+    /**
+     * @return the measured time of a parallel round, in nanoseconds; 0 on the sequential engine.
+     * */
+    public double getRoundNanos() {
+        return roundNanos;
+    }
+
+    /**
+     * @return the estimated time of the training, in nanoseconds.
+     * */
+    public double getEstimatedNanos() {
+        return estimatedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s engine, %d threads, %s arcs (arc %.0f ns, round %.0f ns, estimated %d ms)",
+                isParallel() ? "parallel" : "sequential", threads,
+                isPrecompute() ? "pre-computed on " + precomputeThreads + " threads" : "on the fly",
+                arcNanos, roundNanos, (long) (estimatedNanos / 1e6));
+    }
+
+    /**
+     * Lists the candidate numbers of threads, from 1 to the parallelism.
+     * */
+    private static int[] candidates(int parallelism) {
+        int count = 1;
+        for (int t = 2; t < parallelism; t *= 2)
+            count++;
+        int[] threads = new int[parallelism > 1 ? count + 1 : 1];
+        for (int i = 0, t = 1; i < count; i++, t *= 2)
+            threads[i] = t;
+        threads[threads.length - 1] = parallelism;
+        return threads;
+    }
+
+    /**
+     * Finds the candidate number of threads with the lowest estimated time.
+     * */
+    private static int fastest(int n, double arcNanos, int[] threads, double[] rounds) {
+        int best = 0;
+        for (int i = 1; i < threads.length; i++)
+            if (time(n, arcNanos, threads[i], rounds[i]) < time(n, arcNanos, threads[best], rounds[best]))
+                best = i;
+        return best;
+    }
+
+    /**
+     * Estimates the time of prototypes search and IFT: n^2 / 2 arcs and n rounds each.
+     * */
+    private static double time(int n, double arcNanos, int threads, double roundNanos) {
+        return (double) n * n * arcNanos / threads + 2.0 * n * roundNanos;
+    }
+
+    /**
+     * Measures the time of an arc computed by the distance, on pairs of nodes of the graph.
+     * */
+    private static double arcNanos(Graph graph, Distance distance) {
+        int n = graph.getNodes().size();
+        long start = 0;
+        for (int run = 0; run < 2; run++) {
+            // the first run warms up the distance
+            start = System.nanoTime();
+            for (int k = 0; k < CALIBRATION_ARCS; k++) {
+                Node p = graph.getNodes().get(k % n);
+                Node q = graph.getNodes().get((k * 7 + 1) % n);
+                sink = p.distance(distance, q);
+            }
+        }
+        return (System.nanoTime() - start) / (double) CALIBRATION_ARCS;
+    }
+
+    /**
+     * Measures the time of an arc read from a distance matrix, on the indexes of the nodes of the graph.
+     * */
+    private static double lookupNanos(Graph graph, INDArray distances) {
+        int n = graph.getNodes().size();
+        long rows = distances.rows();
+        long start = 0;
+        for (int run = 0; run < 2; run++) {
+            // the first run warms up the lookups
+            start = System.nanoTime();
+            for (int k = 0; k < CALIBRATION_ARCS; k++) {
+                long p = graph.getNodes().get(k % n).getIndex() % rows;
+                long q = graph.getNodes().get((k * 7 + 1) % n).getIndex() % rows;
+                sink = distances.getDouble(p, q);
+            }
+        }
+        return (System.nanoTime() - start) / (double) CALIBRATION_ARCS;
+    }
+
+    /**
+     * Measures the time of a round over n nodes split for a number of threads, with no work in it.
+     * */
+    private static double roundNanos(int n, int threads) {
+        long start = 0;
+        for (int run = 0; run < 2; run++) {
+            // the first run warms up the threads of the runtime
+            start = System.nanoTime();
+            for (int k = 0; k < CALIBRATION_ROUNDS; k++)
+                sink = ExecutionRuntime.reduce(0, n, threads, (from, to) -> to - from, Integer::sum);
+        }
+        return (System.nanoTime() - start) / (double) CALIBRATION_ROUNDS;
+    }
+
+    /**
+     * Checks if the distance matrix of a graph fits in half of the free off-heap memory, where ND4J keeps it.
+     * */
+    private static boolean fits(Graph graph, Precision precision) {
+        long size = 0;
+        for (Node node : graph.getNodes())
+            size = Math.max(size, node.getIndex() + 1L);
+
+        long free = Pointer.maxBytes() - Pointer.totalBytes();
+        return size * size * precision.getDataType().width() <= free / 2;
+    }
+
+    private ExecutionPlan(int threads, int precomputeThreads, double arcNanos, double roundNanos,
+                          double estimatedNanos) {
+        this.threads = threads;
+        this.precomputeThreads = precomputeThreads;
+        this.arcNanos = arcNanos;
+        this.roundNanos = roundNanos;
+        this.estimatedNanos = estimatedNanos;
+    }
+
+    // graphs smaller than this are always trained sequentially
+    private static final int MIN_NODES = 64;
+
+    // arcs and rounds timed by the calibration
+    private static final int CALIBRATION_ARCS = 64;
+    private static final int CALIBRATION_ROUNDS = 16;
+
+    // keeps the calibration results alive, so the timed code is not optimized away
+    private static volatile double sink;
+
+    private final int threads;
+    private final int precomputeThreads;
+    private final double arcNanos;
+    private final double roundNanos;
+    private final double estimatedNanos;
+}
@@ -1,23 +1,36 @@
 package models;
 
-import core.DistributedArray;
 import core.Node;
-import core.OPF;
+import core.OPFMetrics;
+import core.PredictionCache;
+import core.TrainingMonitor;
 import core.Graph;
 import math.Distance;
+import math.DistancesImplementor;
+import math.FeatureMatrix;
+import math.Reducer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import stream.DatasetView;
 import utils.Constants;
-import utils.exceptions.BuildError;
+import utils.ExecutionRuntime;
+import utils.events.FitEvent;
+import utils.events.IFTEvent;
+import utils.events.PrecomputeEvent;
+import utils.events.PrototypesEvent;
+import utils.exceptions.CancelledError;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.*;
 import java.util.logging.Logger;
 
 /**
  * This class implements the supervised opf classifier, that uses multithreading to parallelize operations.
+ * Prototypes search, IFT and prediction run on the {@link ExecutionRuntime}: at each step the nodes are
+ * split in ranges, and idle threads steal the ranges left by the busy ones.
  *
  * @author De Caro Antonio
  */
@@ -29,10 +42,38 @@ public class ParallelSupervisedEOPF extends SupervisedEOPF {
     public ParallelSupervisedEOPF(Distance distance) {super(distance);}
 
     @Override
-    public void fit(INDArray xTrain, INDArray yTrain) {
-        int cores = Runtime.getRuntime().availableProcessors() / 2;
+    protected void fit(Graph graph) {
+        this.fit(graph, ExecutionRuntime.getParallelism());
+    }
+
+    /**
+     * Gets the plan of the last training.
+     *
+     * @return the plan, or null if the last training has not been planned
+     */
+    public ExecutionPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Gets if trainings are planned.
+     *
+     * @return true if trainings are planned
+     */
+    public boolean isPlanning() {
+        return planning;
+    }
 
-        this.fit(xTrain, yTrain, cores);
+    /**
+     * Sets if trainings are planned. A planned training measures the cost of the workload, then picks the
+     * engine, the number of threads (up to the requested ones) and whether to pre-compute the arcs.
+     * Otherwise the training runs in parallel on the requested threads. Trainings are planned by default.
+     *
+     * @param planning true to plan the trainings
+     * @see ExecutionPlan
+     */
+    public void setPlanning(boolean planning) {
+        this.planning = planning;
     }
 
     /**
@@ -40,119 +81,205 @@ public class ParallelSupervisedEOPF extends SupervisedEOPF {
      *
      * @param xTrain  Array of features.
      * @param yTrain  Array of labels.
-     * @param threads number of threads to use.
+     * @param threads maximum number of threads to use.
      */
     public void fit(INDArray xTrain, INDArray yTrain, int threads) {
+        // the reducer of the trained model is put back if the training does not complete
+        Reducer fitted = copyFittedReducer();
+        try {
+            // creating the subgraph, with the features reduced and in the precision of the classifier
+            this.fit(new Graph(prepare(xTrain, true), yTrain), threads);
+        } catch (RuntimeException | Error e) {
+            if (fitted != null)
+                reducer = fitted;
+            throw e;
+        }
+    }
+
+    /**
+     * Uses multithreading to fit a view of a dataset in the classifier, without copying its rows.
+     *
+     * @param train   the training view.
+     * @param threads maximum number of threads to use.
+     */
+    public void fit(DatasetView train, int threads) {
+        // reduced features are copied
+        if (reducer != null) {
+            checkReducibleView();
+            this.fit(train.getX().getRows(train.getIndices()), train.getLabels(), threads);
+            return;
+        }
+
+        // creating the subgraph over the view
+        this.fit(new Graph(train), threads);
+    }
+
+    /**
+     * Uses multithreading to fit a feature matrix, e.g. a sparse or quantized one, in the classifier without
+     * converting it.
+     *
+     * @param xTrain  matrix of features.
+     * @param yTrain  Array of labels.
+     * @param threads maximum number of threads to use.
+     */
+    public void fit(FeatureMatrix xTrain, INDArray yTrain, int threads) {
+        checkNotReduced();
+
+        // creating the subgraph over the rows of the matrix
+        this.fit(new Graph(xTrain, yTrain), threads);
+    }
+
+    /**
+     * Uses multithreading to fit a subgraph in the classifier.
+     * It runs on at most the given threads of the {@link ExecutionRuntime}, shared with the other jobs.
+     *
+     * @param graph   the training subgraph; it replaces the one of the classifier once it is trained.
+     * @param threads maximum number of threads to use; planned trainings may use fewer.
+     * @throws CancelledError if the training is cancelled, interrupted or out of budget; the classifier is left
+     *                        as it was and the threads go back to the runtime.
+     */
+    protected void fit(Graph graph, int threads) {
+        // plans the training from the cost of its workload
+        plan = null;
+        if (!planning) {
+            train(graph, threads);
+            return;
+        }
+
+        plan = ExecutionPlan.of(graph, distance, preComputedDistances, precision, threads);
+        logger.info("Execution plan: " + plan);
+        if (!plan.isPrecompute()) {
+            train(graph, plan);
+            return;
+        }
+
+        // the distances of the plan are only used by this training, even if it does not complete
+        this.setPreComputedDistances(precomputeArcs(graph, plan.getPrecomputeThreads()));
+        try {
+            train(graph, plan);
+        } finally {
+            this.setPreComputedDistances(null);
+        }
+    }
+
+    /**
+     * Fits a subgraph with the engine of a plan.
+     * */
+    private void train(Graph graph, ExecutionPlan plan) {
+        // the sequential engine has no rounds to synchronize
+        if (plan.isParallel())
+            train(graph, plan.getThreads());
+        else
+            super.fit(graph);
+    }
+
+    /**
+     * Fits a subgraph with the parallel engine.
+     * */
+    private void train(Graph graph, int threads) {
         logger.info(String.format("Fitting classifier (%d threads)...", threads));
+        if (monitor != null)
+            monitor.start();
+
+        FitEvent fitEvent = new FitEvent();
+        fitEvent.begin();
 
-        // creating the subgraph
-        graph = new Graph(xTrain, yTrain);
+        boolean precomputed = this.isDistancesPrecomputed();
 
         // checks if it is supposed to use pre-computed distance
         if (this.isDistancesPrecomputed()) {
             logger.info("Working with precomputed distances ...");
 
-            // checks if its size is the same as the subgraph's amount of nodes
-            if (preComputedDistances.shape()[0] != graph.getNodes().size() ||
-                    preComputedDistances.shape()[1] != graph.getNodes().size()) {
-                throw new BuildError("Pre-computed distance matrix should have the size of `n_nodes x n_nodes`");
-            }
+            // checks if the distances cover the subgraph's nodes
+            checkPreComputedDistances(graph);
         }
 
-        // finding prototypes
-        findPrototypes();
+        // finding prototypes; checkpoints are written by the sequential search only
+        if (checkpointFile != null)
+            findPrototypes(graph);
+        else
+            findPrototypes(graph, threads);
 
         // initialize the timer
         Instant start = Instant.now();
+        IFTEvent iftEvent = new IFTEvent();
+        iftEvent.begin();
+
+        int n = graph.getNodes().size();
 
         // initialize the node s
         int s = Constants.NIL;
 
         // initialize the cost vector
-        Double[] costs = new Double[graph.getNodes().size()];
-        boolean[] available = new boolean[graph.getNodes().size()];
+        double[] costs = new double[n];
+        boolean[] available = new boolean[n];
 
         // initialize each node
-        for (int i = 0; i < graph.getNodes().size(); i++) {
+        for (int i = 0; i < n; i++) {
             Node node = graph.getNodes().get(i);
             // if is a prototype
             if (node.getStatus() == Constants.PROTOTYPE) {
                 // set predicted label as its label
                 node.setPredictedLabel(node.getLabel());
                 // set cost to 0
-                costs[i] = 0d;
+                costs[i] = 0;
                 // set predecessor to NIL
                 node.setPred(Constants.NIL);
                 // set s as the first prototype
                 if (s == Constants.NIL)
-                    s = node.getIndex();
+                    s = i;
             } else {
                 // set its cost as FLOAT_MAX
-                costs[i] = (double) Constants.FLOAT_MAX;
+                costs[i] = Constants.FLOAT_MAX;
             }
             available[i] = true;
         }
 
-        // get ExecutorService from Executors utility class, thread pool size is 10
-        ExecutorService executor = Executors.newFixedThreadPool(threads);
-        // create a list to hold the Future object associated with Callable
-        List<Future<Integer>> futuresList = new ArrayList<>();
+        // counters of the metrics
+        long evaluations = 0, updates = 0, removes = 0;
+
+        // while s is not NIL
+        while (s != Constants.NIL) {
+            // stops if the training is cancelled, interrupted or out of budget, and reports the conquered nodes
+            if (Thread.currentThread().isInterrupted())
+                throw new CancelledError("The training has been interrupted");
+            if (monitor != null) {
+                monitor.check();
+                monitor.progress(TrainingMonitor.Phase.IFT, removes, n);
+            }
 
-        // defining the concurrent array
-        DistributedArray<Double> distributedArray = new DistributedArray<>(costs, threads);
-        // defining filter function
-        distributedArray.setFilter(idx -> available[idx]);
+            available[s] = false;
+            removes++;
 
+            // insert s in the ordered set
+            graph.getOrderedNodes().add(s);
 
-        try {
-            // while s is not NIL
-            while (s != Constants.NIL) {
-                available[s] = false;
-                // insert s in the ordered set
-                graph.getOrderedNodes().add(s);
-
-                // gather its cost
-                graph.getNodes().get(s).setCost(costs[s]);
-
-                // updating threads slices
-                //distributedArray.updateSlices();
-                distributedArray.remove(s);
-
-                // for each thread we want to use
-                for (int i = 0; i < threads; i++) {
-                    // create callable instance
-                    Callable<Integer> worker = new Worker(i, s, distributedArray, available, this);
-                    // create the future object
-                    Future<Integer> future = executor.submit(worker);
-                    // append the future to the futures list
-                    futuresList.add(future);
-                }
-                // now get the threads result
-                int min = Constants.NIL;
-                for (Future<Integer> future : futuresList) {
-                    int curr = future.get();
-                    if (curr == Constants.NIL)
-                        continue;
-                    if (min == Constants.NIL || costs[curr] < costs[min])
-                        min = curr;
-                }
+            // gather its cost
+            graph.getNodes().get(s).setCost(costs[s]);
 
-                // now set s as the lowest value found
-                s = min;
-                // clear futures list
-                futuresList.clear();
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            logger.severe(e.getMessage());
-            return;
-        } finally {
-            // shutdown the executor
-            executor.shutdown();
+            // offers the paths through s to the available nodes, and finds the next node to conquer
+            int conquered = s;
+            Candidate next = ExecutionRuntime.reduce(0, n, threads,
+                    (from, to) -> conquer(graph, conquered, from, to, costs, available), Candidate::min);
+            evaluations += next.evaluations;
+            updates += next.updates;
+
+            // now set s as the lowest value found
+            s = next.node;
         }
 
-        // set the subgraph trained
+        iftEvent.commit(n, threads, removes, updates, evaluations);
+        if (monitor != null)
+            monitor.progress(TrainingMonitor.Phase.IFT, n, n);
+
+        // set the subgraph trained, and replaces the one of the classifier
         graph.setTrained(true);
+        this.graph = graph;
+        modelChanged();
+
+        // the checkpoint of the prototypes is no longer needed
+        if (checkpointFile != null)
+            Checkpoint.delete(checkpointFile);
 
         // reset the precomputed distances
         this.setPreComputedDistances(null);
@@ -163,58 +290,255 @@ public class ParallelSupervisedEOPF extends SupervisedEOPF {
         // calculating training task time
         Duration trainTime = Duration.between(start, end);
 
+        if (metrics != null) {
+            // the costs are kept in an array instead of a heap: conquered nodes are its removes
+            metrics.add(evaluations, 0, updates, removes, updates);
+            metrics.addConquered(removes);
+            metrics.phaseCompleted(OPFMetrics.Phase.IFT, trainTime.toNanos(), n);
+        }
+
+        fitEvent.commit(n, graph.getFeatures(), threads, DistancesImplementor.getName(distance), precomputed);
+
         logger.info("Classifier has been fitted.");
         logger.info("Training time: " + trainTime.toMillis() + " milliseconds.");
     }
 
+    @Override
+    protected long predictNodes(Graph predGraph, PredictionCache cache, long version) {
+        // each range of samples walks the ordered nodes on its own
+        return ExecutionRuntime.reduce(0, predGraph.getNodes().size(), ExecutionRuntime.getParallelism(),
+                (from, to) -> predictNodes(predGraph, from, to, cache, version), Long::sum);
+    }
+
     /**
-     * This private class implements a thread behaviour
+     * Finds prototypes nodes using Prim's algorithm, keeping the costs in an array instead of a heap,
+     * so that each step relaxes the nodes and looks for the next one in parallel.
+     * The spanning tree is the one of the sequential search, up to arcs of equal weight.
+     * @param graph the training subgraph.
+     * @param threads maximum number of threads to use.
      * */
-    private class Worker implements Callable<Integer> {
-        public Worker(int id, int s, DistributedArray<Double> distributedArray, boolean[] available, OPF instance) {
-            this.id = id;
-            this.s = s;
-            this.distributedArray = distributedArray;
-            this.available = available;
-            this.instance = instance;
+    private void findPrototypes(Graph graph, int threads) {
+        logger.info("Finding prototypes...");
+
+        // initialize timer
+        Instant start = Instant.now();
+        PrototypesEvent event = new PrototypesEvent();
+        event.begin();
+
+        int n = graph.getNodes().size();
+
+        // cost of each node, and whether it is still out of the spanning tree
+        double[] costs = new double[n];
+        boolean[] available = new boolean[n];
+        Arrays.fill(costs, Constants.FLOAT_MAX);
+        Arrays.fill(available, true);
+
+        // creating a list of prototype nodes
+        List<Integer> prototypes = new ArrayList<>();
+
+        // counters of the metrics
+        long evaluations = 0, relaxations = 0, removes = 0;
+
+        // marking first node without any predecessor
+        graph.getNodes().get(0).setPred(Constants.NIL);
+        int p = 0;
+
+        while (p != Constants.NIL) {
+            // stops if the training is cancelled, interrupted or out of budget, and reports the nodes of the tree
+            if (Thread.currentThread().isInterrupted())
+                throw new CancelledError("The training has been interrupted");
+            if (monitor != null) {
+                monitor.check();
+                monitor.progress(TrainingMonitor.Phase.PROTOTYPES, removes, n);
+            }
+
+            available[p] = false;
+            removes++;
+
+            // gathers its cost
+            Node node = graph.getNodes().get(p);
+            node.setCost(costs[p]);
+
+            // the ends of an arc between different labels are prototypes
+            int pred = node.getPred();
+            if (pred != Constants.NIL && node.getLabel() != graph.getNodes().get(pred).getLabel()) {
+                if (node.getStatus() != Constants.PROTOTYPE) {
+                    node.setStatus(Constants.PROTOTYPE);
+                    prototypes.add(p);
+                }
+                if (graph.getNodes().get(pred).getStatus() != Constants.PROTOTYPE) {
+                    graph.getNodes().get(pred).setStatus(Constants.PROTOTYPE);
+                    prototypes.add(pred);
+                }
+            }
+
+            // offers the arcs of p to the nodes out of the tree, and finds the next node to add
+            int added = p;
+            Candidate next = ExecutionRuntime.reduce(0, n, threads,
+                    (from, to) -> span(graph, added, from, to, costs, available), Candidate::min);
+            evaluations += next.evaluations;
+            relaxations += next.updates;
+
+            p = next.node;
         }
 
-        @Override
-        public Integer call() {
-            int p = Constants.NIL;
-            for (int q : distributedArray.getSlice(id)) {
-                if (q == s)
-                    continue;
-                if (distributedArray.get(q) > distributedArray.get(s)) {
-                    double weight;
-                    if (instance.isDistancesPrecomputed())
-                        weight = preComputedDistances.getDouble(s, q);
-                    else
-                        weight = distance.calculate(graph.getNodes().get(s).getFeatures(),
-                                graph.getNodes().get(q).getFeatures());
-
-                    double currentCost = Math.max(distributedArray.get(s), weight);
-                    if (currentCost < distributedArray.get(q)) {
-                        // `q` node has `p` as its predecessor
-                        graph.getNodes().get(q).setPred(s);
-
-                        // and its predicted label is the same as `p`
-                        graph.getNodes().get(q).setPredictedLabel(graph.getNodes().get(s).getPredictedLabel());
-
-                        // updates the heap `q` node and the current cost
-                        distributedArray.update(q, currentCost);
-                    }
+        event.commit(n, prototypes.size(), evaluations, false);
+        if (monitor != null)
+            monitor.progress(TrainingMonitor.Phase.PROTOTYPES, n, n);
+
+        // calculating training task time
+        Duration trainTime = Duration.between(start, Instant.now());
+
+        if (metrics != null) {
+            // the costs are kept in an array instead of a heap: nodes added to the tree are its removes
+            metrics.add(evaluations, 0, relaxations, removes, relaxations);
+            metrics.addPrototypes(prototypes.size());
+            metrics.phaseCompleted(OPFMetrics.Phase.PROTOTYPES, trainTime.toNanos(), n);
+        }
+
+        logger.info("Finding prototypes time: " + trainTime.toMillis() + " milliseconds.");
+        logger.info("Prototypes: " + prototypes);
+    }
+
+    /**
+     * Computes the arcs between the nodes of a graph, in a matrix indexed by their indexes and in the precision
+     * of the classifier.
+     * @param graph the graph.
+     * @param threads maximum number of threads to use.
+     * @return the distances.
+     * */
+    private INDArray precomputeArcs(Graph graph, int threads) {
+        logger.info("Pre computing distances ...");
+        PrecomputeEvent event = new PrecomputeEvent();
+        event.begin();
+
+        int n = graph.getNodes().size();
+        int size = 0;
+        for (Node node : graph.getNodes())
+            size = Math.max(size, node.getIndex() + 1);
+
+        INDArray distances = Nd4j.zeros(precision.getDataType(), size, size);
+
+        // rows are balanced among the threads of the runtime
+        ExecutionRuntime.forEach(0, n, threads, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                Node p = graph.getNodes().get(i);
+                for (int j = 0; j < n; j++) {
+                    if (i == j)
+                        continue;
+                    Node q = graph.getNodes().get(j);
+                    distances.putScalar(p.getIndex(), q.getIndex(), precision.round(p.distance(distance, q)));
                 }
-                if ((p == Constants.NIL || distributedArray.get(q) < distributedArray.get(p)) && available[q]) {
-                    p = q;
+            }
+        });
+
+        event.commit(n, threads, DistancesImplementor.getName(distance));
+        logger.info("Distances precomputed.");
+        return distances;
+    }
+
+    /**
+     * Offers the paths through a conquered node to a range of available nodes.
+     * @return the available node of the range with the lowest cost.
+     * */
+    private Candidate conquer(Graph graph, int s, int from, int to, double[] costs, boolean[] available) {
+        Candidate candidate = new Candidate();
+        Node sNode = graph.getNodes().get(s);
+
+        for (int q = from; q < to; q++) {
+            if (!available[q])
+                continue;
+
+            if (costs[q] > costs[s]) {
+                Node qNode = graph.getNodes().get(q);
+                double currentCost = Math.max(costs[s], weight(sNode, qNode));
+                candidate.evaluations++;
+
+                if (currentCost < costs[q]) {
+                    // `q` node has `s` as its predecessor
+                    qNode.setPred(s);
+
+                    // and its predicted label is the same as `s`
+                    qNode.setPredictedLabel(sNode.getPredictedLabel());
+
+                    // updates the cost of `q`
+                    costs[q] = currentCost;
+                    candidate.updates++;
                 }
             }
-            return p;
+            candidate.offer(q, costs[q]);
         }
+        return candidate;
+    }
 
-        int id, s;
-        private final DistributedArray<Double> distributedArray;
-        boolean[] available;
-        private final OPF instance;
+    /**
+     * Offers the arcs of a node of the spanning tree to a range of nodes out of the tree.
+     * @return the node of the range out of the tree with the lowest cost.
+     * */
+    private Candidate span(Graph graph, int p, int from, int to, double[] costs, boolean[] available) {
+        Candidate candidate = new Candidate();
+        Node pNode = graph.getNodes().get(p);
+
+        for (int q = from; q < to; q++) {
+            if (!available[q])
+                continue;
+
+            Node qNode = graph.getNodes().get(q);
+            double weight = weight(pNode, qNode);
+            candidate.evaluations++;
+
+            // if current arc's cost is smaller the the path's cost
+            if (weight < costs[q]) {
+                qNode.setPred(p);
+                costs[q] = weight;
+                candidate.updates++;
+            }
+            candidate.offer(q, costs[q]);
+        }
+        return candidate;
     }
+
+    /**
+     * Gets the weight of the arc between two nodes, from the pre-computed distances if any,
+     * in the precision of the classifier.
+     * */
+    private double weight(Node p, Node q) {
+        if (this.isDistancesPrecomputed())
+            return precision.round(preComputedDistances.getDouble(p.getIndex(), q.getIndex()));
+        return precision.round(p.distance(distance, q));
+    }
+
+    /**
+     * The node with the lowest cost of a range, along with the work done on the range.
+     * */
+    private static class Candidate {
+
+        /**
+         * Combines the candidates of two adjacent ranges; on equal costs the left one wins, as in a sequential scan.
+         * */
+        static Candidate min(Candidate left, Candidate right) {
+            Candidate min = right.node != Constants.NIL && (left.node == Constants.NIL || right.cost < left.cost)
+                    ? right : left;
+            min.evaluations = left.evaluations + right.evaluations;
+            min.updates = left.updates + right.updates;
+            return min;
+        }
+
+        void offer(int node, double cost) {
+            if (this.node == Constants.NIL || cost < this.cost) {
+                this.node = node;
+                this.cost = cost;
+            }
+        }
+
+        int node = Constants.NIL;
+        double cost;
+        long evaluations, updates;
+    }
+
+    // fixed to the one computed by previous versions, so that their serialized models can be read
+    private static final long serialVersionUID = -1069145288799948200L;
+
+    private transient ExecutionPlan plan;
+    private transient boolean planning = true;
 }
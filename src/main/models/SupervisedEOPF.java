@@ -4,14 +4,29 @@ import core.Graph;
 import core.Heap;
 import core.Node;
 import core.OPF;
+import core.OPFMetrics;
+import core.PredictionCache;
+import core.TrainingMonitor;
 import math.Distance;
+import math.DistancesImplementor;
 import math.General;
+import math.FeatureMatrix;
+import math.Reducer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import stream.DatasetView;
 import utils.Constants;
+import utils.events.FitEvent;
+import utils.events.IFTEvent;
+import utils.events.LearnIterationEvent;
+import utils.events.PredictEvent;
+import utils.events.PrototypesEvent;
+import utils.events.PruneIterationEvent;
 import utils.exceptions.BuildError;
+import utils.exceptions.CancelledError;
 import utils.exceptions.ValueError;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -41,31 +56,80 @@ public class SupervisedEOPF extends OPF {
 
     @Override
     public void fit(INDArray xTrain, INDArray yTrain) {
+        // the reducer of the trained model is put back if the training does not complete
+        Reducer fitted = copyFittedReducer();
+        try {
+            // creating the subgraph, with the features reduced and in the precision of the classifier
+            fit(new Graph(prepare(xTrain, true), yTrain));
+        } catch (RuntimeException | Error e) {
+            if (fitted != null)
+                reducer = fitted;
+            throw e;
+        }
+    }
+
+    @Override
+    public void fit(DatasetView train) {
+        // reduced features are copied
+        if (reducer != null) {
+            checkReducibleView();
+            fit(train.getX().getRows(train.getIndices()), train.getLabels());
+            return;
+        }
+
+        // creating the subgraph over the view
+        fit(new Graph(train));
+    }
+
+    @Override
+    public void fit(FeatureMatrix xTrain, INDArray yTrain) {
+        checkNotReduced();
+
+        // creating the subgraph over the rows of the matrix
+        fit(new Graph(xTrain, yTrain));
+    }
+
+    /**
+     * Fits a subgraph in the classifier. The subgraph replaces the one of the classifier once it is trained.
+     * @param graph the training subgraph.
+     * @throws CancelledError if the training is cancelled or out of budget; the classifier is left as it was.
+     * */
+    protected void fit(Graph graph) {
         logger.info("Fitting classifier ...");
+        if (monitor != null)
+            monitor.start();
 
-        // creating the subgraph
-        graph = new Graph(xTrain, yTrain);
+        FitEvent fitEvent = new FitEvent();
+        fitEvent.begin();
+
+        boolean precomputed = this.isDistancesPrecomputed();
 
         // checks if it is supposed to use pre-computed distance
         if (this.isDistancesPrecomputed()) {
             logger.info("Working with precomputed distances ...");
 
-            // checks if its size is the same as the subgraph's amount of nodes
-            if (preComputedDistances.shape()[0] != graph.getNodes().size() ||
-                    preComputedDistances.shape()[1] != graph.getNodes().size()) {
-                throw new BuildError("Pre-computed distance matrix should have the size of `n_nodes x n_nodes`");
-            }
+            // checks if the distances cover the subgraph's nodes
+            checkPreComputedDistances(graph);
         }
 
-        // finding prototypes
-        findPrototypes();
+        // gathers the checkpoint of this training, if any
+        Checkpoint resume = Checkpoint.read(checkpointFile, graph, distance);
+
+        // finding prototypes, unless they have already been found
+        if (resume == null || resume.getPhase() == Checkpoint.PROTOTYPES)
+            findPrototypes(graph, resume);
 
         // initialize the timer
         Instant start = Instant.now();
+        IFTEvent iftEvent = new IFTEvent();
+        iftEvent.begin();
 
         // creating a minimum heap
         Heap heap = new Heap(graph.getNodes().size(), Heap.Policy.MIN);
 
+        // counters of the metrics
+        long evaluations = 0, inserts = 0, updates = 0, removes = 0, relaxations = 0;
+
         // for each possible node
         for (int i = 0; i < graph.getNodes().size(); i++) {
             Node node = graph.getNodes().get(i);
@@ -82,6 +146,7 @@ public class SupervisedEOPF extends OPF {
 
                 // inserts the node into the heap
                 heap.insert(i);
+                inserts++;
             }
 
             // if node is not a prototype
@@ -90,10 +155,32 @@ public class SupervisedEOPF extends OPF {
             }
         }
 
+        // checks if the training is resumed in the middle of this phase
+        if (resume != null && resume.getPhase() == Checkpoint.IFT) {
+            logger.info("Resuming training from checkpoint ...");
+            resume.restore(graph, heap);
+        }
+
+        // initialize the checkpoint timer
+        long lastCheckpoint = System.nanoTime();
+
         // while the heap is not empty
         while (!heap.isEmpty()) {
+            // saves the state of the training if the interval is elapsed
+            if (checkpointFile != null && System.nanoTime() - lastCheckpoint >= checkpointInterval.toNanos()) {
+                writeCheckpoint(new Checkpoint(Checkpoint.IFT, graph, distance, heap, null, 0));
+                lastCheckpoint = System.nanoTime();
+            }
+
+            // stops if the training is cancelled or out of budget, and reports the conquered nodes
+            if (monitor != null) {
+                monitor.check();
+                monitor.progress(TrainingMonitor.Phase.IFT, graph.getOrderedNodes().size(), graph.getNodes().size());
+            }
+
             // removes a node
             int p = heap.remove();
+            removes++;
             // gather the associated node
             Node pNode = graph.getNodes().get(p);
 
@@ -120,7 +207,9 @@ public class SupervisedEOPF extends OPF {
                         weight = preComputedDistances.getDouble(pNode.getIndex(), qNode.getIndex());
                     else
                         // calls the corresponding distance function
-                        weight = distance.calculate(pNode.getFeatures(), qNode.getFeatures());
+                        weight = pNode.distance(distance, qNode);
+                    weight = precision.round(weight);
+                    evaluations++;
 
                     // the current cost will be the maximum cost between the node's and its weight (arc)
                     double currentCost = Math.max(heap.getCost()[p], weight);
@@ -134,14 +223,29 @@ public class SupervisedEOPF extends OPF {
                         qNode.setPredictedLabel(pNode.getPredictedLabel());
 
                         // updates the heap `q` node and the current cost
+                        if (heap.getColor()[q] == Constants.WHITE)
+                            inserts++;
+                        else
+                            updates++;
                         heap.update(q, currentCost);
+                        relaxations++;
                     }
                 }
             }
         }
 
-        // the subgraph has been properly trained
+        iftEvent.commit(graph.getNodes().size(), 1, removes, relaxations, evaluations);
+        if (monitor != null)
+            monitor.progress(TrainingMonitor.Phase.IFT, graph.getNodes().size(), graph.getNodes().size());
+
+        // the subgraph has been properly trained, and replaces the one of the classifier
         graph.setTrained(true);
+        this.graph = graph;
+        modelChanged();
+
+        // the checkpoint is no longer needed
+        if (checkpointFile != null)
+            Checkpoint.delete(checkpointFile);
 
         // reset the precomputed distances
         this.setPreComputedDistances(null);
@@ -152,12 +256,51 @@ public class SupervisedEOPF extends OPF {
         // calculating training task time
         Duration trainTime = Duration.between(start, end);
 
+        if (metrics != null) {
+            metrics.add(evaluations, inserts, updates, removes, relaxations);
+            metrics.addConquered(removes);
+            metrics.phaseCompleted(OPFMetrics.Phase.IFT, trainTime.toNanos(), graph.getNodes().size());
+        }
+
+        fitEvent.commit(graph.getNodes().size(), graph.getFeatures(), 1, DistancesImplementor.getName(distance),
+                precomputed);
+
         logger.info("Classifier has been fitted.");
         logger.info("Training time: " + trainTime.toMillis() + " milliseconds.");
     }
 
     @Override
     public INDArray predict(INDArray xVal) {
+        // creating a prediction subgraph, with the features reduced and in the precision of the classifier
+        return predict(new Graph(prepare(xVal, false), null));
+    }
+
+    @Override
+    public INDArray predict(DatasetView view) {
+        // reduced features are copied
+        if (reducer != null) {
+            checkReducibleView();
+            return predict(view.getX().getRows(view.getIndices()));
+        }
+
+        // creating a prediction subgraph over the view
+        return predict(new Graph(view));
+    }
+
+    @Override
+    public INDArray predict(FeatureMatrix xVal) {
+        checkNotReduced();
+
+        // creating a prediction subgraph over the rows of the matrix
+        return predict(new Graph(xVal, null));
+    }
+
+    /**
+     * Predicts the nodes of a subgraph using the pre-trained classifier.
+     * @param predGraph the prediction subgraph.
+     * @return A list of predictions for each node of the subgraph.
+     * */
+    protected INDArray predict(Graph predGraph) {
         // check if there is a subgraph
         if (graph == null)
             throw new BuildError("Subgraph has not been properly created.");
@@ -173,12 +316,97 @@ public class SupervisedEOPF extends OPF {
 
         // initializing timer
         Instant start = Instant.now();
+        PredictEvent event = new PredictEvent();
+        event.begin();
+
+        // cached predictions are not used with pre-computed distances, since arcs do not depend on features
+        PredictionCache cache = this.isDistancesPrecomputed() ? null : predictionCache;
+        long version = getVersion();
+
+        // predicts every node
+        long evaluations = predictNodes(predGraph, cache, version);
+
+        // creating the list of predictions
+        int[] pred = new int[predGraph.getNodes().size()];
+
+        // populate the pred list
+        for (int i = 0; i < predGraph.getNodes().size(); i++)
+            pred[i] = predGraph.getNodes().get(i).getPredictedLabel();
+
+        // ending timer
+        Instant end = Instant.now();
+
+        if (metrics != null) {
+            metrics.add(evaluations, 0, 0, 0, 0);
+            metrics.phaseCompleted(OPFMetrics.Phase.PREDICTION, Duration.between(start, end).toNanos(),
+                    predGraph.getNodes().size());
+        }
+        event.commit(predGraph.getNodes().size(), graph.getNodes().size(), DistancesImplementor.getName(distance),
+                this.isDistancesPrecomputed(), evaluations);
+
+        // calculating prediction task time
+        logger.info( "Data has been predicted.");
+        logger.info( "Prediction time: " + Duration.between(start, end).toMillis() + " millis.");
+
+        // reset the precomputed distances
+        this.setPreComputedDistances(null);
+
+        return Nd4j.createFromArray(pred);
+    }
+
+    /**
+     * Predicts all the nodes of a prediction subgraph, sequentially.
+     * @param predGraph the prediction subgraph.
+     * @param cache the prediction cache; can be null to not cache predictions.
+     * @param version the version of the classifier.
+     * @return the number of arc weights evaluated.
+     * */
+    protected long predictNodes(Graph predGraph, PredictionCache cache, long version) {
+        return predictNodes(predGraph, 0, predGraph.getNodes().size(), cache, version);
+    }
 
-        // creating a prediction subgraph
-        Graph predGraph = new Graph(xVal, null);
+    /**
+     * Predicts a range of nodes of a prediction subgraph. Ranges can be predicted at the same time,
+     * since the trained subgraph is only read, apart from marking the relevant nodes.
+     * @param predGraph the prediction subgraph.
+     * @param from the first node.
+     * @param to the end (exclusive) of the range.
+     * @param cache the prediction cache; can be null to not cache predictions.
+     * @param version the version of the classifier.
+     * @return the number of arc weights evaluated.
+     * */
+    protected long predictNodes(Graph predGraph, int from, int to, PredictionCache cache, long version) {
+        // the latency of each sample is measured only when metrics are collected
+        OPFMetrics metrics = this.metrics;
+        long evaluations = 0;
+        // the hashes of each sample, computed in a single pass
+        long[] hashes = cache != null ? new long[2] : null;
+
+        // for every node of the range
+        for (int i = from; i < to; i++) {
+            long sampleStart = metrics != null ? System.nanoTime() : 0;
+
+            // checks if the prediction has been cached; sparse samples are not cached
+            boolean cached = cache != null && predGraph.getNodes().get(i).getFeatures() != null;
+            long hash = 0, check = 0;
+            if (cached) {
+                INDArray features = predGraph.getNodes().get(i).getFeatures();
+                PredictionCache.hash(features, hashes);
+                hash = hashes[0];
+                check = hashes[1];
+
+                PredictionCache.Entry entry = cache.get(version, hash, check);
+                if (entry != null) {
+                    predGraph.getNodes().get(i).setPredictedLabel(entry.getLabel());
+                    // marks the conqueror node as the walk would have done
+                    if (entry.getConqueror() > -1)
+                        graph.markNodes(entry.getConqueror());
+                    if (metrics != null)
+                        metrics.predicted(System.nanoTime() - sampleStart);
+                    continue;
+                }
+            }
 
-        // for every possible node
-        for (int i = 0; i < predGraph.getNodes().size(); i++) {
             // initialize the conqueror node
             int conqueror = -1;
             // initializing the `j` counter
@@ -196,8 +424,9 @@ public class SupervisedEOPF extends OPF {
                         predGraph.getNodes().get(i).getIndex());
             else
                 // calls the corresponding distance function
-                weight = distance.calculate(graph.getNodes().get(k).getFeatures(),
-                        predGraph.getNodes().get(i).getFeatures());
+                weight = graph.getNodes().get(k).distance(distance, predGraph.getNodes().get(i));
+            weight = precision.round(weight);
+            evaluations++;
 
             // the minimum cost will be the maximum between the `k` node cost and its weight (arc)
             double minCost = Math.max(graph.getNodes().get(k).getCost(), weight);
@@ -217,8 +446,9 @@ public class SupervisedEOPF extends OPF {
                             predGraph.getNodes().get(i).getIndex());
                 else
                     // calls the corresponding distance function
-                    weight = distance.calculate(graph.getNodes().get(l).getFeatures(),
-                            predGraph.getNodes().get(i).getFeatures());
+                    weight = graph.getNodes().get(l).distance(distance, predGraph.getNodes().get(i));
+                weight = precision.round(weight);
+                evaluations++;
 
                 // the temporary minimum cost will be the maximum between `l` node cost and its weight (arc)
                 double tempMinCost = Math.max(graph.getNodes().get(l).getCost(), weight);
@@ -244,25 +474,16 @@ public class SupervisedEOPF extends OPF {
             if (conqueror > -1)
                 // marks the conqueror node and its path
                 graph.markNodes(conqueror);
-        }
-        // creating the list of predictions
-        int[] pred = new int[predGraph.getNodes().size()];
 
-        // populate the pred list
-        for (int i = 0; i < predGraph.getNodes().size(); i++)
-            pred[i] = predGraph.getNodes().get(i).getPredictedLabel();
+            // caches the prediction
+            if (cached)
+                cache.put(version, hash, check, currentLabel, conqueror);
 
-        // ending timer
-        Instant end = Instant.now();
-
-        // calculating prediction task time
-        logger.info( "Data has been predicted.");
-        logger.info( "Prediction time: " + Duration.between(start, end).toMillis() + " millis.");
-
-        // reset the precomputed distances
-        this.setPreComputedDistances(null);
+            if (metrics != null)
+                metrics.predicted(System.nanoTime() - sampleStart);
+        }
 
-        return Nd4j.createFromArray(pred);
+        return evaluations;
     }
 
     /**
@@ -272,9 +493,26 @@ public class SupervisedEOPF extends OPF {
      * @param xVal array of validation features
      * @param yVal array of validation labels
      * @param iterations number of iterations, must be grater then 0
+     * @throws CancelledError if the training is cancelled or out of budget before a classifier has been learned.
      * */
     public void learn(INDArray xTrain, INDArray yTrain, INDArray xVal, INDArray yVal, int iterations) {
+        // the reducer is fitted once, so every iteration and the classifier kept share its components
+        if (reducer != null) {
+            Reducer fitted = reducer;
+            fitted.fit(xTrain);
+            reducer = null;
+            try {
+                learn(fitted.transform(xTrain), yTrain, fitted.transform(xVal), yVal, iterations);
+            } finally {
+                reducer = fitted;
+                modelChanged();
+            }
+            return;
+        }
+
         logger.info("Learning the best classifier ...");
+        if (monitor != null)
+            monitor.start();
 
         // create a random instance
         Random random = new Random();
@@ -300,12 +538,28 @@ public class SupervisedEOPF extends OPF {
 
         while (true) {
             logger.info("Running iteration " + (t + 1) + "/" + iterations);
-
-            // fits training data into the classifier
-            this.fit(xTrain, yTrain);
-
-            // predicts new data
-            INDArray pred = this.predict(xVal);
+            LearnIterationEvent event = new LearnIterationEvent();
+            event.begin();
+
+            INDArray pred;
+            try {
+                // fits training data into the classifier
+                this.fit(xTrain, yTrain);
+
+                // predicts new data
+                pred = this.predict(xVal);
+            } catch (CancelledError e) {
+                // without any classifier learned there is nothing to keep
+                if (bestOPF == null)
+                    throw e;
+
+                // keeps the best classifier found so far
+                this.graph = bestOPF.getGraph();
+                modelChanged();
+
+                logger.warning(e.getMessage() + ": keeping the classifier of iteration " + (bestIteration + 1));
+                break;
+            }
 
             // calculating accuracy
             double acc = General.opfAccuracy(yVal, pred);
@@ -385,11 +639,15 @@ public class SupervisedEOPF extends OPF {
             t++;
 
             logger.info("Accuracy: " + acc + " | Delta: " + delta + " | Maximum Accuracy: " + maxAccuracy);
+            event.commit(t, iterations, acc, errors.size());
+            if (monitor != null)
+                monitor.progress(TrainingMonitor.Phase.LEARN, t, iterations);
 
             // if the difference is smaller then 10e-4 or iterations are finished
             if (Double.compare(delta, 0.0001) < 0 || t == iterations) {
                 if (bestOPF != null)
                     this.graph = bestOPF.getGraph();
+                modelChanged();
 
                 logger.info("Best classifier has been learned over iteration " + (bestIteration + 1));
 
@@ -407,9 +665,26 @@ public class SupervisedEOPF extends OPF {
      * @param yVal array of validation labels
      * @param mLoss maximum loss in accuracy on xVal
      * @param iterations number of iterations, must be grater then 0
+     * @throws CancelledError if the training is cancelled or out of budget before a classifier has been learned.
      * */
     public void prune(INDArray xTrain, INDArray yTrain, INDArray xVal, INDArray yVal, double mLoss, int iterations) {
+        // the reducer is fitted once, so every iteration and the classifier kept share its components
+        if (reducer != null) {
+            Reducer fitted = reducer;
+            fitted.fit(xTrain);
+            reducer = null;
+            try {
+                prune(fitted.transform(xTrain), yTrain, fitted.transform(xVal), yVal, mLoss, iterations);
+            } finally {
+                reducer = fitted;
+                modelChanged();
+            }
+            return;
+        }
+
         logger.info("Pruning classifier ...");
+        if (monitor != null)
+            monitor.start();
 
         // learn from the classifier
         this.learn(xTrain, yTrain, xVal, yVal, iterations);
@@ -427,7 +702,15 @@ public class SupervisedEOPF extends OPF {
 
         // for every possible iteration
         while (Math.abs(accuracy - tmp) <= mLoss) {
+            // keeps the classifier pruned so far if the training is cancelled or out of budget
+            if (monitor != null && monitor.isStopped()) {
+                logger.warning("Pruning stopped: keeping the classifier of iteration " + t);
+                break;
+            }
+
             logger.info("Pruning iteration number " + (t++ + 1));
+            PruneIterationEvent event = new PruneIterationEvent();
+            event.begin();
 
             // creating temporary lists
             ArrayList<INDArray> xTrainTemp = new ArrayList<>();
@@ -473,7 +756,15 @@ public class SupervisedEOPF extends OPF {
             yVal = yValTempIND;
 
             // learn and fit training data into the classifier
-            this.learn(xTrain, yTrain, xVal, yVal, iterations);
+            Graph pruned = this.graph;
+            try {
+                this.learn(xTrain, yTrain, xVal, yVal, iterations);
+            } catch (CancelledError e) {
+                // keeps the classifier pruned so far
+                this.graph = pruned;
+                logger.warning(e.getMessage() + ": keeping the classifier of iteration " + (t - 1));
+                break;
+            }
 
             // predicts new data
             INDArray preds = this.predict(xVal);
@@ -482,8 +773,12 @@ public class SupervisedEOPF extends OPF {
             tmp = General.opfAccuracy(yVal, preds);
 
             logger.info("Current accuracy: " + tmp);
+            event.commit(t, graph.getNodes().size(), xValTemp.size(), tmp);
         }
 
+        // the pruned classifier replaces the learned one
+        modelChanged();
+
         // gathering final number of nodes
         float finalNodes = this.graph.getNodes().size();
 
@@ -497,35 +792,79 @@ public class SupervisedEOPF extends OPF {
 
     /**
      * Find prototype nodes using the Minimum Spanning Tree (MST) approach.
+     * @param graph the training subgraph.
+     * */
+    protected void findPrototypes(Graph graph) {
+        // resumes the search if there is a checkpoint of it
+        Checkpoint resume = Checkpoint.read(checkpointFile, graph, distance);
+        findPrototypes(graph, resume != null && resume.getPhase() == Checkpoint.PROTOTYPES ? resume : null);
+    }
+
+    /**
+     * Finds prototypes nodes using Prim's algorithm.
+     * @param graph the training subgraph.
+     * @param resume the checkpoint to resume the search from; can be null to start it from scratch.
      * */
-    protected void findPrototypes() {
+    private void findPrototypes(Graph graph, Checkpoint resume) {
         logger.info("Finding prototypes...");
 
         // initialize timer
         Instant start = Instant.now();
+        PrototypesEvent event = new PrototypesEvent();
+        event.begin();
 
         // creating a heap of size equals to number of nodes
         Heap heap = new Heap(graph.getNodes().size(), Heap.Policy.MIN);
 
-        // marking first node without any predecessor
-        graph.getNodes().get(0).setPred(Constants.NIL);
-
-        // adding first node to the heap
-        heap.insert(0);
-
         // creating a list of prototype nodes
-        List<Integer> prototypes = new ArrayList<>();
-        // while the heap is not empty
+        List<Integer> prototypes;
 
         // defining an iteration counter to track progress
-        int iterations = 1;
+        int iterations;
         final int SECS = 15;
 
-        // initialize progress timer
+        // counters of the metrics
+        long evaluations = 0, inserts = 0, updates = 0, removes = 0, relaxations = 0;
+
+        // checks if the search is resumed from a checkpoint
+        if (resume != null) {
+            logger.info("Resuming prototypes from checkpoint ...");
+            resume.restore(graph, heap);
+            prototypes = resume.getPrototypes();
+            iterations = resume.getIterations();
+        } else {
+            // marking first node without any predecessor
+            graph.getNodes().get(0).setPred(Constants.NIL);
+
+            // adding first node to the heap
+            heap.insert(0);
+            inserts++;
+
+            prototypes = new ArrayList<>();
+            iterations = 1;
+        }
+
+        // number of prototypes found before this search, if resumed
+        int resumedPrototypes = prototypes.size();
+
+        // initialize progress and checkpoint timers
         Instant progressStart = Instant.now();
+        long lastCheckpoint = System.nanoTime();
 
         // while the queue is not empty
         while (!heap.isEmpty()) {
+            // saves the state of the search if the interval is elapsed
+            if (checkpointFile != null && System.nanoTime() - lastCheckpoint >= checkpointInterval.toNanos()) {
+                writeCheckpoint(new Checkpoint(Checkpoint.PROTOTYPES, graph, distance, heap, prototypes, iterations));
+                lastCheckpoint = System.nanoTime();
+            }
+
+            // stops if the training is cancelled or out of budget, and reports the nodes of the spanning tree
+            if (monitor != null) {
+                monitor.check();
+                monitor.progress(TrainingMonitor.Phase.PROTOTYPES, iterations - 1, graph.getNodes().size());
+            }
+
             // show progress if SECS are elapsed
             double progress = ((double) iterations++ * 100 / graph.getNodes().size());
             if (Duration.between(progressStart, Instant.now()).toMillis() >= SECS * 1000) {
@@ -535,6 +874,7 @@ public class SupervisedEOPF extends OPF {
 
             // remove a node from the heap
             int p = heap.remove();
+            removes++;
 
             // gathers its cost from the heap
             graph.getNodes().get(p).setCost(heap.getCost()[p]);
@@ -583,28 +923,77 @@ public class SupervisedEOPF extends OPF {
                                 graph.getNodes().get(q).getIndex());
                     } else {
                         // calculate the distance
-                        weight = distance.calculate(graph.getNodes().get(p).getFeatures(),
-                                graph.getNodes().get(q).getFeatures());
+                        weight = graph.getNodes().get(p).distance(distance, graph.getNodes().get(q));
                     }
+                    weight = precision.round(weight);
+                    evaluations++;
+
                     // if current arc's cost is smaller the the path's cost
                     if (weight < heap.getCost()[q]) {
                         // marks `q` predecessor node as `p`
                         graph.getNodes().get(q).setPred(p);
 
                         // updates the arc on the heap
+                        if (heap.getColor()[q] == Constants.WHITE)
+                            inserts++;
+                        else
+                            updates++;
                         heap.update(q, weight);
+                        relaxations++;
                     }
                 }
             }
         }
 
+        event.commit(graph.getNodes().size(), prototypes.size(), evaluations, resume != null);
+        if (monitor != null)
+            monitor.progress(TrainingMonitor.Phase.PROTOTYPES, graph.getNodes().size(), graph.getNodes().size());
+
         // end the timer
         Instant end = Instant.now();
 
         // calculating training task time
         Duration trainTime = Duration.between(start, end);
 
+        if (metrics != null) {
+            metrics.add(evaluations, inserts, updates, removes, relaxations);
+            metrics.addPrototypes(prototypes.size() - resumedPrototypes);
+            metrics.phaseCompleted(OPFMetrics.Phase.PROTOTYPES, trainTime.toNanos(), graph.getNodes().size());
+        }
+
         logger.info("Finding prototypes time: " + trainTime.toMillis() + " milliseconds.");
         logger.info("Prototypes: " + prototypes);
     }
+
+    /**
+     * Enables periodic checkpoints of the training, so that an interrupted {@code fit} can be resumed.
+     * When {@code fit} finds a checkpoint of the same training in the file, it goes on from it, giving
+     * the same classifier as an uninterrupted training; the file is deleted once the training is over.
+     * @param filename the checkpoint path; can be null to disable checkpoints.
+     * @param interval the minimum time between two checkpoints.
+     * */
+    public void setCheckpoint(String filename, Duration interval) {
+        if (filename != null && (interval == null || interval.isNegative()))
+            throw new ValueError("The checkpoint interval must be a non negative duration");
+
+        this.checkpointFile = filename;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Writes a checkpoint; a failure is logged, and the training goes on.
+     * */
+    private void writeCheckpoint(Checkpoint checkpoint) {
+        try {
+            checkpoint.write(checkpointFile);
+        } catch (IOException e) {
+            logger.warning("Checkpoint could not be written: " + e.getMessage());
+        }
+    }
+
+    // fixed to the one computed by previous versions, so that their serialized models can be read
+    private static final long serialVersionUID = 5832916801832543148L;
+
+    protected transient String checkpointFile;
+    protected transient Duration checkpointInterval;
 }
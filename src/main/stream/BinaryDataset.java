@@ -0,0 +1,435 @@
+package stream;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary dataset format, that can be memory mapped and used without parsing.
+ * Ids, labels and single features are read straight from the mapped file, whose blocks are mapped in segments of
+ * at most 2 GB. {@link #getX()} wraps a features block of a single segment without copying it: the block is mapped
+ * privately, so writes to the array are kept in memory and never reach the file. Since an array needs contiguous
+ * memory, a larger block is copied once instead, with a bulk copy per segment, into a native ND4J buffer; so is a
+ * block whose file cannot be opened for writing, which private mappings require.
+ * The file is made of a header, followed by the id column, the label column and the row-major features block:
+ * <pre>
+ *     int32   magic
+ *     int32   version
+ *     int64   rows
+ *     int32   features
+ *     int8    features data type (0 = float64, 1 = float32)
+ *     int8    labels data type (0 = int32)
+ *     ...     padding up to 32 bytes
+ *     int32   ids[rows]
+ *     int32   labels[rows]
+ *     float   features[rows * features]
+ * </pre>
+ * All values are little endian, and the features block is always aligned to 8 bytes.
+ *
+ * @author De Caro Antonio
+ */
+public class BinaryDataset {
+
+    private static final Logger logger = Logger.getLogger(BinaryDataset.class.getName());
+
+    /**
+     * The extension of the binary dataset files.
+     * */
+    public static final String EXTENSION = "opfb";
+
+    /**
+     * Memory maps a binary dataset.
+     * The file stays mapped as long as the dataset, or any array obtained from it, is reachable.
+     * @param filename the dataset path.
+     * @return the dataset.
+     * @throws IOException if the file cannot be read.
+     * @throws ValueError if the file is not a binary dataset.
+     * */
+    public static BinaryDataset open(String filename) throws IOException {
+        logger.info("Mapping file: " + filename);
+
+        // private mappings need a channel open for writing, even though nothing is written to the file
+        Path path = Paths.get(filename);
+        boolean writable = Files.isWritable(path);
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY;
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            // read the header
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC)
+                throw new ValueError("File is not a binary dataset: " + filename);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new ValueError("Binary dataset version not supported: " + version);
+
+            long rows = header.getLong();
+            int features = header.getInt();
+            DataType type = fromCode(header.get());
+            if (header.get() != LABELS_INT32)
+                throw new ValueError("Binary dataset labels type not supported");
+
+            long featuresOffset = featuresOffset(rows);
+            long featuresSize = rows * features * elementSize(type);
+            if (channel.size() < featuresOffset + featuresSize)
+                throw new SizeError("Binary dataset is truncated: " + filename);
+            if (rows > Integer.MAX_VALUE)
+                throw new SizeError(String.format("Binary dataset of %d rows exceeds the %d rows of an array",
+                        rows, Integer.MAX_VALUE));
+
+            // map the columns and the features block
+            ByteBuffer[] columns = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, rows * 2 * Integer.BYTES);
+            ByteBuffer[] block = map(channel, mode, featuresOffset, featuresSize);
+
+            logger.info(String.format("File mapped: (%d,%d) %s", rows, features, type));
+            return new BinaryDataset((int) rows, features, type, columns, block);
+        }
+    }
+
+    /**
+     * Writes a binary dataset.
+     * @param filename the dataset path.
+     * @param ids the id of each sample; can be null to use the row index.
+     * @param labels the label of each sample.
+     * @param features the (rows, features) array.
+     * @param type the data type of the stored features, DOUBLE or FLOAT.
+     * @throws IOException if the file cannot be written.
+     * */
+    public static void write(String filename, INDArray ids, INDArray labels, INDArray features, DataType type) throws IOException {
+        logger.info("Writing file: " + filename);
+
+        long rows = features.rows();
+        int columns = features.columns();
+        byte code = toCode(type);
+
+        if (labels.length() != rows || (ids != null && ids.length() != rows))
+            throw new SizeError("`ids`, `labels` and `features` should have the same amount of samples");
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            // write the header
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(rows).putInt(columns).put(code).put(LABELS_INT32);
+            while (buffer.position() < HEADER_SIZE)
+                buffer.put((byte) 0);
+
+            // write the id and label columns
+            for (long i = 0; i < rows; i++) {
+                buffer = flush(channel, buffer, Integer.BYTES);
+                buffer.putInt(ids == null ? (int) i : ids.getInt((int) i));
+            }
+            for (long i = 0; i < rows; i++) {
+                buffer = flush(channel, buffer, Integer.BYTES);
+                buffer.putInt(labels.getInt((int) i));
+            }
+
+            // write the features block, row by row
+            for (long i = 0; i < rows; i++) {
+                double[] row = features.getRow(i).toDoubleVector();
+                for (double value : row) {
+                    buffer = flush(channel, buffer, Double.BYTES);
+                    if (type == DataType.DOUBLE)
+                        buffer.putDouble(value);
+                    else
+                        buffer.putFloat((float) value);
+                }
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+
+        logger.info("File written.");
+    }
+
+    /**
+     * Converts a dataset in OPF file format (.csv, .txt, .json or .dat) into a binary dataset.
+     * @param source the path of the dataset to convert.
+     * @param target the path of the binary dataset.
+     * @param type the data type of the stored features, DOUBLE or FLOAT.
+     * @throws IOException if the binary dataset cannot be written.
+     * */
+    public static void convert(String source, String target, DataType type) throws IOException {
+        Dataset dataset = Ingest.read(source);
+        write(target, Nd4j.createFromArray(dataset.getIds()), dataset.getY(), dataset.getX(), type);
+    }
+
+    /**
+     * Class constructor.
+     * */
+    private BinaryDataset(int rows, int features, DataType type, ByteBuffer[] columns, ByteBuffer[] block) {
+        this.rows = rows;
+        this.features = features;
+        this.type = type;
+        this.columns = columns;
+        this.block = block;
+    }
+
+    /**
+     * @return the number of samples.
+     * */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of features of each sample.
+     * */
+    public int getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return the data type of the features.
+     * */
+    public DataType getDataType() {
+        return type;
+    }
+
+    /**
+     * Gets the id of a sample.
+     * @param i the sample's row.
+     * @return the id.
+     * */
+    public int getId(int i) {
+        return getInt(i);
+    }
+
+    /**
+     * Gets the label of a sample.
+     * @param i the sample's row.
+     * @return the label.
+     * */
+    public int getLabel(int i) {
+        return getInt((long) rows + i);
+    }
+
+    /**
+     * Gets a single feature, reading it straight from the mapped file.
+     * @param i the sample's row.
+     * @param j the feature's column.
+     * @return the feature value.
+     * */
+    public double getFeature(int i, int j) {
+        long offset = ((long) i * features + j) * elementSize(type);
+        ByteBuffer segment = block[(int) (offset / SEGMENT_SIZE)];
+        int position = (int) (offset % SEGMENT_SIZE);
+        if (type == DataType.DOUBLE)
+            return segment.getDouble(position);
+        return segment.getFloat(position);
+    }
+
+    /**
+     * Gets the mapped features block.
+     * @return a read only buffer holding the row-major features.
+     * @throws SizeError if the block is mapped in several segments, see {@link #getBlocks()}.
+     * */
+    public ByteBuffer getBlock() {
+        if (block.length > 1)
+            throw new SizeError("Features block is mapped in " + block.length + " segments, use getBlocks()");
+        return block[0].asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Gets the mapped segments of the features block, in file order. Each segment holds whole values.
+     * @return read only buffers holding the row-major features.
+     * */
+    public List<ByteBuffer> getBlocks() {
+        List<ByteBuffer> blocks = new ArrayList<>();
+        for (ByteBuffer segment : block)
+            blocks.add(segment.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN));
+        return blocks;
+    }
+
+    /**
+     * Gets the array of labels.
+     * @return an INT32 array holding the labels.
+     * */
+    public INDArray getY() {
+        int[] labels = new int[rows];
+        for (int i = 0; i < rows; i++)
+            labels[i] = getLabel(i);
+        return Nd4j.createFromArray(labels);
+    }
+
+    /**
+     * Gets the array of features. The array wraps the privately mapped features block, or a copy of it if it
+     * cannot, on the first call, and the same array is returned by the next ones. The file stays mapped as long as
+     * the array is reachable.
+     * @return the (rows, features) array.
+     * */
+    public INDArray getX() {
+        if (x == null) {
+            long length = (long) rows * features;
+            if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+                // ND4J buffers are in native order, so values have to be swapped
+                x = Nd4j.createUninitialized(type, rows, features);
+                for (int i = 0; i < rows; i++)
+                    for (int j = 0; j < features; j++)
+                        x.putScalar((long) i * features + j, getFeature(i, j));
+            } else if (block.length == 1 && !block[0].isReadOnly()) {
+                // the array reads the mapped pages, which are only copied when written
+                DataBuffer buffer = type == DataType.DOUBLE
+                        ? wrap(new MappedDoublePointer(block[0]), length)
+                        : wrap(new MappedFloatPointer(block[0]), length);
+                x = Nd4j.create(buffer, rows, features);
+            } else {
+                // a bulk copy of each segment into a native buffer
+                x = Nd4j.createUninitialized(type, rows, features);
+                BytePointer target = new BytePointer(x.data().pointer());
+                long offset = 0;
+                for (ByteBuffer segment : block) {
+                    Pointer.memcpy(target.position(offset), new BytePointer(segment), segment.capacity());
+                    offset += segment.capacity();
+                }
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Reads an int of the columns, given its index from the first id.
+     * */
+    private int getInt(long index) {
+        long offset = index * Integer.BYTES;
+        return columns[(int) (offset / SEGMENT_SIZE)].getInt((int) (offset % SEGMENT_SIZE));
+    }
+
+    /**
+     * Maps a block of a file in segments of at most {@link #SEGMENT_SIZE} bytes, in little endian order.
+     * A block always has at least a segment, even if empty.
+     * */
+    private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long offset, long size)
+            throws IOException {
+        return map(channel, mode, offset, size, SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps a block of a file in segments of a given size, but the last one, in little endian order.
+     * A block always has at least a segment, even if empty.
+     * @param segmentSize the size of the segments, at most {@link #SEGMENT_SIZE} bytes.
+     * */
+    static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long offset, long size,
+                            long segmentSize) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[(int) Math.max(1, (size + segmentSize - 1) / segmentSize)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * segmentSize;
+            long length = Math.min(segmentSize, size - start);
+            segments[i] = channel.map(mode, offset + start, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return segments;
+    }
+
+    private static DataBuffer wrap(DoublePointer pointer, long length) {
+        return Nd4j.createBuffer(pointer, DataType.DOUBLE, length, DoubleIndexer.create(pointer));
+    }
+
+    private static DataBuffer wrap(FloatPointer pointer, long length) {
+        return Nd4j.createBuffer(pointer, DataType.FLOAT, length, FloatIndexer.create(pointer));
+    }
+
+    /**
+     * Makes room in the buffer, writing its content if needed.
+     * */
+    private static ByteBuffer flush(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * @return the offset of the features block.
+     * */
+    private static long featuresOffset(long rows) {
+        return HEADER_SIZE + rows * 2 * Integer.BYTES;
+    }
+
+    private static int elementSize(DataType type) {
+        return type == DataType.DOUBLE ? Double.BYTES : Float.BYTES;
+    }
+
+    private static byte toCode(DataType type) {
+        if (type == DataType.DOUBLE)
+            return FEATURES_FLOAT64;
+        if (type == DataType.FLOAT)
+            return FEATURES_FLOAT32;
+        throw new ValueError("Features data type should be `DOUBLE` or `FLOAT`");
+    }
+
+    private static DataType fromCode(byte code) {
+        if (code == FEATURES_FLOAT64)
+            return DataType.DOUBLE;
+        if (code == FEATURES_FLOAT32)
+            return DataType.FLOAT;
+        throw new ValueError("Binary dataset features type not supported: " + code);
+    }
+
+    private static final int MAGIC = 0x4A4F5042;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // the largest mapping, a multiple of 8 so that no value spans two segments
+    static final long SEGMENT_SIZE = Integer.MAX_VALUE & ~7;
+
+    private static final byte FEATURES_FLOAT64 = 0;
+    private static final byte FEATURES_FLOAT32 = 1;
+    private static final byte LABELS_INT32 = 0;
+
+    private final int rows, features;
+    private final DataType type;
+    private final ByteBuffer[] columns;
+    private final ByteBuffer[] block;
+    private INDArray x;
+
+    /**
+     * A pointer to a mapped features block of doubles, which keeps the mapping alive as long as the arrays using it.
+     * */
+    private static class MappedDoublePointer extends DoublePointer {
+        MappedDoublePointer(ByteBuffer mapping) {
+            super(mapping.asDoubleBuffer());
+            this.mapping = mapping;
+        }
+
+        private final ByteBuffer mapping;
+    }
+
+    /**
+     * A pointer to a mapped features block of floats, which keeps the mapping alive as long as the arrays using it.
+     * */
+    private static class MappedFloatPointer extends FloatPointer {
+        MappedFloatPointer(ByteBuffer mapping) {
+            super(mapping.asFloatBuffer());
+            this.mapping = mapping;
+        }
+
+        private final ByteBuffer mapping;
+    }
+}
@@ -0,0 +1,429 @@
+package stream;
+
+import core.Graph;
+import core.Node;
+import core.OPF;
+import math.Distance;
+import math.DistancesImplementor;
+import math.LinearReducer;
+import math.Reducer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.Precision;
+import utils.exceptions.BuildError;
+import utils.exceptions.ValueError;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary format for trained classifiers, holding only what is needed to predict
+ * (and to keep learning or pruning) instead of the whole serialized object graph.
+ * Nodes are stored in the order of the ordered list, so the restored graph needs no indirection:
+ * <pre>
+ *     int32   magic
+ *     int32   version
+ *     int32   nodes
+ *     int32   features
+ *     int8    features data type (0 = float64, 1 = float32)
+ *     int8    precision (0 = double, 1 = float)
+ *     utf8    model type (int16 length + bytes)
+ *     utf8    distance name (int16 length + bytes)
+ *     int32   indexes[nodes]
+ *     int32   labels[nodes]
+ *     int32   predicted labels[nodes]
+ *     int32   predecessors[nodes]
+ *     float64 costs[nodes]
+ *     float   features[nodes * features]
+ *     int8    reducer (0 = none, 1 = linear)
+ *     utf8    reducer type (int16 length + bytes)
+ *     int32   reducer parameters
+ *     int64   reducer parameter values[reducer parameters]
+ *     int32   reducer features
+ *     float64 reducer mean[reducer features]
+ *     float64 reducer projection[reducer features * features]
+ * </pre>
+ * The reducer block, since version 2, is only present for linear reducers; {@code features} are then the reduced
+ * ones. The precision, since version 3, is the one of the classifier; older models have the precision of their
+ * features. The reducer parameters, since version 4, are the ones of {@link LinearReducer#getParameters()}; older
+ * reducers are restored with the default ones. All values are little endian. Files can also be memory mapped and used in place with {@link MappedModel}.
+ *
+ * @author De Caro Antonio
+ */
+public class BinaryModel {
+
+    private static final Logger logger = Logger.getLogger(BinaryModel.class.getName());
+
+    /**
+     * Writes a trained classifier.
+     * Features are stored with the data type of the training array.
+     * @param opf the trained classifier.
+     * @param filename the model path.
+     * @throws IOException if the file cannot be written.
+     * @throws BuildError if the classifier has not been trained, or cannot be represented in the format, see
+     *                    {@link #isWritable(OPF)}.
+     * */
+    public static void write(OPF opf, String filename) throws IOException {
+        logger.info("Writing model: " + filename);
+
+        Graph graph = opf.getGraph();
+        if (graph == null || !graph.isTrained())
+            throw new BuildError("Subgraph has not been properly trained.");
+
+        int n = graph.getNodes().size();
+        if (graph.getOrderedNodes().size() != n)
+            throw new BuildError("Every node of the subgraph should be in the ordered list.");
+        String unsupported = getUnsupported(opf);
+        if (unsupported != null)
+            throw new BuildError(unsupported + " cannot be written in the binary model format, OPF.save writes it " +
+                    "with Java serialization.");
+
+        String distance = DistancesImplementor.getName(opf.getDistance());
+        Reducer reducer = opf.getReducer();
+
+        int features = graph.getFeatures();
+        DataType type = graph.getNodes().get(0).getFeatures().dataType() == DataType.FLOAT ?
+                DataType.FLOAT : DataType.DOUBLE;
+
+        // position of each node in the ordered list, used to remap predecessors
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++)
+            positions[graph.getOrderedNodes().get(i)] = i;
+
+        try (LittleEndianOutput out = new LittleEndianOutput(filename)) {
+            // write the header
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(n);
+            out.putInt(features);
+            out.putByte(type == DataType.DOUBLE ? FEATURES_FLOAT64 : FEATURES_FLOAT32);
+            out.putByte(opf.getPrecision() == Precision.DOUBLE ? PRECISION_DOUBLE : PRECISION_FLOAT);
+            putString(out, opf.getClass().getName());
+            putString(out, distance);
+
+            // write the columns, in the ordered list's order
+            for (int index : graph.getOrderedNodes())
+                out.putInt(graph.getNodes().get(index).getIndex());
+            for (int index : graph.getOrderedNodes())
+                out.putInt(graph.getNodes().get(index).getLabel());
+            for (int index : graph.getOrderedNodes())
+                out.putInt(graph.getNodes().get(index).getPredictedLabel());
+            for (int index : graph.getOrderedNodes()) {
+                int pred = graph.getNodes().get(index).getPred();
+                out.putInt(pred < 0 ? pred : positions[pred]);
+            }
+            for (int index : graph.getOrderedNodes())
+                out.putDouble(graph.getNodes().get(index).getCost());
+
+            // write the features block
+            for (int index : graph.getOrderedNodes()) {
+                INDArray row = graph.getNodes().get(index).getFeatures();
+                if (type == DataType.DOUBLE) {
+                    for (double value : row.toDoubleVector())
+                        out.putDouble(value);
+                } else {
+                    for (float value : row.toFloatVector())
+                        out.putFloat(value);
+                }
+            }
+
+            // write the reducer block
+            if (reducer == null) {
+                out.putByte(REDUCER_NONE);
+            } else {
+                LinearReducer linear = (LinearReducer) reducer;
+                out.putByte(REDUCER_LINEAR);
+                putString(out, linear.getClass().getName());
+                long[] parameters = linear.getParameters();
+                out.putInt(parameters.length);
+                for (long parameter : parameters)
+                    out.putLong(parameter);
+                out.putInt(linear.getFeatures());
+                for (double value : linear.getMean().toDoubleVector())
+                    out.putDouble(value);
+                for (double value : linear.getProjection().dup('c').data().asDouble())
+                    out.putDouble(value);
+            }
+        }
+
+        logger.info("Model written.");
+    }
+
+    /**
+     * Reads a trained classifier.
+     * Models saved with Java serialization by previous versions are still recognized and loaded.
+     * @param filename the model path.
+     * @return the trained classifier.
+     * @throws IOException if the file cannot be read.
+     * @throws ClassNotFoundException if a serialized model refers to an unknown class.
+     * @throws ValueError if the file is not a model, or its distance is not one of {@link DistancesImplementor}.
+     * */
+    public static OPF read(String filename) throws IOException, ClassNotFoundException {
+        // check which format the file is in
+        int magic;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            magic = in.readInt();
+        }
+        if ((magic >>> 16) == SERIALIZATION_MAGIC)
+            return readSerialized(filename);
+        if (Integer.reverseBytes(magic) != MAGIC)
+            throw new ValueError("File is not a model: " + filename);
+
+        logger.info("Loading model: " + filename);
+
+        try (LittleEndianInput in = new LittleEndianInput(filename)) {
+            // read the header
+            in.getInt();
+            int version = in.getInt();
+            if (version < 1 || version > VERSION)
+                throw new ValueError("Model version not supported: " + version);
+
+            int n = in.getInt();
+            int features = in.getInt();
+            if (n <= 0 || features <= 0)
+                throw new ValueError(String.format("Bad model header: nodes=%d, features=%d", n, features));
+            DataType type = fromCode(in.getByte());
+            Precision precision = version > 2 ? precisionFromCode(in.getByte()) : Precision.of(type);
+            String modelType = getString(in);
+            Distance distance = DistancesImplementor.fromName(getString(in));
+
+            // read the columns
+            int[] indexes = getInts(in, n);
+            int[] labels = getInts(in, n);
+            int[] predictedLabels = getInts(in, n);
+            int[] preds = getInts(in, n);
+            double[] costs = new double[n];
+            for (int i = 0; i < n; i++)
+                costs[i] = in.getDouble();
+
+            // read the features block straight into the native buffer
+            INDArray x = Nd4j.createUninitialized(type, n, features);
+            DataBuffer data = x.data();
+            long length = (long) n * features;
+            if (length * data.getElementSize() <= Integer.MAX_VALUE) {
+                if (type == DataType.DOUBLE) {
+                    DoubleBuffer target = data.asNio().order(ByteOrder.nativeOrder()).asDoubleBuffer();
+                    for (long i = 0; i < length; i++)
+                        target.put(in.getDouble());
+                } else {
+                    FloatBuffer target = data.asNio().order(ByteOrder.nativeOrder()).asFloatBuffer();
+                    for (long i = 0; i < length; i++)
+                        target.put(in.getFloat());
+                }
+            } else {
+                for (long i = 0; i < length; i++)
+                    data.put(i, type == DataType.DOUBLE ? in.getDouble() : in.getFloat());
+            }
+
+            // build the trained graph; nodes are already in the ordered list's order
+            Graph graph = new Graph(x, Nd4j.createFromArray(labels));
+            for (int i = 0; i < n; i++) {
+                Node node = graph.getNodes().get(i);
+                node.setIndex(indexes[i]);
+                node.setPredictedLabel(predictedLabels[i]);
+                node.setPred(preds[i]);
+                node.setCost(costs[i]);
+                graph.getOrderedNodes().add(i);
+            }
+            graph.setTrained(true);
+
+            OPF opf = newInstance(modelType, distance);
+            opf.setGraph(graph);
+            opf.setPrecision(precision);
+            if (version > 1)
+                opf.setReducer(readReducer(in, features, version));
+
+            logger.info("Model loaded.");
+            return opf;
+        }
+    }
+
+    /**
+     * Reads the reducer block.
+     * @return the reducer, or null if the model has none.
+     * */
+    private static LinearReducer readReducer(LittleEndianInput in, int components, int version) throws IOException {
+        byte code = in.getByte();
+        if (code == REDUCER_NONE)
+            return null;
+        if (code != REDUCER_LINEAR)
+            throw new ValueError("Model reducer not supported: " + code);
+
+        String reducerType = getString(in);
+        long[] parameters = new long[version > 3 ? in.getInt() : 0];
+        if (parameters.length > MAX_REDUCER_PARAMETERS)
+            throw new ValueError("Bad reducer parameters: " + parameters.length);
+        for (int i = 0; i < parameters.length; i++)
+            parameters[i] = in.getLong();
+        int features = in.getInt();
+        if (features <= 0)
+            throw new ValueError("Bad reducer features: " + features);
+        double[] mean = new double[features];
+        for (int i = 0; i < features; i++)
+            mean[i] = in.getDouble();
+        double[] projection = new double[features * components];
+        for (int i = 0; i < projection.length; i++)
+            projection[i] = in.getDouble();
+
+        return LinearReducer.restore(reducerType, components, parameters, Nd4j.createFromArray(mean),
+                Nd4j.create(projection, features, components));
+    }
+
+    /**
+     * Checks whether a classifier can be written in the binary model format: it has been trained, its features are
+     * dense, its distance is one of {@link DistancesImplementor}, its reducer, if any, is a fitted linear one, and its
+     * class can be restored from the format.
+     * @param opf the classifier.
+     * @return true if {@link #write(OPF, String)} can write the classifier.
+     * */
+    public static boolean isWritable(OPF opf) {
+        Graph graph = opf.getGraph();
+        return graph != null && graph.isTrained() && graph.getOrderedNodes().size() == graph.getNodes().size() &&
+                getUnsupported(opf) == null;
+    }
+
+    /**
+     * Writes a classifier with Java serialization, which {@link #read(String)} detects by its header.
+     * Unlike the binary model format, any classifier can be written, provided its distance and reducer are
+     * serializable.
+     * @param opf the classifier.
+     * @param filename the model path.
+     * @throws IOException if the file cannot be written.
+     * */
+    public static void writeSerialized(OPF opf, String filename) throws IOException {
+        logger.info("Writing serialized model: " + filename);
+
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
+            oos.writeObject(opf);
+        }
+    }
+
+    /**
+     * Reads a classifier saved with Java serialization.
+     * */
+    private static OPF readSerialized(String filename) throws IOException, ClassNotFoundException {
+        logger.info("Loading serialized model: " + filename);
+
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
+            Object obj = ois.readObject();
+            if (obj instanceof OPF)
+                return (OPF) obj;
+            throw new ValueError("File is not a model: " + filename);
+        }
+    }
+
+    /**
+     * Finds what prevents a trained classifier from being written in the binary model format.
+     * The class should be restorable by {@link #newInstance(String, Distance)}: it has a public constructor taking the
+     * distance, and declares no state of its own besides transient fields.
+     * @return the unsupported part of the classifier, or null if it can be written.
+     * */
+    private static String getUnsupported(OPF opf) {
+        if (!opf.getGraph().isDense())
+            return "Features in a sparse or quantized matrix";
+
+        Reducer reducer = opf.getReducer();
+        if (reducer != null && (!(reducer instanceof LinearReducer) || !reducer.isFitted()))
+            return "A reducer which is not a fitted linear one";
+        if (DistancesImplementor.getName(opf.getDistance()).isEmpty())
+            return "A distance which is not one of DistancesImplementor";
+
+        Class<?> modelType = opf.getClass();
+        try {
+            modelType.getConstructor(Distance.class);
+        } catch (NoSuchMethodException e) {
+            return "Model type " + modelType.getName() + " without a public constructor taking a distance";
+        }
+        for (Class<?> c = modelType; c != OPF.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic())
+                    return "Field " + field.getName() + " of model type " + c.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a classifier given the name of its class.
+     * */
+    private static OPF newInstance(String modelType, Distance distance) {
+        try {
+            Class<?> instanceClass = Class.forName(modelType);
+            if (!OPF.class.isAssignableFrom(instanceClass))
+                throw new ValueError("Model type not supported: " + modelType);
+            return (OPF) instanceClass.getConstructor(Distance.class).newInstance(distance);
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException |
+                IllegalAccessException | InvocationTargetException e) {
+            throw new ValueError("Model type not supported: " + modelType);
+        }
+    }
+
+    private static int[] getInts(LittleEndianInput in, int n) throws IOException {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++)
+            values[i] = in.getInt();
+        return values;
+    }
+
+    private static void putString(LittleEndianOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(LittleEndianInput in) throws IOException {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static DataType fromCode(byte code) {
+        if (code == FEATURES_FLOAT64)
+            return DataType.DOUBLE;
+        if (code == FEATURES_FLOAT32)
+            return DataType.FLOAT;
+        throw new ValueError("Model features type not supported: " + code);
+    }
+
+    static Precision precisionFromCode(byte code) {
+        if (code == PRECISION_DOUBLE)
+            return Precision.DOUBLE;
+        if (code == PRECISION_FLOAT)
+            return Precision.FLOAT;
+        throw new ValueError("Model precision not supported: " + code);
+    }
+
+    static final int MAGIC = 0x4A4F504D;
+    // version 2 added the reducer block, version 3 the precision, version 4 the reducer parameters
+    static final int VERSION = 4;
+
+    // reducers have a handful of parameters, more means a corrupt file
+    static final int MAX_REDUCER_PARAMETERS = 64;
+
+    // first two bytes of a Java serialization stream
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+
+    static final byte FEATURES_FLOAT64 = 0;
+    static final byte FEATURES_FLOAT32 = 1;
+
+    static final byte PRECISION_DOUBLE = 0;
+    static final byte PRECISION_FLOAT = 1;
+
+    static final byte REDUCER_NONE = 0;
+    static final byte REDUCER_LINEAR = 1;
+}
@@ -0,0 +1,393 @@
+package stream;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import utils.ExecutionRuntime;
+import utils.events.LoadEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Loads a text file into a ND4J Array, parsing numbers straight from the bytes of the file.
+ * Produces the same arrays of {@link Loader}, without creating any intermediate object per record.
+ * @author De Caro Antonio
+ * */
+public class ByteLoader {
+
+    private static final Logger logger = Logger.getLogger(ByteLoader.class.getName());
+
+    /**
+     * Load a text file into a ND4J Array.
+     * @param filename string holding the *.txt path.
+     * @return an Array containing data.
+     * */
+    public INDArray loadText(String filename) {
+        logger.info("Loading file: " + filename);
+        return load(filename, false);
+    }
+
+    /**
+     * Load a CSV file into a ND4J Array.
+     * @param filename string holding the *.csv path.
+     * @return an Array containing data.
+     * */
+    public INDArray loadCSV(String filename) {
+        logger.info("Loading file CSV: " + filename);
+        return load(filename, true);
+    }
+
+    /**
+     * Load a text file into a ND4J Array, parsing it with multiple threads.
+     * Lines must be terminated by `\n` or `\r\n`.
+     * @param filename string holding the *.txt path.
+     * @param threads number of threads to use.
+     * @return an Array containing data, identical to the one loaded by a single thread.
+     * */
+    public INDArray loadText(String filename, int threads) {
+        logger.info(String.format("Loading file (%d threads): %s", threads, filename));
+        return load(filename, false, threads);
+    }
+
+    /**
+     * Load a CSV file into a ND4J Array, parsing it with multiple threads.
+     * Lines must be terminated by `\n` or `\r\n`.
+     * @param filename string holding the *.csv path.
+     * @param threads number of threads to use.
+     * @return an Array containing data, identical to the one loaded by a single thread.
+     * */
+    public INDArray loadCSV(String filename, int threads) {
+        logger.info(String.format("Loading file CSV (%d threads): %s", threads, filename));
+        return load(filename, true, threads);
+    }
+
+    /**
+     * Load a whole file into a ND4J Array, splitting it in chunks aligned to lines.
+     * @param filename the file path.
+     * @param csv whether fields are separated by commas or by white spaces.
+     * @param threads number of threads to use.
+     * @return an Array containing data.
+     * */
+    private INDArray load(String filename, boolean csv, int threads) {
+        LoadEvent event = new LoadEvent();
+        event.begin();
+
+        // try to load the file
+        try {
+            List<RecordBuffer> parts = parse(filename, csv, threads, RecordBuffer::new);
+            logger.info("File loaded.");
+
+            // create the dataset,
+            // and return
+            INDArray data = RecordBuffer.concat(parts);
+            event.commit(filename, "ByteLoader", threads, data == null ? 0 : data.rows(),
+                    data == null ? 0 : data.columns());
+            return data;
+
+        } catch (IOException e) {
+            // if can not properly read the file
+            logger.severe(e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses a whole file, splitting it in chunks aligned to lines.
+     * Each chunk is parsed in its own sink, so that sinks can be stitched in file order.
+     * @param filename the file path.
+     * @param csv whether fields are separated by commas or by white spaces.
+     * @param threads maximum number of threads parsing the file; chunks run on the {@link ExecutionRuntime}.
+     * @param sinks the factory of the sinks receiving the records of each chunk.
+     * @return the sinks, in file order.
+     * @throws IOException if the file cannot be read.
+     * */
+    static <T extends RecordSink> List<T> parse(String filename, boolean csv, int threads, Supplier<T> sinks)
+            throws IOException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("The number of threads has to be greater or equals 1");
+
+        List<T> parts = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            // use a few chunks per thread to balance the load, but avoid tiny chunks
+            int chunks = (int) Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE));
+            if (chunks == 1 || threads == 1) {
+                T records = sinks.get();
+                parse(channel, 0, size, csv, records);
+                parts.add(records);
+                return parts;
+            }
+
+            // chunks are claimed by at most the given threads of the runtime, as they finish the previous ones
+            parts.addAll(Collections.nCopies(chunks, null));
+            try {
+                ExecutionRuntime.forEach(0, chunks, threads, (from, to) -> {
+                    // each chunk owns the lines starting in its range, and is kept in file order
+                    for (int i = from; i < to; i++) {
+                        T records = sinks.get();
+                        try {
+                            parse(channel, size * i / chunks, size * (i + 1) / chunks, csv, records);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        parts.set(i, records);
+                    }
+                });
+                return parts;
+
+            } catch (UncheckedIOException e) {
+                // read errors are thrown as they are
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Load a whole file into a ND4J Array.
+     * @param filename the file path.
+     * @param csv whether fields are separated by commas or by white spaces.
+     * @return an Array containing data.
+     * */
+    private INDArray load(String filename, boolean csv) {
+        return load(filename, csv, 1);
+    }
+
+    /**
+     * Parses the lines starting in a range of a file.
+     * If the range does not start at the beginning of the file, the first (partial) line is skipped,
+     * while the last line is parsed until its end, even if it goes past the range.
+     * @param channel the file channel.
+     * @param start first byte of the range.
+     * @param end the end (exclusive) of the range.
+     * @param csv whether fields are separated by commas or by white spaces.
+     * @param records the sink receiving the records.
+     * */
+    static void parse(FileChannel channel, long start, long end, boolean csv, RecordSink records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+
+        // holds the bytes of the current field
+        byte[] token = new byte[64];
+        int length = 0;
+
+        long position = start > 0 ? nextLine(channel, start, buffer) : 0;
+        boolean lineStart = true, skipLF = false;
+
+        loop:
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                break;
+
+            for (int i = 0; i < read; i++) {
+                // lines starting after the range belong to someone else
+                if (lineStart && position + i >= end)
+                    break loop;
+
+                byte b = bytes[i];
+
+                // a line is terminated by `\n`, `\r` or `\r\n`
+                if (b == '\n' || b == '\r') {
+                    if (b == '\n' && skipLF) {
+                        skipLF = false;
+                        continue;
+                    }
+                    if (length > 0)
+                        records.add(parseDouble(token, length));
+                    length = 0;
+                    records.endRecord();
+                    lineStart = true;
+                    skipLF = b == '\r';
+                    continue;
+                }
+
+                lineStart = false;
+                skipLF = false;
+
+                if (csv ? b == ',' : isWhitespace(b)) {
+                    // consecutive white spaces are a single separator, while commas always close a field
+                    if (csv || length > 0)
+                        records.add(parseDouble(token, length));
+                    length = 0;
+                } else {
+                    if (length == token.length)
+                        token = Arrays.copyOf(token, length * 2);
+                    token[length++] = b;
+                }
+            }
+            position += read;
+        }
+
+        // the file may not end with a line terminator
+        if (length > 0)
+            records.add(parseDouble(token, length));
+        records.endRecord();
+    }
+
+    /**
+     * Finds the beginning of the first line starting at, or after, a given position.
+     * @return the position of the line.
+     * */
+    private static long nextLine(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        byte[] bytes = buffer.array();
+
+        // check if the previous byte terminates a line
+        buffer.clear().limit(1);
+        if (channel.read(buffer, position - 1) == 1 && bytes[0] == '\n')
+            return position;
+
+        // otherwise skip everything until the next `\n`
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                return position;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Parses a double from ASCII bytes, with the same result of {@link Double#parseDouble(String)}.
+     * Decimal numbers with at most 15 significant digits and a small exponent are parsed
+     * directly, since they can be computed with a single correctly rounded operation;
+     * every other number falls back to the standard parser.
+     * @param bytes the bytes holding the number.
+     * @param length the number of bytes.
+     * @return the parsed value.
+     * @throws NumberFormatException if the bytes do not represent a number.
+     * */
+    static double parseDouble(byte[] bytes, int length) {
+        int i = 0;
+        int end = length;
+
+        // trim white spaces, as the standard parser does
+        while (i < end && (bytes[i] & 0xff) <= ' ')
+            i++;
+        while (end > i && (bytes[end - 1] & 0xff) <= ' ')
+            end--;
+
+        int from = i;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean any = false;
+
+        // integer part
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+            if (mantissa != 0 || bytes[i] != '0')
+                digits++;
+            mantissa = mantissa * 10 + (bytes[i] - '0');
+            any = true;
+            i++;
+            if (digits > MAX_DIGITS)
+                return fallback(bytes, from, end);
+        }
+
+        // fractional part
+        if (i < end && bytes[i] == '.') {
+            i++;
+            while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+                if (mantissa != 0 || bytes[i] != '0')
+                    digits++;
+                mantissa = mantissa * 10 + (bytes[i] - '0');
+                exponent--;
+                any = true;
+                i++;
+                if (digits > MAX_DIGITS)
+                    return fallback(bytes, from, end);
+            }
+        }
+
+        if (!any)
+            return fallback(bytes, from, end);
+
+        // exponent part
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int value = 0;
+            int start = i;
+            while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+                value = value * 10 + (bytes[i] - '0');
+                i++;
+                if (value > MAX_EXPONENT)
+                    return fallback(bytes, from, end);
+            }
+            if (i == start)
+                return fallback(bytes, from, end);
+            exponent += negativeExponent ? -value : value;
+        }
+
+        // anything else (suffixes, special values, hexadecimal numbers) is left to the standard parser
+        if (i != end || exponent < -MAX_EXPONENT || exponent > MAX_EXPONENT)
+            return fallback(bytes, from, end);
+
+        double value = (double) mantissa;
+        if (exponent < 0)
+            value /= POWERS[-exponent];
+        else
+            value *= POWERS[exponent];
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a number with the standard parser.
+     * */
+    private static double fallback(byte[] bytes, int from, int to) {
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Checks if a byte is a white space, as defined by {@link java.util.Scanner}.
+     * */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\f' || b == 0x0B || (b >= 0x1C && b <= 0x1F);
+    }
+
+    // size of the read buffer
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // number of chunks assigned to each thread by the parallel load
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // minimum size of a chunk
+    private static final long MIN_CHUNK_SIZE = 1 << 22;
+
+    // maximum number of significant digits exactly representable by a double
+    private static final int MAX_DIGITS = 15;
+
+    // maximum exponent of ten exactly representable by a double
+    private static final int MAX_EXPONENT = 22;
+
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+}
@@ -0,0 +1,68 @@
+package stream;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import utils.exceptions.SizeError;
+
+/**
+ * A labeled dataset, holding the id of each sample, its features and its label.
+ *
+ * @author De Caro Antonio
+ */
+public class Dataset {
+
+    /**
+     * Class constructor.
+     * @param ids the id of each sample.
+     * @param x the (rows, features) array of features.
+     * @param y the array of labels.
+     * @param classes the number of distinct labels.
+     * */
+    public Dataset(int[] ids, INDArray x, INDArray y, int classes) {
+        if (ids.length != x.rows() || y.length() != x.rows())
+            throw new SizeError("`ids`, `X` and `Y` should have the same amount of samples");
+
+        this.ids = ids;
+        this.x = x;
+        this.y = y;
+        this.classes = classes;
+    }
+
+    /**
+     * @return the number of samples.
+     * */
+    public int getRows() {
+        return ids.length;
+    }
+
+    /**
+     * @return the id of each sample.
+     * */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * Get the features array.
+     * */
+    public INDArray getX() {
+        return x;
+    }
+
+    /**
+     * Get the labels array.
+     * */
+    public INDArray getY() {
+        return y;
+    }
+
+    /**
+     * @return the number of distinct labels.
+     * */
+    public int getClasses() {
+        return classes;
+    }
+
+    private final int[] ids;
+    private final INDArray x, y;
+    private final int classes;
+}
@@ -0,0 +1,143 @@
+package stream;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Receives records in OPF file format (id, label, features) and splits their columns while reading:
+ * ids and labels go into primitive arrays, features into their own buffer.
+ * Labels are counted with a primitive array once all records are read, when the number of records bounds them,
+ * so a corrupt label cannot grow the counters beyond the size of the dataset.
+ *
+ * @author De Caro Antonio
+ */
+class DatasetBuilder implements RecordSink {
+
+    /**
+     * Class constructor.
+     * */
+    DatasetBuilder() {
+        this.features = new RecordBuffer();
+        this.ids = new int[INITIAL_SIZE];
+        this.labels = new int[INITIAL_SIZE];
+    }
+
+    @Override
+    public void add(double value) {
+        if (column == 0) {
+            id = (int) value;
+        } else if (column == 1) {
+            label = (int) value;
+            if (label != value || label < 1)
+                throw new ValueError(String.format("Record %d has label %s, labels should be integers >= 1",
+                        rows + 1, value));
+        } else {
+            features.add(value);
+        }
+        column++;
+    }
+
+    @Override
+    public void endRecord() {
+        if (column == 0)
+            return;
+        if (column < 3)
+            throw new SizeError(String.format("Record %d has %d fields, expected at least 3", rows + 1, column));
+
+        features.endRecord();
+
+        if (rows == ids.length) {
+            ids = Arrays.copyOf(ids, rows * 2);
+            labels = Arrays.copyOf(labels, rows * 2);
+        }
+        ids[rows] = id;
+        labels[rows] = label;
+        rows++;
+        maxLabel = Math.max(maxLabel, label);
+
+        column = 0;
+    }
+
+    /**
+     * Builds the dataset holding all records of the given builders, in order.
+     * @param parts the builders to concatenate.
+     * @return the dataset.
+     * @throws ValueError if labels are not sequential, or there are less than two of them.
+     * */
+    static Dataset concat(List<DatasetBuilder> parts) {
+        int rows = 0;
+        int size = 0;
+        for (DatasetBuilder part : parts) {
+            rows += part.rows;
+            size = Math.max(size, part.maxLabel);
+        }
+        // sequential labels cannot be more than the records
+        if (size > rows)
+            throw new ValueError("Parsed data should have sequential labels, e.g., 1, 2, ..., n");
+
+        // merge ids, labels and counters
+        int[] ids = new int[rows];
+        int[] labels = new int[rows];
+        int[] counts = new int[size];
+        List<RecordBuffer> features = new ArrayList<>();
+
+        int offset = 0;
+        for (DatasetBuilder part : parts) {
+            System.arraycopy(part.ids, 0, ids, offset, part.rows);
+            System.arraycopy(part.labels, 0, labels, offset, part.rows);
+            features.add(part.features);
+            offset += part.rows;
+        }
+
+        // count the labels
+        for (int label : labels)
+            counts[label - 1]++;
+        int classes = countClasses(counts);
+
+        INDArray x = RecordBuffer.concat(features);
+        INDArray y = Nd4j.createFromArray(labels);
+        return new Dataset(ids, x, y, classes);
+    }
+
+    /**
+     * Checks that labels are sequential, e.g., 1, 2, ..., n.
+     * @param counts the number of samples of each label, starting from label 1.
+     * @return the number of distinct labels.
+     * @throws ValueError if labels are not sequential, or there are less than two of them.
+     * */
+    static int countClasses(int[] counts) {
+        int distinct = 0, max = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                distinct++;
+                max = i + 1;
+            }
+        }
+        if (distinct < 2)
+            throw new ValueError("Parsed data should have at least two distinct labels");
+        if (distinct != max)
+            throw new ValueError("Parsed data should have sequential labels, e.g., 1, 2, ..., n");
+        return distinct;
+    }
+
+    /**
+     * @see DatasetBuilder#concat(List)
+     * */
+    Dataset build() {
+        List<DatasetBuilder> parts = new ArrayList<>();
+        parts.add(this);
+        return concat(parts);
+    }
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private final RecordBuffer features;
+    private int[] ids, labels;
+    private int rows, column, id, label, maxLabel;
+}
@@ -0,0 +1,100 @@
+package stream;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.exceptions.SizeError;
+
+/**
+ * A view over a subset of the samples of a dataset, defined by the indexes of its rows.
+ * Rows are never copied: features are read from the original array.
+ *
+ * @author De Caro Antonio
+ */
+public class DatasetView {
+
+    /**
+     * Class constructor.
+     * @param x the array of features of the whole dataset.
+     * @param y the array of labels of the whole dataset.
+     * @param indices the rows of the dataset belonging to the view, in order.
+     * */
+    public DatasetView(INDArray x, INDArray y, int[] indices) {
+        if (y != null && y.length() != x.rows())
+            throw new SizeError("`X` and `Y` should have the same amount of samples");
+
+        this.x = x;
+        this.y = y;
+        this.indices = indices;
+    }
+
+    /**
+     * @return the number of samples in the view.
+     * */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * Gets the row of a sample in the original dataset.
+     * @param i the sample's position in the view.
+     * @return the row in the original dataset.
+     * */
+    public int getIndex(int i) {
+        return indices[i];
+    }
+
+    /**
+     * @return the rows of the original dataset belonging to the view.
+     * */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * Gets the features of a sample, as a view of the original array.
+     * @param i the sample's position in the view.
+     * @return the features of the sample.
+     * */
+    public INDArray getFeatures(int i) {
+        return x.getRow(indices[i]);
+    }
+
+    /**
+     * Gets the label of a sample.
+     * @param i the sample's position in the view.
+     * @return the label of the sample.
+     * */
+    public int getLabel(int i) {
+        return y.getInt(indices[i]);
+    }
+
+    /**
+     * Gets the labels of the view.
+     * @return an INT32 array holding the labels, or null if the dataset is not labeled.
+     * */
+    public INDArray getLabels() {
+        if (y == null)
+            return null;
+        int[] labels = new int[indices.length];
+        for (int i = 0; i < indices.length; i++)
+            labels[i] = y.getInt(indices[i]);
+        return Nd4j.createFromArray(labels);
+    }
+
+    /**
+     * @return the array of features of the whole dataset.
+     * */
+    public INDArray getX() {
+        return x;
+    }
+
+    /**
+     * @return the array of labels of the whole dataset.
+     * */
+    public INDArray getY() {
+        return y;
+    }
+
+    private final INDArray x, y;
+    private final int[] indices;
+}
@@ -0,0 +1,91 @@
+package stream;
+
+import utils.events.LoadEvent;
+import utils.exceptions.ValueError;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Reads a dataset in OPF file format (.csv, .txt, .json, .dat or .opfb) in a single pass.
+ * Id, label and feature columns are split while reading, and labels are validated while they are counted,
+ * so neither the full-width matrix produced by {@link Loader} nor the pass of {@link Parser} is needed.
+ *
+ * @author De Caro Antonio
+ */
+public class Ingest {
+
+    private static final Logger logger = Logger.getLogger(Ingest.class.getName());
+
+    /**
+     * Reads a dataset.
+     * @param filename the dataset path.
+     * @return the dataset, with DOUBLE features and INT32 labels.
+     * @throws IOException if the file cannot be read.
+     * @throws ValueError if labels are not sequential, or there are less than two of them.
+     * */
+    public static Dataset read(String filename) throws IOException {
+        return read(filename, 1);
+    }
+
+    /**
+     * Reads a dataset; text files are parsed with multiple threads.
+     * @param filename the dataset path.
+     * @param threads number of threads to use.
+     * @return the dataset, with DOUBLE features and INT32 labels.
+     * @throws IOException if the file cannot be read.
+     * @throws ValueError if labels are not sequential, or there are less than two of them.
+     * */
+    public static Dataset read(String filename, int threads) throws IOException {
+        logger.info("Ingesting file: " + filename);
+        LoadEvent event = new LoadEvent();
+        event.begin();
+
+        Dataset dataset;
+        if (filename.endsWith("csv")) {
+            dataset = DatasetBuilder.concat(ByteLoader.parse(filename, true, threads, DatasetBuilder::new));
+        } else if (filename.endsWith("txt")) {
+            dataset = DatasetBuilder.concat(ByteLoader.parse(filename, false, threads, DatasetBuilder::new));
+        } else if (filename.endsWith("json")) {
+            DatasetBuilder builder = new DatasetBuilder();
+            Loader.parseJSON(filename, builder);
+            dataset = builder.build();
+        } else if (filename.endsWith(LibOPF.EXTENSION)) {
+            DatasetBuilder builder = new DatasetBuilder();
+            LibOPF.readDataset(filename, builder);
+            dataset = builder.build();
+        } else if (filename.endsWith(BinaryDataset.EXTENSION)) {
+            dataset = fromBinary(BinaryDataset.open(filename));
+        } else {
+            throw new IllegalArgumentException("File extension not recognized. It should be `.csv`, `.json`, `.txt`, " +
+                    "`.dat` or `.opfb`");
+        }
+
+        event.commit(filename, "Ingest", threads, dataset.getRows(), dataset.getX().columns());
+        logger.info(String.format("File ingested: X=(%d,%d) | Y=(%d) | %d classes",
+                dataset.getX().rows(), dataset.getX().columns(), dataset.getRows(), dataset.getClasses()));
+        return dataset;
+    }
+
+    /**
+     * Builds a dataset from a mapped binary dataset, wrapping its features and validating its labels.
+     * */
+    private static Dataset fromBinary(BinaryDataset binary) {
+        int[] ids = new int[binary.getRows()];
+        int[] counts = new int[0];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = binary.getId(i);
+            int label = binary.getLabel(i);
+            if (label < 1)
+                throw new ValueError("Labels should be integers >= 1");
+            // sequential labels cannot be more than the records
+            if (label > ids.length)
+                throw new ValueError("Parsed data should have sequential labels, e.g., 1, 2, ..., n");
+            if (label > counts.length)
+                counts = Arrays.copyOf(counts, Math.max(label, counts.length * 2));
+            counts[label - 1]++;
+        }
+        return new Dataset(ids, binary.getX(), binary.getY(), DatasetBuilder.countClasses(counts));
+    }
+}
@@ -0,0 +1,297 @@
+package stream;
+
+import core.Graph;
+import core.Node;
+import math.Distance;
+import math.DistancesImplementor;
+import models.SupervisedEOPF;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.exceptions.BuildError;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes the binary files of the original LibOPF library (Papa et al.):
+ * datasets (subgraphs), pre-computed distances and trained supervised classifiers.
+ * Files are read and written as little endian, as produced by LibOPF on x86 platforms.
+ *
+ * @author De Caro Antonio
+ */
+public class LibOPF {
+
+    private static final Logger logger = Logger.getLogger(LibOPF.class.getName());
+
+    /**
+     * The extension of LibOPF binary files.
+     * */
+    public static final String EXTENSION = "dat";
+
+    /**
+     * Reads a LibOPF dataset, laid out as: nnodes, nlabels, nfeats and, for each node, id, label and features.
+     * @param filename the dataset path.
+     * @return an Array containing data (id, label, features), as the ones produced by {@link Loader}.
+     * @throws IOException if the file cannot be read.
+     * */
+    public static INDArray readDataset(String filename) throws IOException {
+        logger.info("Loading file LibOPF: " + filename);
+
+        RecordBuffer records = new RecordBuffer();
+        readDataset(filename, records);
+
+        logger.info("File loaded.");
+        return records.toINDArray();
+    }
+
+    /**
+     * Reads a LibOPF dataset, sending its records (id, label, features) to a sink.
+     * @param filename the dataset path.
+     * @param records the sink receiving the records.
+     * @throws IOException if the file cannot be read.
+     * */
+    static void readDataset(String filename, RecordSink records) throws IOException {
+        try (LittleEndianInput in = new LittleEndianInput(filename)) {
+            int nodes = in.getInt();
+            int labels = in.getInt();
+            int features = in.getInt();
+            checkHeader(nodes, labels, features);
+
+            for (int i = 0; i < nodes; i++) {
+                records.add(in.getInt());
+                records.add(in.getInt());
+                for (int j = 0; j < features; j++)
+                    records.add(in.getFloat());
+                records.endRecord();
+            }
+        }
+    }
+
+    /**
+     * Writes a LibOPF dataset.
+     * @param filename the dataset path.
+     * @param ids the id of each sample; can be null to use the row index.
+     * @param labels the label of each sample.
+     * @param features the (rows, features) array.
+     * @throws IOException if the file cannot be written.
+     * */
+    public static void writeDataset(String filename, INDArray ids, INDArray labels, INDArray features) throws IOException {
+        logger.info("Writing file LibOPF: " + filename);
+
+        int rows = features.rows();
+        if (labels.length() != rows || (ids != null && ids.length() != rows))
+            throw new SizeError("`ids`, `labels` and `features` should have the same amount of samples");
+
+        try (LittleEndianOutput out = new LittleEndianOutput(filename)) {
+            out.putInt(rows);
+            out.putInt(labels.maxNumber().intValue());
+            out.putInt(features.columns());
+
+            for (int i = 0; i < rows; i++) {
+                out.putInt(ids == null ? i : ids.getInt(i));
+                out.putInt(labels.getInt(i));
+                for (float value : features.getRow(i).toFloatVector())
+                    out.putFloat(value);
+            }
+        }
+
+        logger.info("File written.");
+    }
+
+    /**
+     * Reads a LibOPF distances file, laid out as: n and the (n, n) row-major distances.
+     * Distances are read straight into a FLOAT array, that can be used as {@code OPF} pre-computed distances.
+     * @param filename the distances path.
+     * @return the (n, n) distances array.
+     * @throws IOException if the file cannot be read.
+     * */
+    public static INDArray readDistances(String filename) throws IOException {
+        logger.info("Loading distances LibOPF: " + filename);
+
+        try (LittleEndianInput in = new LittleEndianInput(filename)) {
+            int n = in.getInt();
+            if (n <= 0)
+                throw new ValueError("Bad LibOPF distances header: " + n);
+
+            INDArray distances = Nd4j.createUninitialized(DataType.FLOAT, n, n);
+            DataBuffer data = distances.data();
+            long length = (long) n * n;
+
+            if (length * Float.BYTES <= Integer.MAX_VALUE) {
+                // bulk copy into the native buffer
+                FloatBuffer target = data.asNio().order(ByteOrder.nativeOrder()).asFloatBuffer();
+                for (long i = 0; i < length; i++)
+                    target.put(in.getFloat());
+            } else {
+                for (long i = 0; i < length; i++)
+                    data.put(i, in.getFloat());
+            }
+
+            logger.info("Distances loaded.");
+            return distances;
+        }
+    }
+
+    /**
+     * Writes a LibOPF distances file.
+     * @param filename the distances path.
+     * @param distances the (n, n) distances array.
+     * @throws IOException if the file cannot be written.
+     * */
+    public static void writeDistances(String filename, INDArray distances) throws IOException {
+        logger.info("Writing distances LibOPF: " + filename);
+
+        if (distances.rows() != distances.columns())
+            throw new SizeError("Distances should have the size of `n x n`");
+
+        try (LittleEndianOutput out = new LittleEndianOutput(filename)) {
+            out.putInt(distances.rows());
+            for (int i = 0; i < distances.rows(); i++)
+                for (float value : distances.getRow(i).toFloatVector())
+                    out.putFloat(value);
+        }
+
+        logger.info("Distances written.");
+    }
+
+    /**
+     * Reads a classifier written by LibOPF `opf_WriteModelFile`.
+     * @param filename the model path.
+     * @param distance the distance function used to train the model.
+     * @return the trained classifier.
+     * @throws IOException if the file cannot be read.
+     * */
+    public static SupervisedEOPF readModel(String filename, Distance distance) throws IOException {
+        logger.info("Loading model LibOPF: " + filename);
+
+        try (LittleEndianInput in = new LittleEndianInput(filename)) {
+            int nodes = in.getInt();
+            int labels = in.getInt();
+            int features = in.getInt();
+            checkHeader(nodes, labels, features);
+
+            // df, bestk, K, mindens and maxdens are not used by the supervised classifier
+            in.getFloat();
+            in.getInt();
+            in.getFloat();
+            in.getFloat();
+            in.getFloat();
+
+            int[] ids = new int[nodes];
+            int[] trueLabels = new int[nodes];
+            int[] preds = new int[nodes];
+            int[] predictedLabels = new int[nodes];
+            double[] costs = new double[nodes];
+            double[] x = new double[nodes * features];
+
+            for (int i = 0; i < nodes; i++) {
+                ids[i] = in.getInt();
+                trueLabels[i] = in.getInt();
+                preds[i] = in.getInt();
+                predictedLabels[i] = in.getInt();
+                costs[i] = in.getFloat();
+                // radius and density
+                in.getFloat();
+                in.getFloat();
+                for (int j = 0; j < features; j++)
+                    x[i * features + j] = in.getFloat();
+            }
+
+            // build the trained graph
+            Graph graph = new Graph(Nd4j.create(x, nodes, features), Nd4j.createFromArray(trueLabels));
+            for (int i = 0; i < nodes; i++) {
+                Node node = graph.getNodes().get(i);
+                node.setIndex(ids[i]);
+                node.setPred(preds[i]);
+                node.setPredictedLabel(predictedLabels[i]);
+                node.setCost(costs[i]);
+            }
+            for (int i = 0; i < nodes; i++)
+                graph.getOrderedNodes().add(in.getInt());
+            graph.setTrained(true);
+
+            SupervisedEOPF opf = new SupervisedEOPF(distance);
+            opf.setGraph(graph);
+
+            logger.info("Model loaded.");
+            return opf;
+        }
+    }
+
+    /**
+     * @see LibOPF#readModel(String, Distance)
+     * */
+    public static SupervisedEOPF readModel(String filename) throws IOException {
+        return readModel(filename, DistancesImplementor.euclideanDistance);
+    }
+
+    /**
+     * Writes a classifier in the format of LibOPF `opf_WriteModelFile`.
+     * Costs and features are stored in single precision, as LibOPF does.
+     * @param opf the trained classifier.
+     * @param filename the model path.
+     * @throws IOException if the file cannot be written.
+     * @throws BuildError if the classifier has not been trained, or has sparse, quantized or reduced features.
+     * */
+    public static void writeModel(SupervisedEOPF opf, String filename) throws IOException {
+        logger.info("Writing model LibOPF: " + filename);
+
+        Graph graph = opf.getGraph();
+        if (graph == null || !graph.isTrained())
+            throw new BuildError("Subgraph has not been properly trained.");
+        if (!graph.isDense())
+            throw new BuildError("Features in a sparse or quantized matrix cannot be written in LibOPF format.");
+        if (opf.getReducer() != null)
+            throw new BuildError("Reduced classifiers cannot be written in LibOPF format, it has no reducer.");
+
+        int labels = 0;
+        for (Node node : graph.getNodes())
+            labels = Math.max(labels, node.getLabel());
+
+        try (LittleEndianOutput out = new LittleEndianOutput(filename)) {
+            out.putInt(graph.getNodes().size());
+            out.putInt(labels);
+            out.putInt(graph.getFeatures());
+
+            // df, bestk, K, mindens and maxdens
+            out.putFloat(0);
+            out.putInt(0);
+            out.putFloat(0);
+            out.putFloat(0);
+            out.putFloat(0);
+
+            for (Node node : graph.getNodes()) {
+                out.putInt(node.getIndex());
+                out.putInt(node.getLabel());
+                out.putInt(node.getPred());
+                out.putInt(node.getPredictedLabel());
+                out.putFloat((float) node.getCost());
+                // radius and density
+                out.putFloat(0);
+                out.putFloat((float) node.getDensity());
+                for (float value : node.getFeatures().toFloatVector())
+                    out.putFloat(value);
+            }
+
+            for (int index : graph.getOrderedNodes())
+                out.putInt(index);
+        }
+
+        logger.info("Model written.");
+    }
+
+    /**
+     * Checks the header of a dataset or a model.
+     * */
+    private static void checkHeader(int nodes, int labels, int features) {
+        if (nodes <= 0 || labels < 0 || features <= 0)
+            throw new ValueError(String.format("Bad LibOPF header: nnodes=%d, nlabels=%d, nfeats=%d",
+                    nodes, labels, features));
+    }
+}
@@ -0,0 +1,194 @@
+package stream;
+
+import math.SparseMatrix;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.events.LoadEvent;
+import utils.exceptions.ValueError;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Reads datasets in the libsvm (svmlight) text format, one sample per line:
+ * {@code <label> [qid:<query>] <index>:<value> <index>:<value> ... [# comment]}, with indexes starting from 1.
+ * The file is streamed line by line into a {@link SparseMatrix}, so only its non-zero values are held in memory.
+ * Labels can be any number, e.g. -1 and +1: they are mapped, in ascending order, to the classes 1, 2, ..., n.
+ *
+ * @author De Caro Antonio
+ */
+public class LibSVM {
+
+    private static final Logger logger = Logger.getLogger(LibSVM.class.getName());
+
+    /**
+     * Reads a libsvm dataset, with as many features as its greatest index.
+     * @param filename the dataset path.
+     * @return the dataset.
+     * @throws IOException if the file cannot be read.
+     * @throws ValueError if a line is malformed, or there are less than two distinct labels.
+     * */
+    public static SparseDataset read(String filename) throws IOException {
+        return read(filename, 0);
+    }
+
+    /**
+     * Reads a libsvm dataset with a given number of features, e.g. to read a test set with the features of the
+     * training one.
+     * @param filename the dataset path.
+     * @param features the number of features; 0 to use the greatest index of the file.
+     * @return the dataset.
+     * @throws IOException if the file cannot be read.
+     * @throws ValueError if a line is malformed, has an index greater than the features, or there are less than
+     *                    two distinct labels.
+     * */
+    public static SparseDataset read(String filename, int features) throws IOException {
+        logger.info("Loading file libsvm: " + filename);
+        LoadEvent event = new LoadEvent();
+        event.begin();
+
+        // growing CSR arrays
+        int[] indptr = new int[INITIAL_ROWS + 1];
+        double[] labels = new double[INITIAL_ROWS];
+        int[] indices = new int[INITIAL_VALUES];
+        float[] values = new float[INITIAL_VALUES];
+        int rows = 0, size = 0, columns = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+
+                // drops the comment, and skips blank lines
+                int end = line.indexOf('#');
+                if (end < 0)
+                    end = line.length();
+                int position = skipSpaces(line, 0, end);
+                if (position == end)
+                    continue;
+
+                // the label
+                int tokenEnd = tokenEnd(line, position, end);
+                if (rows == labels.length) {
+                    labels = Arrays.copyOf(labels, rows * 2);
+                    indptr = Arrays.copyOf(indptr, rows * 2 + 1);
+                }
+                labels[rows] = parseDouble(line, position, tokenEnd, number);
+                position = skipSpaces(line, tokenEnd, end);
+
+                // the pairs index:value
+                int rowStart = size;
+                while (position < end) {
+                    tokenEnd = tokenEnd(line, position, end);
+                    int colon = line.indexOf(':', position);
+                    if (colon < 0 || colon >= tokenEnd)
+                        throw new ValueError(String.format("Line %d: expected `index:value`, found `%s`", number,
+                                line.substring(position, tokenEnd)));
+
+                    if (!line.startsWith("qid", position)) {
+                        int index = parseIndex(line, position, colon, number);
+                        if (features > 0 && index > features)
+                            throw new ValueError(String.format("Line %d: index %d is greater than the features (%d)",
+                                    number, index, features));
+                        float value = (float) parseDouble(line, colon + 1, tokenEnd, number);
+
+                        // zeros are not stored
+                        if (value != 0.0f) {
+                            if (size == values.length) {
+                                indices = Arrays.copyOf(indices, size * 2);
+                                values = Arrays.copyOf(values, size * 2);
+                            }
+                            indices[size] = index - 1;
+                            values[size++] = value;
+                            columns = Math.max(columns, index);
+                        }
+                    }
+                    position = skipSpaces(line, tokenEnd, end);
+                }
+
+                sortRow(indices, values, rowStart, size, number);
+                indptr[++rows] = size;
+            }
+        }
+
+        // maps the labels to the classes 1, 2, ..., n
+        double[] classValues = Arrays.stream(labels, 0, rows).distinct().sorted().toArray();
+        if (classValues.length < 2)
+            throw new ValueError("Parsed data should have at least two distinct labels");
+        int[] y = new int[rows];
+        for (int i = 0; i < rows; i++)
+            y[i] = Arrays.binarySearch(classValues, labels[i]) + 1;
+
+        SparseMatrix x = new SparseMatrix(features > 0 ? features : columns, Arrays.copyOf(indptr, rows + 1),
+                Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+
+        event.commit(filename, "LibSVM", 1, rows, x.columns());
+        logger.info(String.format("File loaded: %d samples, %d features, %d non-zero values.", rows, x.columns(), size));
+        return new SparseDataset(x, Nd4j.createFromArray(y), classValues);
+    }
+
+    /**
+     * Sorts the values of a row by index, as they are usually already sorted this is an insertion sort.
+     * @throws ValueError if an index is repeated.
+     * */
+    private static void sortRow(int[] indices, float[] values, int from, int to, int line) {
+        for (int i = from + 1; i < to; i++) {
+            int index = indices[i];
+            float value = values[i];
+            int j = i - 1;
+            while (j >= from && indices[j] > index) {
+                indices[j + 1] = indices[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            if (j >= from && indices[j] == index)
+                throw new ValueError(String.format("Line %d: index %d is repeated", line, index + 1));
+            indices[j + 1] = index;
+            values[j + 1] = value;
+        }
+    }
+
+    private static int skipSpaces(String line, int position, int end) {
+        while (position < end && Character.isWhitespace(line.charAt(position)))
+            position++;
+        return position;
+    }
+
+    private static int tokenEnd(String line, int position, int end) {
+        while (position < end && !Character.isWhitespace(line.charAt(position)))
+            position++;
+        return position;
+    }
+
+    private static int parseIndex(String line, int from, int to, int number) {
+        int index = 0;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9' || index > (Integer.MAX_VALUE - 9) / 10)
+                throw new ValueError(String.format("Line %d: bad index `%s`", number, line.substring(from, to)));
+            index = index * 10 + (c - '0');
+        }
+        if (index < 1)
+            throw new ValueError(String.format("Line %d: indexes should start from 1", number));
+        return index;
+    }
+
+    private static double parseDouble(String line, int from, int to, int number) {
+        try {
+            return Double.parseDouble(line.substring(from, to));
+        } catch (NumberFormatException e) {
+            throw new ValueError(String.format("Line %d: bad number `%s`", number, line.substring(from, to)));
+        }
+    }
+
+    // initial capacity of the CSR arrays
+    private static final int INITIAL_ROWS = 1024;
+    private static final int INITIAL_VALUES = 16 * 1024;
+
+    private LibSVM() {}
+}
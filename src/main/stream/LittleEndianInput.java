@@ -0,0 +1,89 @@
+package stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A buffered little endian reader over a file channel.
+ *
+ * @author De Caro Antonio
+ */
+class LittleEndianInput implements AutoCloseable {
+
+    /**
+     * Class constructor.
+     * @param filename the path of the file to read.
+     * @throws IOException if the file cannot be opened.
+     * */
+    LittleEndianInput(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.flip();
+    }
+
+    byte getByte() throws IOException {
+        fill(Byte.BYTES);
+        return buffer.get();
+    }
+
+    short getShort() throws IOException {
+        fill(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    int getInt() throws IOException {
+        fill(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long getLong() throws IOException {
+        fill(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    float getFloat() throws IOException {
+        fill(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    double getDouble() throws IOException {
+        fill(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    void get(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            fill(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes)
+            return;
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of file");
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+}
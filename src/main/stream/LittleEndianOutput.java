@@ -0,0 +1,90 @@
+package stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A buffered little endian writer over a file channel.
+ *
+ * @author De Caro Antonio
+ */
+class LittleEndianOutput implements AutoCloseable {
+
+    /**
+     * Class constructor.
+     * @param filename the path of the file to write; it is created or truncated.
+     * @throws IOException if the file cannot be opened.
+     * */
+    LittleEndianOutput(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    void putByte(byte value) throws IOException {
+        flush(Byte.BYTES);
+        buffer.put(value);
+    }
+
+    void putShort(short value) throws IOException {
+        flush(Short.BYTES);
+        buffer.putShort(value);
+    }
+
+    void putInt(int value) throws IOException {
+        flush(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        flush(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    void putFloat(float value) throws IOException {
+        flush(Float.BYTES);
+        buffer.putFloat(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        flush(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            flush(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void flush(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes)
+            return;
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush(BUFFER_SIZE);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+}
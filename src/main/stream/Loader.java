@@ -3,17 +3,19 @@ package stream;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import utils.events.LoadEvent;
+import utils.exceptions.ValueError;
+
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -28,48 +30,25 @@ public class Loader {
 
     /**
      * Load a JSON file into a ND4J Array.
+     * The file is read as a stream of events, and the records of the `data` array are written
+     * straight into a primitive buffer, so the JSON tree is never built.
      * @param filename string holding the *.json path.
      * @return an Array containing data.
      * */
     public INDArray loadJSON(String filename) {
         logger.info("Trying to load file: " + filename);
-        try (InputStream inputStream = new FileInputStream(filename)) {
-            // creating json reader and json object
-            JsonReader jsonReader = Json.createReader(inputStream);
-            JsonObject jsonObject = jsonReader.readObject();
-
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        try {
+            RecordBuffer records = new RecordBuffer();
+            parseJSON(filename, records);
             logger.info("File loaded.");
 
-            // read data from json object
-            JsonArray data = jsonObject.getJsonArray("data");
-            List<INDArray> records = new LinkedList<>();
-            int recordSize = -1;
-            for (int i = 0; i < data.size(); i++) {
-                // read whole record
-                JsonObject jsonRecord = data.getJsonObject(i);
-                // get id
-                int id = jsonRecord.getInt("id");
-                // get label
-                int label = jsonRecord.getInt("label");
-                // read features json array
-                JsonArray jsonFeatures = jsonRecord.getJsonArray("features");
-                // transform the json record in a double array.
-                double[] record = new double[jsonFeatures.size() + 2];
-                // set the record size if not already set
-                if (recordSize < 0)
-                    recordSize = record.length;
-                // populate the record
-                record[0] = id;
-                record[1] = label;
-                for (int f = 0; f < jsonFeatures.size(); f++)
-                    record[f + 2] = jsonFeatures.getJsonNumber(f).doubleValue();
-                //create an INDArray record and insert it in the record list
-                records.add(Nd4j.create(record));
-            }
-
             // create the array with all records, and
             // return the array
-            return Nd4j.create(records, records.size(), recordSize);
+            INDArray data = records.toINDArray();
+            event.commit(filename, "Loader", 1, data == null ? 0 : data.rows(), data == null ? 0 : data.columns());
+            return data;
 
         } catch (IOException e) {
             logger.severe(e.getMessage());
@@ -78,6 +57,103 @@ public class Loader {
         return null;
     }
 
+    /**
+     * Parses a JSON file, sending the records of its `data` array to a sink.
+     * @param filename string holding the *.json path.
+     * @param records the sink receiving the records.
+     * @throws IOException if the file cannot be read or parsed.
+     * */
+    static void parseJSON(String filename, RecordSink records) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE);
+             JsonParser parser = Json.createParser(inputStream)) {
+
+            // the document should be an object
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_OBJECT)
+                throw new ValueError("JSON dataset should be an object");
+
+            // look for the data array, skipping everything else
+            while (parser.hasNext()) {
+                JsonParser.Event event = parser.next();
+                if (event == JsonParser.Event.END_OBJECT)
+                    break;
+                if (event != JsonParser.Event.KEY_NAME)
+                    continue;
+
+                if (DATA_PROPERTY.equals(parser.getString())) {
+                    if (parser.next() != JsonParser.Event.START_ARRAY)
+                        throw new ValueError("`data` should be an array");
+                    readRecords(parser, records);
+                } else {
+                    skipValue(parser, parser.next());
+                }
+            }
+
+        } catch (JsonException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the records of the `data` array.
+     * @param parser the parser, positioned after the beginning of the array.
+     * @param records the sink receiving the records.
+     * */
+    private static void readRecords(JsonParser parser, RecordSink records) {
+        // features of the current record, reused for every record
+        double[] features = new double[16];
+
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            if (event == JsonParser.Event.END_ARRAY)
+                return;
+            if (event != JsonParser.Event.START_OBJECT)
+                throw new ValueError("`data` should be an array of records");
+
+            int id = 0, label = 0, length = 0;
+
+            // read the fields of the record, in any order
+            while ((event = parser.next()) != JsonParser.Event.END_OBJECT) {
+                String key = parser.getString();
+                event = parser.next();
+
+                if (ID_PROPERTY.equals(key)) {
+                    id = parser.getInt();
+                } else if (LABEL_PROPERTY.equals(key)) {
+                    label = parser.getInt();
+                } else if (FEATURES_PROPERTY.equals(key)) {
+                    if (event != JsonParser.Event.START_ARRAY)
+                        throw new ValueError("`features` should be an array");
+                    while (parser.next() != JsonParser.Event.END_ARRAY) {
+                        if (length == features.length)
+                            features = Arrays.copyOf(features, length * 2);
+                        features[length++] = parser.getBigDecimal().doubleValue();
+                    }
+                } else {
+                    skipValue(parser, event);
+                }
+            }
+
+            // populate the record
+            records.add(id);
+            records.add(label);
+            for (int f = 0; f < length; f++)
+                records.add(features[f]);
+            records.endRecord();
+        }
+    }
+
+    /**
+     * Skips a value.
+     * @param parser the parser.
+     * @param event the first event of the value.
+     * */
+    private static void skipValue(JsonParser parser, JsonParser.Event event) {
+        if (event == JsonParser.Event.START_ARRAY)
+            parser.skipArray();
+        else if (event == JsonParser.Event.START_OBJECT)
+            parser.skipObject();
+    }
+
     /**
      * Load a text file into a ND4J Array.
      * @param filename string holding the *.json path.
@@ -85,6 +161,8 @@ public class Loader {
      * */
     public INDArray loadText(String filename) {
         logger.info("Loading file: " + filename);
+        LoadEvent event = new LoadEvent();
+        event.begin();
 
         // initialize the record size
         int recordSize = -1;
@@ -120,7 +198,9 @@ public class Loader {
 
             // create the dataset,
             // and return
-            return Nd4j.create(records, records.size(), recordSize);
+            INDArray data = Nd4j.create(records, records.size(), recordSize);
+            event.commit(filename, "Loader", 1, data == null ? 0 : data.rows(), data == null ? 0 : data.columns());
+            return data;
 
         } catch (FileNotFoundException e) {
             // if can not properly read the file
@@ -137,6 +217,8 @@ public class Loader {
      * */
     public INDArray loadCSV(String filename) {
         logger.info("Loading file CSV: " + filename);
+        LoadEvent event = new LoadEvent();
+        event.begin();
 
         // initialize the record size
         int recordSize = -1;
@@ -173,7 +255,9 @@ public class Loader {
 
             // create the dataset,
             // and return
-            return Nd4j.create(records, records.size(), recordSize);
+            INDArray data = Nd4j.create(records, records.size(), recordSize);
+            event.commit(filename, "Loader", 1, data == null ? 0 : data.rows(), data == null ? 0 : data.columns());
+            return data;
 
         } catch (FileNotFoundException e) {
             // if can not properly read the file
@@ -182,4 +266,12 @@ public class Loader {
 
         return null;
     }
+
+    // size of the read buffer
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final String DATA_PROPERTY = "data";
+    private static final String ID_PROPERTY = "id";
+    private static final String LABEL_PROPERTY = "label";
+    private static final String FEATURES_PROPERTY = "features";
 }
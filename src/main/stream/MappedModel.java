@@ -0,0 +1,322 @@
+package stream;
+
+import math.Distance;
+import math.DistancesImplementor;
+import math.LinearReducer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.Precision;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * A trained classifier used in place from a memory mapped {@link BinaryModel} file.
+ * Costs, labels and features are read straight from the mapped file, and no node is created,
+ * so opening a model takes the same time whatever its size, and processes mapping the same
+ * file share its pages. Predictions are the same as the ones of the classifier that was saved, arc weights being
+ * rounded to its precision, except that the conqueror nodes are not marked. The reducer of the model, if any, is read
+ * in memory and applied by {@link #predict(INDArray)}. Blocks larger than 2 GB are mapped in several segments.
+ *
+ * @author De Caro Antonio
+ */
+public class MappedModel {
+
+    private static final Logger logger = Logger.getLogger(MappedModel.class.getName());
+
+    /**
+     * Memory maps a model.
+     * The file stays mapped as long as the model is reachable.
+     * @param filename the model path.
+     * @return the model.
+     * @throws IOException if the file cannot be read.
+     * @throws ValueError if the file is not a binary model, or its distance is not one of
+     *                    {@link DistancesImplementor}.
+     * */
+    public static MappedModel open(String filename) throws IOException {
+        logger.info("Mapping model: " + filename);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            // read the header
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), MAX_HEADER_SIZE))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() < Integer.BYTES || header.getInt() != BinaryModel.MAGIC)
+                throw new ValueError("File is not a binary model: " + filename);
+            int version = header.getInt();
+            if (version < 1 || version > BinaryModel.VERSION)
+                throw new ValueError("Model version not supported: " + version);
+
+            int n = header.getInt();
+            int features = header.getInt();
+            if (n <= 0 || features <= 0)
+                throw new ValueError(String.format("Bad model header: nodes=%d, features=%d", n, features));
+            DataType type = BinaryModel.fromCode(header.get());
+            Precision precision = version > 2 ? BinaryModel.precisionFromCode(header.get()) : Precision.of(type);
+            getString(header);
+            Distance distance = DistancesImplementor.fromName(getString(header));
+
+            long columnsOffset = header.position();
+            long columnsSize = (long) n * (4 * Integer.BYTES + Double.BYTES);
+            long rowSize = (long) features * (type == DataType.DOUBLE ? Double.BYTES : Float.BYTES);
+            long featuresSize = n * rowSize;
+            if (channel.size() < columnsOffset + columnsSize + featuresSize)
+                throw new SizeError("Binary model is truncated: " + filename);
+            if (rowSize > BinaryDataset.SEGMENT_SIZE)
+                throw new SizeError("Features of a node larger than 2GB cannot be mapped");
+
+            // map the columns and the features block in segments of at most 2 GB, holding whole rows of features
+            int rowsPerSegment = (int) (BinaryDataset.SEGMENT_SIZE / rowSize);
+            ByteBuffer[] columns = BinaryDataset.map(channel, FileChannel.MapMode.READ_ONLY, columnsOffset, columnsSize,
+                    BinaryDataset.SEGMENT_SIZE);
+            ByteBuffer[] block = BinaryDataset.map(channel, FileChannel.MapMode.READ_ONLY, columnsOffset + columnsSize,
+                    featuresSize, rowsPerSegment * rowSize);
+
+            // read the reducer block
+            LinearReducer reducer = null;
+            long reducerOffset = columnsOffset + columnsSize + featuresSize;
+            if (version > 1) {
+                if (channel.size() <= reducerOffset)
+                    throw new SizeError("Binary model is truncated: " + filename);
+                reducer = readReducer(channel.map(FileChannel.MapMode.READ_ONLY, reducerOffset,
+                        channel.size() - reducerOffset).order(ByteOrder.LITTLE_ENDIAN), features, version);
+            }
+
+            logger.info(String.format("Model mapped: (%d,%d) %s", n, features, type));
+            return new MappedModel(n, features, type, precision, distance, reducer, columns, block, rowsPerSegment);
+        }
+    }
+
+    /**
+     * Class constructor.
+     * */
+    private MappedModel(int nodes, int features, DataType type, Precision precision, Distance distance,
+                        LinearReducer reducer, ByteBuffer[] columns, ByteBuffer[] block, int rowsPerSegment) {
+        this.nodes = nodes;
+        this.features = features;
+        this.type = type;
+        this.precision = precision;
+        this.distance = distance;
+        this.reducer = reducer;
+        this.columns = columns;
+        this.block = block;
+        this.rowsPerSegment = rowsPerSegment;
+    }
+
+    /**
+     * Predicts new data, reducing it first if the model has a reducer.
+     * @param x array of features.
+     * @return the INT32 array of predicted labels.
+     * @throws SizeError if the samples have a different amount of features than the model.
+     * */
+    public INDArray predict(INDArray x) {
+        if (reducer != null)
+            x = reducer.transform(x);
+        if (x.columns() != features)
+            throw new SizeError(String.format("Samples should have %d features", features));
+
+        logger.info("Predicting data ...");
+
+        int[] preds = new int[x.rows()];
+        float[] sample = new float[features];
+        for (int i = 0; i < preds.length; i++) {
+            INDArray row = x.getRow(i);
+            for (int f = 0; f < features; f++)
+                sample[f] = row.getFloat(f);
+            preds[i] = predict(sample);
+        }
+
+        logger.info("Data has been predicted.");
+        return Nd4j.createFromArray(preds);
+    }
+
+    /**
+     * Predicts a single sample, walking the ordered nodes in the mapped file.
+     * @param sample the features of the sample, already reduced if the model has a reducer.
+     * @return the predicted label.
+     * */
+    public int predict(float[] sample) {
+        // the first node of the ordered list
+        double minCost = Math.max(getCost(0), weight(0, sample));
+        int currentLabel = getPredictedLabel(0);
+
+        // while the minimum cost is bigger than the next node's cost
+        for (int j = 1; j < nodes && minCost > getCost(j); j++) {
+            double tempMinCost = Math.max(getCost(j), weight(j, sample));
+            if (tempMinCost < minCost) {
+                minCost = tempMinCost;
+                currentLabel = getPredictedLabel(j);
+            }
+        }
+        return currentLabel;
+    }
+
+    /**
+     * @return the number of nodes of the model.
+     * */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of features of each node.
+     * */
+    public int getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return the reducer of the model, or null if it has none.
+     * */
+    public LinearReducer getReducer() {
+        return reducer;
+    }
+
+    /**
+     * @return the data type of the features.
+     * */
+    public DataType getDataType() {
+        return type;
+    }
+
+    /**
+     * @return the floating point precision of the classifier that was saved.
+     * */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return the distance function of the model.
+     * */
+    public Distance getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets the index of a node.
+     * @param j the node's position in the ordered list.
+     * @return the index of the node.
+     * */
+    public int getIndex(int j) {
+        return getInt((long) j * Integer.BYTES);
+    }
+
+    /**
+     * Gets the true label of a node.
+     * @param j the node's position in the ordered list.
+     * @return the label.
+     * */
+    public int getLabel(int j) {
+        return getInt(((long) nodes + j) * Integer.BYTES);
+    }
+
+    /**
+     * Gets the predicted label of a node.
+     * @param j the node's position in the ordered list.
+     * @return the predicted label.
+     * */
+    public int getPredictedLabel(int j) {
+        return getInt((2L * nodes + j) * Integer.BYTES);
+    }
+
+    /**
+     * Gets the cost of a node.
+     * @param j the node's position in the ordered list.
+     * @return the cost.
+     * */
+    public double getCost(int j) {
+        long offset = 4L * nodes * Integer.BYTES + (long) j * Double.BYTES;
+        ByteBuffer segment = columns[(int) (offset / BinaryDataset.SEGMENT_SIZE)];
+        return segment.getDouble((int) (offset % BinaryDataset.SEGMENT_SIZE));
+    }
+
+    /**
+     * Reads an int of the columns, given its offset from the first index.
+     * */
+    private int getInt(long offset) {
+        ByteBuffer segment = columns[(int) (offset / BinaryDataset.SEGMENT_SIZE)];
+        return segment.getInt((int) (offset % BinaryDataset.SEGMENT_SIZE));
+    }
+
+    /**
+     * Computes the weight of the arc between a node and a sample, reading the node's features from the mapped file.
+     * The squared distance is accumulated in single precision, as {@link DistancesImplementor} does, and the weight is
+     * rounded to the precision of the classifier.
+     * */
+    private double weight(int j, float[] sample) {
+        // rows of features never span two segments
+        ByteBuffer block = this.block[j / rowsPerSegment];
+        int row = j % rowsPerSegment;
+        float dist = 0.0f;
+        if (type == DataType.DOUBLE) {
+            int offset = row * features * Double.BYTES;
+            for (int f = 0; f < features; f++) {
+                float tmp = (float) block.getDouble(offset + f * Double.BYTES) - sample[f];
+                dist += tmp * tmp;
+            }
+        } else {
+            int offset = row * features * Float.BYTES;
+            for (int f = 0; f < features; f++) {
+                float tmp = block.getFloat(offset + f * Float.BYTES) - sample[f];
+                dist += tmp * tmp;
+            }
+        }
+        return precision.round(DistancesImplementor.fromSquaredEuclidean(distance, dist));
+    }
+
+    /**
+     * Reads the reducer block.
+     * @return the reducer, or null if the model has none.
+     * */
+    private static LinearReducer readReducer(ByteBuffer buffer, int components, int version) {
+        byte code = buffer.get();
+        if (code == BinaryModel.REDUCER_NONE)
+            return null;
+        if (code != BinaryModel.REDUCER_LINEAR)
+            throw new ValueError("Model reducer not supported: " + code);
+
+        String reducerType = getString(buffer);
+        long[] parameters = new long[version > 3 ? buffer.getInt() : 0];
+        if (parameters.length > BinaryModel.MAX_REDUCER_PARAMETERS)
+            throw new ValueError("Bad reducer parameters: " + parameters.length);
+        for (int i = 0; i < parameters.length; i++)
+            parameters[i] = buffer.getLong();
+        int features = buffer.getInt();
+        if (features <= 0 || buffer.remaining() < (long) features * (components + 1) * Double.BYTES)
+            throw new SizeError("Binary model reducer is truncated");
+        double[] mean = new double[features];
+        buffer.asDoubleBuffer().get(mean);
+        buffer.position(buffer.position() + features * Double.BYTES);
+        double[] projection = new double[features * components];
+        buffer.asDoubleBuffer().get(projection);
+
+        return LinearReducer.restore(reducerType, components, parameters, Nd4j.createFromArray(mean),
+                Nd4j.create(projection, features, components));
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // header size with the longest model type and distance name
+    private static final long MAX_HEADER_SIZE = 4 * Integer.BYTES + 2 + 2 * (Short.BYTES + 0xFFFF);
+
+    private final int nodes, features;
+    private final DataType type;
+    private final Precision precision;
+    private final Distance distance;
+    private final LinearReducer reducer;
+    private final ByteBuffer[] columns, block;
+    private final int rowsPerSegment;
+}
@@ -68,7 +68,7 @@ public class Parser {
             xHalf = data.get(NDArrayIndex.all(), NDArrayIndex.interval(2, data.shape()[1]));
             // get labels part
             yHalf = data.getColumn(1);
-            yHalf = yHalf.castTo(DataType.INT8);
+            yHalf = yHalf.castTo(DataType.INT32);
 
             // get the number of different elements in label set
             int count = General.unique(yHalf).size();
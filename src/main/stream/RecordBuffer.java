@@ -0,0 +1,135 @@
+package stream;
+
+import org.bytedeco.javacpp.DoublePointer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import utils.exceptions.SizeError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A growing buffer of primitive values, organized in records of the same width.
+ * Values are stored in fixed size blocks, so the buffer never copies them while growing,
+ * and they are copied only once into the native buffer of the final array.
+ *
+ * @author De Caro Antonio
+ */
+class RecordBuffer implements RecordSink {
+
+    /**
+     * Class constructor.
+     * */
+    RecordBuffer() {
+        this.blocks = new ArrayList<>();
+        this.block = new double[BLOCK_SIZE];
+        this.blocks.add(block);
+        this.width = -1;
+    }
+
+    @Override
+    public void add(double value) {
+        if (position == BLOCK_SIZE) {
+            block = new double[BLOCK_SIZE];
+            blocks.add(block);
+            position = 0;
+        }
+        block[position++] = value;
+        fields++;
+    }
+
+    /**
+     * @throws SizeError if the record has a different width than the previous ones.
+     * */
+    @Override
+    public void endRecord() {
+        if (fields == 0)
+            return;
+
+        // the first record sets the width
+        if (width < 0)
+            width = fields;
+        else if (fields != width)
+            throw new SizeError(String.format("Record %d has %d fields, expected %d", rows + 1, fields, width));
+
+        rows++;
+        fields = 0;
+    }
+
+    /**
+     * @return the number of records.
+     * */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of fields in each record, or -1 if there are no records.
+     * */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the number of values in the buffer.
+     * */
+    long size() {
+        return (long) (blocks.size() - 1) * BLOCK_SIZE + position;
+    }
+
+    /**
+     * Creates the array holding all records.
+     * @return a (rows, width) array, or null if there are no records.
+     * */
+    INDArray toINDArray() {
+        List<RecordBuffer> parts = new ArrayList<>();
+        parts.add(this);
+        return concat(parts);
+    }
+
+    /**
+     * Creates the array holding all records of the given buffers, in order.
+     * @param parts the buffers to concatenate; they must have the same width.
+     * @return a (rows, width) array, or null if there are no records.
+     * @throws SizeError if the buffers have different widths.
+     * */
+    static INDArray concat(List<RecordBuffer> parts) {
+        int width = -1;
+        long rows = 0;
+        for (RecordBuffer part : parts) {
+            if (part.rows == 0)
+                continue;
+            if (width < 0)
+                width = part.width;
+            else if (part.width != width)
+                throw new SizeError(String.format("Records have %d fields, expected %d", part.width, width));
+            rows += part.rows;
+        }
+
+        if (width < 0)
+            return null;
+
+        // allocate the final array, and copy each value only once
+        INDArray array = Nd4j.createUninitialized(DataType.DOUBLE, rows, width);
+        // bulk copy each block through a pointer, which unlike nio buffers addresses more than 2GB
+        DoublePointer target = new DoublePointer(array.data().addressPointer());
+        long offset = 0;
+        for (RecordBuffer part : parts) {
+            for (int b = 0; b < part.blocks.size(); b++) {
+                int length = b == part.blocks.size() - 1 ? part.position : BLOCK_SIZE;
+                target.position(offset).put(part.blocks.get(b), 0, length);
+                offset += length;
+            }
+        }
+
+        return array;
+    }
+
+    // number of values in a block
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final List<double[]> blocks;
+    private double[] block;
+    private int position, fields, width, rows;
+}
@@ -0,0 +1,20 @@
+package stream;
+
+/**
+ * This interface receives the fields of the records read from a file, one at a time.
+ *
+ * @author De Caro Antonio
+ */
+interface RecordSink {
+
+    /**
+     * Appends a field to the current record.
+     * @param value the field's value.
+     * */
+    void add(double value);
+
+    /**
+     * Closes the current record. Empty records are ignored.
+     * */
+    void endRecord();
+}
@@ -0,0 +1,68 @@
+package stream;
+
+import math.SparseMatrix;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import utils.exceptions.SizeError;
+
+/**
+ * A labeled dataset whose features are a sparse matrix.
+ * Labels are the classes 1, 2, ..., n; the original value of each class is kept, to map predictions back.
+ *
+ * @author De Caro Antonio
+ */
+public class SparseDataset {
+
+    /**
+     * Class constructor.
+     * @param x the sparse matrix of features.
+     * @param y the array of labels, from 1 to the number of classes.
+     * @param classValues the original value of each class, from class 1.
+     * */
+    public SparseDataset(SparseMatrix x, INDArray y, double[] classValues) {
+        if (y.length() != x.rows())
+            throw new SizeError("`X` and `Y` should have the same amount of samples");
+
+        this.x = x;
+        this.y = y;
+        this.classValues = classValues;
+    }
+
+    /**
+     * @return the number of samples.
+     * */
+    public int getRows() {
+        return x.rows();
+    }
+
+    /**
+     * @return the sparse matrix of features.
+     * */
+    public SparseMatrix getX() {
+        return x;
+    }
+
+    /**
+     * @return the array of labels.
+     * */
+    public INDArray getY() {
+        return y;
+    }
+
+    /**
+     * @return the number of distinct labels.
+     * */
+    public int getClasses() {
+        return classValues.length;
+    }
+
+    /**
+     * @return the original value of each class, e.g. -1 and +1; the value of class {@code c} is at {@code c - 1}.
+     * */
+    public double[] getClassValues() {
+        return classValues;
+    }
+
+    private final SparseMatrix x;
+    private final INDArray y;
+    private final double[] classValues;
+}
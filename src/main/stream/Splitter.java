@@ -4,12 +4,19 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import utils.exceptions.SizeError;
 
+import utils.exceptions.ValueError;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import java.util.logging.Logger;
 
 /**
  * Splits data in different sets.
+ * Besides the copying split performed by the constructor, static methods split data into
+ * {@link DatasetView}s, that only hold the indexes of the rows and never copy them.
  *
  * @author De Caro Antonio
  */
@@ -122,6 +129,9 @@ public class Splitter {
         x1 = Nd4j.create(featuresLst, halt, x.shape()[1]);
         y1 = Nd4j.create(labelLst, halt);
 
+        featuresLst.clear();
+        labelLst.clear();
+
         for (int i = halt; i < x.shape()[0]; i++) {
             featuresLst.add(x.getRow(idx.get(i)));
             labelLst.add(y.getScalar(idx.get(i)));
@@ -134,6 +144,216 @@ public class Splitter {
                 x2.shape()[0], x2.shape()[1], y2.length()));
     }
 
+    /**
+     * Randomly splits data in a training and a testing view.
+     * @param x array of features.
+     * @param y array of labels.
+     * @param percentage the percentage of the samples in the training view.
+     * @param seed the seed of the random generator.
+     * @return the split.
+     * */
+    public static Split holdout(INDArray x, INDArray y, float percentage, long seed) {
+        checkArguments(x, y, percentage);
+
+        int[] permutation = permutation(x.rows(), new Random(seed));
+        int halt = (int) (x.rows() * percentage);
+
+        return new Split(new DatasetView(x, y, Arrays.copyOfRange(permutation, 0, halt)),
+                new DatasetView(x, y, Arrays.copyOfRange(permutation, halt, permutation.length)));
+    }
+
+    /**
+     * Randomly splits data in a training and a testing view, keeping the proportion of each label.
+     * @param x array of features.
+     * @param y array of labels.
+     * @param percentage the percentage of the samples of each label in the training view.
+     * @param seed the seed of the random generator.
+     * @return the split.
+     * */
+    public static Split stratified(INDArray x, INDArray y, float percentage, long seed) {
+        checkArguments(x, y, percentage);
+
+        int[][] classes = shuffledClasses(y, new Random(seed));
+        int[] train = new int[x.rows()];
+        int[] test = new int[x.rows()];
+        int trainSize = 0, testSize = 0;
+
+        for (int[] samples : classes) {
+            int halt = (int) Math.round(samples.length * (double) percentage);
+            for (int i = 0; i < samples.length; i++) {
+                if (i < halt)
+                    train[trainSize++] = samples[i];
+                else
+                    test[testSize++] = samples[i];
+            }
+        }
+
+        return new Split(new DatasetView(x, y, Arrays.copyOf(train, trainSize)),
+                new DatasetView(x, y, Arrays.copyOf(test, testSize)));
+    }
+
+    /**
+     * Splits data in k folds; each split uses one fold as testing view, and the others as training view.
+     * @param x array of features.
+     * @param y array of labels.
+     * @param k the number of folds, must be greater than 1.
+     * @param stratified whether each fold should keep the proportion of each label.
+     * @param seed the seed of the random generator.
+     * @return the k splits.
+     * */
+    public static List<Split> kFold(INDArray x, INDArray y, int k, boolean stratified, long seed) {
+        checkArguments(x, y, 0.5f);
+        if (k < 2 || k > x.rows())
+            throw new ValueError("The number of folds must be between 2 and the number of samples");
+
+        // assign each sample to a fold; stratified folds deal the samples of each label in turn
+        Random random = new Random(seed);
+        int[] order;
+        if (stratified) {
+            order = new int[x.rows()];
+            int size = 0;
+            for (int[] samples : shuffledClasses(y, random))
+                for (int sample : samples)
+                    order[size++] = sample;
+        } else {
+            order = permutation(x.rows(), random);
+        }
+
+        int[] folds = new int[x.rows()];
+        int[] sizes = new int[k];
+        for (int i = 0; i < order.length; i++) {
+            folds[order[i]] = i % k;
+            sizes[i % k]++;
+        }
+
+        List<Split> splits = new ArrayList<>();
+        for (int f = 0; f < k; f++) {
+            int[] train = new int[x.rows() - sizes[f]];
+            int[] test = new int[sizes[f]];
+            int trainSize = 0, testSize = 0;
+            for (int sample : order) {
+                if (folds[sample] == f)
+                    test[testSize++] = sample;
+                else
+                    train[trainSize++] = sample;
+            }
+            splits.add(new Split(new DatasetView(x, y, train), new DatasetView(x, y, test)));
+        }
+
+        return splits;
+    }
+
+    /**
+     * Repeats a random split, with a different permutation each time.
+     * @param x array of features.
+     * @param y array of labels.
+     * @param percentage the percentage of the samples in the training view.
+     * @param repeats the number of splits.
+     * @param stratified whether each split should keep the proportion of each label.
+     * @param seed the seed of the random generator.
+     * @return the splits.
+     * */
+    public static List<Split> repeatedHoldout(INDArray x, INDArray y, float percentage, int repeats,
+                                              boolean stratified, long seed) {
+        if (repeats <= 0)
+            throw new ValueError("The number of repeats must be greater than 0");
+
+        Random random = new Random(seed);
+        List<Split> splits = new ArrayList<>();
+        for (int r = 0; r < repeats; r++) {
+            long s = random.nextLong();
+            splits.add(stratified ? stratified(x, y, percentage, s) : holdout(x, y, percentage, s));
+        }
+        return splits;
+    }
+
+    /**
+     * Checks the arguments of a split.
+     * */
+    private static void checkArguments(INDArray x, INDArray y, float percentage) {
+        // check if `Labels` and `Features` have the same size.
+        if (y.length() != x.rows())
+            throw new SizeError("`X` and `Y` should have the same amount of samples");
+        if (percentage <= 0 || percentage >= 1)
+            throw new ValueError("The percentage must be between 0 and 1");
+    }
+
+    /**
+     * Generates a random permutation of the indexes 0, 1, ..., n - 1.
+     * */
+    private static int[] permutation(int n, Random random) {
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++)
+            permutation[i] = i;
+        shuffle(permutation, random);
+        return permutation;
+    }
+
+    /**
+     * Groups the samples by label, shuffling each group.
+     * */
+    private static int[][] shuffledClasses(INDArray y, Random random) {
+        int[] labels = y.toIntVector();
+
+        // count the samples of each label
+        int max = 0;
+        for (int label : labels)
+            max = Math.max(max, label);
+        int[] counts = new int[max + 1];
+        for (int label : labels)
+            counts[label]++;
+
+        int[][] classes = new int[max + 1][];
+        for (int c = 0; c <= max; c++)
+            classes[c] = new int[counts[c]];
+
+        int[] sizes = new int[max + 1];
+        for (int i = 0; i < labels.length; i++)
+            classes[labels[i]][sizes[labels[i]]++] = i;
+
+        for (int[] samples : classes)
+            shuffle(samples, random);
+        return classes;
+    }
+
+    /**
+     * Fisher-Yates shuffle.
+     * */
+    private static void shuffle(int[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * A split of data in a training and a testing view.
+     * */
+    public static class Split {
+        Split(DatasetView train, DatasetView test) {
+            this.train = train;
+            this.test = test;
+        }
+
+        /**
+         * @return the training view.
+         * */
+        public DatasetView getTrain() {
+            return train;
+        }
+
+        /**
+         * @return the testing view.
+         * */
+        public DatasetView getTest() {
+            return test;
+        }
+
+        private final DatasetView train, test;
+    }
+
     private float percentage;
     private INDArray x, y, x1, x2, y1, y2;
 }
@@ -0,0 +1,238 @@
+package tools;
+
+import core.OPF;
+import math.General;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import stream.DatasetView;
+import stream.Splitter;
+import utils.ExecutionRuntime;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * This class evaluates a classifier configuration with k-fold cross-validation.
+ * Pairwise distances are computed (or given) once for the whole dataset, and shared by every fold:
+ * folds are {@link DatasetView}s, whose nodes keep their row in the dataset, so each fold reads its
+ * arcs straight from the shared matrix. Classifiers with a reducer copy and reduce the folds, so they compute their
+ * own arcs and no matrix is shared. Folds are trained and evaluated at the same time on a pool.
+ *
+ * @author De Caro Antonio
+ */
+public class CrossValidation {
+
+    private static final Logger logger = Logger.getLogger(CrossValidation.class.getName());
+
+    /**
+     * Class constructor.
+     * @param factory creates a new classifier for each fold.
+     * @param folds the number of folds, must be greater than 1.
+     * @param stratified whether each fold should keep the proportion of each label.
+     * @param seed the seed used to assign samples to folds.
+     * */
+    public CrossValidation(Supplier<OPF> factory, int folds, boolean stratified, long seed) {
+        if (folds < 2)
+            throw new ValueError("The number of folds must be greater than 1");
+
+        this.factory = factory;
+        this.folds = folds;
+        this.stratified = stratified;
+        this.seed = seed;
+        this.threads = ExecutionRuntime.getParallelism();
+    }
+
+    /**
+     * Class constructor. Folds are stratified.
+     * @see CrossValidation
+     * */
+    public CrossValidation(Supplier<OPF> factory, int folds) {
+        this(factory, folds, true, 0);
+    }
+
+    /**
+     * Runs the cross-validation.
+     * @param x array of features.
+     * @param y array of labels.
+     * @return the result of each fold.
+     * @throws SizeError if the given distances do not match the dataset.
+     * */
+    public Result run(INDArray x, INDArray y) {
+        logger.info(String.format("Running %d-fold cross-validation ...", folds));
+        Instant start = Instant.now();
+
+        // compute the distances of the whole dataset only once, unless the folds are reduced
+        boolean reduced = factory.get().getReducer() != null;
+        INDArray shared = reduced ? null : distances;
+        Duration distancesTime = Duration.ZERO;
+        if (reduced) {
+            logger.info("Folds are reduced: distances are not shared.");
+        } else if (shared == null) {
+            shared = General.precomputeDistances(x, factory.get().getDistance(), threads);
+            distancesTime = Duration.between(start, Instant.now());
+        } else if (shared.rows() != x.rows() || shared.columns() != x.rows()) {
+            throw new SizeError("Pre-computed distance matrix should have the size of `n_samples x n_samples`");
+        }
+
+        List<Splitter.Split> splits = Splitter.kFold(x, y, folds, stratified, seed);
+        Fold[] results = new Fold[folds];
+
+        // train and evaluate the folds at the same time, on at most the given threads of the runtime
+        INDArray matrix = shared;
+        ExecutionRuntime.forEach(0, folds, threads, (from, to) -> {
+            for (int f = from; f < to; f++)
+                results[f] = evaluate(splits.get(f), matrix);
+        });
+
+        Result result = new Result(results, distancesTime, Duration.between(start, Instant.now()));
+        logger.info(String.format("Cross-validation done: accuracy=%.4f (+/- %.4f)",
+                result.getMeanAccuracy(), result.getStdAccuracy()));
+        return result;
+    }
+
+    /**
+     * Trains and evaluates a classifier on a fold.
+     * */
+    private Fold evaluate(Splitter.Split split, INDArray distances) {
+        OPF opf = factory.get();
+        DatasetView train = split.getTrain();
+        DatasetView test = split.getTest();
+
+        // the classifier releases the distances after each phase, so they are set for both
+        Instant start = Instant.now();
+        if (distances != null)
+            opf.setPreComputedDistances(distances);
+        opf.fit(train);
+        Instant fitted = Instant.now();
+
+        if (distances != null)
+            opf.setPreComputedDistances(distances);
+        INDArray preds = opf.predict(test);
+        Instant predicted = Instant.now();
+
+        double accuracy = General.opfAccuracy(test.getLabels(), preds);
+        return new Fold(accuracy, Duration.between(start, fitted), Duration.between(fitted, predicted));
+    }
+
+    /**
+     * Sets the maximum number of threads computing the distances and running the folds. With a single thread
+     * the folds are run one after the other; otherwise they run at the same time on the {@link ExecutionRuntime}.
+     * @param threads the number of threads, must be greater than 0.
+     * */
+    public void setThreads(int threads) {
+        if (threads <= 0)
+            throw new ValueError("The number of threads has to be greater or equals 1");
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the pairwise distances of the dataset, e.g. loaded from file, so they are not computed.
+     * They are ignored for classifiers with a reducer, whose folds are reduced.
+     * @param distances the (n_samples, n_samples) distances; can be null to compute them.
+     * */
+    public void setDistances(INDArray distances) {
+        this.distances = distances;
+    }
+
+    /**
+     * The evaluation of a single fold.
+     * */
+    public static class Fold {
+        Fold(double accuracy, Duration fitTime, Duration predictTime) {
+            this.accuracy = accuracy;
+            this.fitTime = fitTime;
+            this.predictTime = predictTime;
+        }
+
+        /**
+         * @return the OPF accuracy on the testing fold.
+         * */
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        /**
+         * @return the time spent fitting the training folds.
+         * */
+        public Duration getFitTime() {
+            return fitTime;
+        }
+
+        /**
+         * @return the time spent predicting the testing fold.
+         * */
+        public Duration getPredictTime() {
+            return predictTime;
+        }
+
+        private final double accuracy;
+        private final Duration fitTime, predictTime;
+    }
+
+    /**
+     * The result of a cross-validation.
+     * */
+    public static class Result {
+        Result(Fold[] folds, Duration distancesTime, Duration totalTime) {
+            this.folds = folds;
+            this.distancesTime = distancesTime;
+            this.totalTime = totalTime;
+        }
+
+        /**
+         * @return the evaluation of each fold.
+         * */
+        public Fold[] getFolds() {
+            return folds;
+        }
+
+        /**
+         * @return the mean OPF accuracy of the folds.
+         * */
+        public double getMeanAccuracy() {
+            double sum = 0;
+            for (Fold fold : folds)
+                sum += fold.accuracy;
+            return sum / folds.length;
+        }
+
+        /**
+         * @return the standard deviation of the OPF accuracy of the folds.
+         * */
+        public double getStdAccuracy() {
+            double mean = getMeanAccuracy();
+            double sum = 0;
+            for (Fold fold : folds)
+                sum += (fold.accuracy - mean) * (fold.accuracy - mean);
+            return Math.sqrt(sum / folds.length);
+        }
+
+        /**
+         * @return the time spent computing distances; zero if they were given.
+         * */
+        public Duration getDistancesTime() {
+            return distancesTime;
+        }
+
+        /**
+         * @return the wall clock time of the whole cross-validation.
+         * */
+        public Duration getTotalTime() {
+            return totalTime;
+        }
+
+        private final Fold[] folds;
+        private final Duration distancesTime, totalTime;
+    }
+
+    private final Supplier<OPF> factory;
+    private final int folds;
+    private final boolean stratified;
+    private final long seed;
+    private int threads;
+    private INDArray distances;
+}
@@ -1,145 +1,531 @@
 package tools;
 
-import com.google.gson.*;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import core.Graph;
+import core.Node;
 import core.OPF;
 import math.Distance;
 import math.DistancesImplementor;
+import math.LinearReducer;
+import math.Reducer;
 import models.SupervisedEOPF;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import utils.Constants;
+import utils.Precision;
+import utils.exceptions.BuildError;
+import utils.exceptions.SizeError;
+import utils.exceptions.ValueError;
 
-import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Type;
-import java.util.Scanner;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * This class uses library Gson to convert a classifier to JSON object and vice-versa.
+ * Classifiers are streamed through {@link JsonWriter} and {@link JsonReader}, so the JSON document is never
+ * held in memory, and features are decoded straight into a single primitive buffer.
  * */
 public class JSONConverter {
 
-    static {
-        gson = new GsonBuilder()
-                .registerTypeAdapter(INDArray.class, new INDArrayAdapter())
-                .setPrettyPrinting().create();
+    /**
+     * Gets the JSON object from a given instance.
+     * @param instance the OPF instance.
+     * @return a compact string in JSON format that describes the classifier.
+     * */
+    public static String toJSON(OPF instance) {
+        return toJSON(instance, false);
     }
 
     /**
      * Gets the JSON object from a given instance.
      * @param instance the OPF instance.
+     * @param pretty whether the JSON should be indented.
      * @return a string in JSON format that describes the classifier.
      * */
-    public static String toJSON(OPF instance) {
-        JsonObject jo = new JsonObject();
-        jo.add(GRAPH_PROPERTY, gson.toJsonTree(instance.getGraph()));
-        jo.addProperty(INSTANCE_PROPERTY, instance.getClass().getSimpleName());
-        jo.addProperty(DISTANCE_PROPERTY, getDistance(instance.getDistance()));
-        return gson.toJson(jo);
+    public static String toJSON(OPF instance, boolean pretty) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(instance, writer, pretty);
+        } catch (IOException e) {
+            // a string writer never fails
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
     }
 
     /**
-     * Save OPF state into a file.
+     * Save OPF state into a file, as compact JSON.
      * @param instance the OPF instance.
      * @param filename the filename of the file in wich save the instance.
      * */
     public static void toJSONFile(OPF instance, String filename) throws IOException {
-        try (FileWriter fw = new FileWriter(filename)) {
-            fw.write(JSONConverter.toJSON(instance));
+        toJSONFile(instance, filename, false);
+    }
+
+    /**
+     * Save OPF state into a file.
+     * @param instance the OPF instance.
+     * @param filename the filename of the file in wich save the instance.
+     * @param pretty whether the JSON should be indented.
+     * */
+    public static void toJSONFile(OPF instance, String filename, boolean pretty) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)) {
+            write(instance, writer, pretty);
         }
     }
 
+    /**
+     * Streams the JSON object of a given instance.
+     * @param instance the OPF instance.
+     * @param out the writer receiving the JSON; it is not closed.
+     * @param pretty whether the JSON should be indented.
+     * @throws BuildError if the distance of the classifier is not one of {@link DistancesImplementor}.
+     * */
+    public static void write(OPF instance, Writer out, boolean pretty) throws IOException {
+        String distance = DistancesImplementor.getName(instance.getDistance());
+        if (distance.isEmpty())
+            throw new BuildError("Only the distances of DistancesImplementor can be written as JSON.");
+
+        JsonWriter writer = new JsonWriter(out);
+        // costs can be infinite
+        writer.setLenient(true);
+        if (pretty)
+            writer.setIndent("  ");
+
+        writer.beginObject();
+        writer.name(GRAPH_PROPERTY);
+        writeGraph(writer, instance.getGraph());
+        writer.name(INSTANCE_PROPERTY).value(instance.getClass().getSimpleName());
+        writer.name(DISTANCE_PROPERTY).value(distance);
+        writer.name(PRECISION_PROPERTY).value(instance.getPrecision().name());
+        if (instance.getReducer() != null) {
+            writer.name(REDUCER_PROPERTY);
+            writeReducer(writer, instance.getReducer());
+        }
+        writer.endObject();
+        writer.flush();
+    }
+
     /**
      * Load an OPF instance from a JSON element.
      * @param jsonString a JSON string representing an OPF instantce.
      * @return the OPF instance.
      * */
     public static OPF fromJSON(String jsonString) {
-        JsonObject jo = new Gson().fromJson(jsonString, JsonObject.class);
+        try {
+            return read(new StringReader(jsonString));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-        Distance distance = getDistance(jo.get(DISTANCE_PROPERTY).getAsString());
+    /**
+     * Load an OPF instance from a JSON element.
+     * @param fname a JSON file containing an OPF instantce.
+     * @return the OPF instance.
+     * */
+    public static OPF fromJSONFile(String fname) {
+        try (Reader reader = Files.newBufferedReader(Paths.get(fname), StandardCharsets.UTF_8)) {
+            return read(reader);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Streams an OPF instance from a JSON element. Properties can be in any order.
+     * @param in the reader providing the JSON; it is not closed.
+     * @return the OPF instance, or null if its class cannot be instantiated.
+     * @throws JsonParseException if the JSON does not describe a classifier.
+     * @throws ValueError if the distance is not one of {@link DistancesImplementor}.
+     * */
+    public static OPF read(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        reader.setLenient(true);
+
+        Graph graph = null;
+        String instance = null;
+        String distance = null;
+        // documents written before the precision was stored are in double precision
+        Precision precision = Precision.DOUBLE;
+        LinearReducer reducer = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case GRAPH_PROPERTY:
+                    graph = readGraph(reader);
+                    break;
+                case INSTANCE_PROPERTY:
+                    instance = reader.nextString();
+                    break;
+                case DISTANCE_PROPERTY:
+                    distance = reader.nextString();
+                    break;
+                case PRECISION_PROPERTY:
+                    precision = readPrecision(reader.nextString());
+                    break;
+                case REDUCER_PROPERTY:
+                    reducer = readReducer(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (instance == null)
+            throw new JsonParseException("Missing property: " + INSTANCE_PROPERTY);
+        if (distance == null)
+            throw new JsonParseException("Missing property: " + DISTANCE_PROPERTY);
 
         try {
             String packageName = SupervisedEOPF.class.getPackage().getName();
-            Class<?> instanceClass = Class.forName(packageName + "." + jo.get(INSTANCE_PROPERTY).getAsString());
-            OPF opf = (OPF) instanceClass.getConstructor(Distance.class).newInstance(distance);
+            Class<?> instanceClass = Class.forName(packageName + "." + instance);
+            OPF opf = (OPF) instanceClass.getConstructor(Distance.class).newInstance(DistancesImplementor.fromName(distance));
 
-            opf.setGraph(gson.fromJson(jo.get(GRAPH_PROPERTY),  Graph.class));
+            if (graph != null)
+                opf.setGraph(graph);
+            opf.setPrecision(precision);
+            opf.setReducer(reducer);
             return opf;
 
         } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
             e.printStackTrace();
             return null;
         }
+    }
 
-        //return gson.fromJson(jsonString, SupervisedEOPF.class);
+    /**
+     * Writes a graph, with the same properties of its fields.
+     * */
+    private static void writeGraph(JsonWriter writer, Graph graph) throws IOException {
+        if (graph == null) {
+            writer.nullValue();
+            return;
+        }
+
+        if (!graph.isDense())
+            throw new BuildError("Features in a sparse or quantized matrix cannot be written as JSON.");
+
+        writer.beginObject();
+        writer.name(NODES_PROPERTY).beginArray();
+        for (Node node : graph.getNodes()) {
+            writer.beginObject();
+            writer.name("index").value(node.getIndex());
+            writer.name("label").value(node.getLabel());
+            writer.name("predictedLabel").value(node.getPredictedLabel());
+            writer.name("clusterLabel").value(node.getClusterLabel());
+            writer.name("features").beginArray();
+            for (double value : node.getFeatures().toDoubleVector())
+                writer.value(value);
+            writer.endArray();
+            writer.name("cost").value(node.getCost());
+            writer.name("density").value(node.getDensity());
+            writer.name("nPlateaus").value(node.getNPlateaus());
+            // arcs are not part of a trained classifier
+            writer.name("adjacency").beginArray().endArray();
+            writer.name("root").value(node.getRoot());
+            writer.name("status").value(node.getStatus());
+            writer.name("pred").value(node.getPred());
+            writer.name("relevant").value(node.getRelevant());
+            writer.endObject();
+        }
+        writer.endArray();
+
+        writer.name(ORDERED_NODES_PROPERTY).beginArray();
+        for (int index : graph.getOrderedNodes())
+            writer.value(index);
+        writer.endArray();
+
+        writer.name(TRAINED_PROPERTY).value(graph.isTrained());
+        writer.name(FEATURES_PROPERTY).value(graph.getFeatures());
+        writer.endObject();
     }
 
     /**
-     * Load an OPF instance from a JSON element.
-     * @param fname a JSON file containing an OPF instantce.
-     * @return the OPF instance.
+     * Writes a fitted linear reducer, with its class, its parameters, its mean and its row-major projection.
+     * @throws BuildError if the reducer is not a fitted linear one.
      * */
-    public static OPF fromJSONFile(String fname) {
-        try (Scanner scanner = new Scanner(new FileInputStream(fname))) {
-            scanner.useDelimiter("\\Z");
-            String jsonString = scanner.next();
-            return fromJSON(jsonString);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void writeReducer(JsonWriter writer, Reducer reducer) throws IOException {
+        if (!(reducer instanceof LinearReducer) || !reducer.isFitted())
+            throw new BuildError("Only fitted linear reducers can be written as JSON.");
+
+        LinearReducer linear = (LinearReducer) reducer;
+        writer.beginObject();
+        writer.name("type").value(linear.getClass().getName());
+        writer.name("features").value(linear.getFeatures());
+        writer.name("components").value(linear.getComponents());
+        writer.name("parameters").beginArray();
+        for (long parameter : linear.getParameters())
+            writer.value(parameter);
+        writer.endArray();
+        writer.name("mean").beginArray();
+        for (double value : linear.getMean().toDoubleVector())
+            writer.value(value);
+        writer.endArray();
+        writer.name("projection").beginArray();
+        for (double value : linear.getProjection().dup('c').data().asDouble())
+            writer.value(value);
+        writer.endArray();
+        writer.endObject();
+    }
+
+    /**
+     * Reads a linear reducer. Reducers written without parameters are restored with the default ones.
+     * */
+    private static LinearReducer readReducer(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
             return null;
         }
-    }
 
+        String type = null;
+        int features = 0, components = 0;
+        long[] parameters = new long[0];
+        double[] mean = null, projection = null;
 
-    private static class INDArrayAdapter implements JsonSerializer<INDArray>, JsonDeserializer<INDArray> {
-        @Override
-        public JsonElement serialize(INDArray indArray, Type type, JsonSerializationContext jctx) {
-            Gson gson = new Gson();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type": type = reader.nextString(); break;
+                case "features": features = reader.nextInt(); break;
+                case "components": components = reader.nextInt(); break;
+                case "parameters": parameters = readLongs(reader); break;
+                case "mean": mean = readDoubles(reader); break;
+                case "projection": projection = readDoubles(reader); break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (type == null || mean == null || projection == null)
+            throw new JsonParseException("The reducer should have a type, a mean and a projection");
+        if (features <= 0 || components <= 0 || mean.length != features
+                || projection.length != features * components)
+            throw new SizeError(String.format("The reducer should have %d mean values and %d x %d projection values",
+                    features, features, components));
+
+        return LinearReducer.restore(type, components, parameters, Nd4j.createFromArray(mean),
+                Nd4j.create(projection, features, components));
+    }
 
-            return gson.toJsonTree(indArray.toDoubleVector());
+    /**
+     * Reads the precision of the classifier, given its name.
+     * @throws JsonParseException if the precision is not supported.
+     * */
+    private static Precision readPrecision(String name) {
+        try {
+            return Precision.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Precision not supported: " + name);
         }
+    }
 
-        @Override
-        public INDArray deserialize(JsonElement je, Type type, JsonDeserializationContext jctx) throws JsonParseException {
-            Gson gson = new Gson();
-            double[] arr = gson.fromJson(je, double[].class);
-            return Nd4j.create(arr, arr.length);
+    private static double[] readDoubles(JsonReader reader) throws IOException {
+        double[] values = new double[16];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = reader.nextDouble();
         }
+        reader.endArray();
+        return Arrays.copyOf(values, size);
     }
 
-    private static String getDistance(Distance distance) {
-        if (distance == DistancesImplementor.euclideanDistance)
-            return EUCLIDEAN_DISTANCE;
-        else if (distance == DistancesImplementor.logEuclideanDistance)
-            return LOG_EUCLIDEAN_DISTANCE;
-        else if (distance == DistancesImplementor.logSquaredEuclideanDistance)
-            return LOG_SQUARED_EUCLIDEAN_DISTANCE;
-        else
-            return "";
+    private static long[] readLongs(JsonReader reader) throws IOException {
+        long[] values = new long[4];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = reader.nextLong();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, size);
     }
 
-    private static Distance getDistance(String name) {
-        switch (name) {
-            case LOG_EUCLIDEAN_DISTANCE:
-                return DistancesImplementor.logEuclideanDistance;
-            case LOG_SQUARED_EUCLIDEAN_DISTANCE:
-                return DistancesImplementor.logSquaredEuclideanDistance;
-            case EUCLIDEAN_DISTANCE:
-            default:
-                return DistancesImplementor.euclideanDistance;
+    /**
+     * Reads a graph; all the features are decoded in a single buffer, and nodes hold views of its rows.
+     * */
+    private static Graph readGraph(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
         }
+
+        NodeColumns columns = new NodeColumns();
+        int[] ordered = new int[0];
+        int orderedSize = 0;
+        boolean trained = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case NODES_PROPERTY:
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        columns.read(reader);
+                    reader.endArray();
+                    break;
+                case ORDERED_NODES_PROPERTY:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (orderedSize == ordered.length)
+                            ordered = Arrays.copyOf(ordered, Math.max(16, orderedSize * 2));
+                        ordered[orderedSize++] = reader.nextInt();
+                    }
+                    reader.endArray();
+                    break;
+                case TRAINED_PROPERTY:
+                    trained = reader.nextBoolean();
+                    break;
+                default:
+                    // the number of features is given by the features themselves
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (columns.size == 0)
+            throw new JsonParseException("The graph has no nodes");
+
+        // build the graph over a single features array
+        int n = columns.size;
+        double[] features = columns.features.length == n * columns.width ?
+                columns.features : Arrays.copyOf(columns.features, n * columns.width);
+        INDArray x = Nd4j.create(features, n, columns.width);
+        Graph graph = new Graph(x, Nd4j.createFromArray(Arrays.copyOf(columns.label, n)));
+        for (int i = 0; i < n; i++) {
+            Node node = graph.getNodes().get(i);
+            node.setIndex(columns.index[i]);
+            node.setPredictedLabel(columns.predictedLabel[i]);
+            node.setClusterLabel(columns.clusterLabel[i]);
+            node.setCost(columns.cost[i]);
+            node.setDensity(columns.density[i]);
+            node.setNPlateaus(columns.nPlateaus[i]);
+            node.setRoot(columns.root[i]);
+            node.setStatus(columns.status[i]);
+            node.setPred(columns.pred[i]);
+            node.setRelevant(columns.relevant[i]);
+        }
+        for (int i = 0; i < orderedSize; i++)
+            graph.getOrderedNodes().add(ordered[i]);
+        graph.setTrained(trained);
+
+        return graph;
     }
 
-    private static final Gson gson;
+    /**
+     * The fields of the nodes read so far, stored in growing primitive arrays.
+     * */
+    private static class NodeColumns {
+        /**
+         * Reads a node, adding its fields to the columns.
+         * */
+        void read(JsonReader reader) throws IOException {
+            if (size == index.length)
+                grow();
+
+            // status and pred are not 0 by default
+            status[size] = Constants.STANDARD;
+            pred[size] = Constants.NIL;
+            int features = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "index": index[size] = reader.nextInt(); break;
+                    case "label": label[size] = reader.nextInt(); break;
+                    case "predictedLabel": predictedLabel[size] = reader.nextInt(); break;
+                    case "clusterLabel": clusterLabel[size] = reader.nextInt(); break;
+                    case "cost": cost[size] = reader.nextDouble(); break;
+                    case "density": density[size] = reader.nextDouble(); break;
+                    case "nPlateaus": nPlateaus[size] = reader.nextInt(); break;
+                    case "root": root[size] = reader.nextInt(); break;
+                    case "status": status[size] = reader.nextInt(); break;
+                    case "pred": pred[size] = reader.nextInt(); break;
+                    case "relevant": relevant[size] = reader.nextInt(); break;
+                    case "features":
+                        features = readFeatures(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // the first node sets the number of features
+            if (width < 0)
+                width = features;
+            else if (features != width)
+                throw new SizeError(String.format("Node %d has %d features, expected %d", size, features, width));
+            size++;
+        }
+
+        /**
+         * Reads the features of the current node at the end of the buffer.
+         * */
+        private int readFeatures(JsonReader reader) throws IOException {
+            int offset = width < 0 ? 0 : size * width;
+            int count = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (offset + count == features.length)
+                    features = Arrays.copyOf(features, Math.max(1024, features.length * 2));
+                features[offset + count++] = reader.nextDouble();
+            }
+            reader.endArray();
+            return count;
+        }
+
+        private void grow() {
+            int capacity = Math.max(16, index.length * 2);
+            index = Arrays.copyOf(index, capacity);
+            label = Arrays.copyOf(label, capacity);
+            predictedLabel = Arrays.copyOf(predictedLabel, capacity);
+            clusterLabel = Arrays.copyOf(clusterLabel, capacity);
+            nPlateaus = Arrays.copyOf(nPlateaus, capacity);
+            root = Arrays.copyOf(root, capacity);
+            status = Arrays.copyOf(status, capacity);
+            pred = Arrays.copyOf(pred, capacity);
+            relevant = Arrays.copyOf(relevant, capacity);
+            cost = Arrays.copyOf(cost, capacity);
+            density = Arrays.copyOf(density, capacity);
+        }
+
+        private int size, width = -1;
+        private int[] index = new int[0], label = new int[0], predictedLabel = new int[0], clusterLabel = new int[0],
+                nPlateaus = new int[0], root = new int[0], status = new int[0], pred = new int[0], relevant = new int[0];
+        private double[] cost = new double[0], density = new double[0];
+        private double[] features = new double[0];
+    }
 
     private static final String GRAPH_PROPERTY = "graph";
     private static final String INSTANCE_PROPERTY = "instance";
     private static final String DISTANCE_PROPERTY = "distance";
+    private static final String REDUCER_PROPERTY = "reducer";
+    private static final String PRECISION_PROPERTY = "precision";
 
-    private static final String EUCLIDEAN_DISTANCE = "euclideanDistance";
-    private static final String LOG_EUCLIDEAN_DISTANCE = "logEuclideanDistance";
-    private static final String LOG_SQUARED_EUCLIDEAN_DISTANCE = "logSquaredEuclideanDistance";
+    private static final String NODES_PROPERTY = "nodes";
+    private static final String ORDERED_NODES_PROPERTY = "orderedNodes";
+    private static final String TRAINED_PROPERTY = "trained";
+    private static final String FEATURES_PROPERTY = "nFeatures";
 }
@@ -0,0 +1,353 @@
+package tools;
+
+import core.Graph;
+import core.Node;
+import core.OPF;
+import math.FeatureMatrix;
+import utils.exceptions.ValueError;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * This class keeps a set of trained classifiers in memory, loading them on demand and
+ * evicting them when the estimated footprint exceeds a given memory budget.
+ * Concurrent requests for a model that is still loading wait for the same load.
+ *
+ * @author De Caro Antonio
+ */
+public class ModelRegistry {
+
+    private static final Logger logger = Logger.getLogger(ModelRegistry.class.getName());
+
+    /**
+     * Class constructor.
+     * @param loader the function used to load a model given its key.
+     * @param budget the maximum estimated footprint (in bytes) of the cached models.
+     * @param policy the eviction policy.
+     * */
+    public ModelRegistry(ModelLoader loader, long budget, Policy policy) {
+        if (budget <= 0)
+            throw new ValueError("`budget` must be > 0");
+
+        this.loader = loader;
+        this.budget = budget;
+        this.policy = policy;
+
+        // access ordered map, so the iteration order is the LRU order
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.loading = new HashMap<>();
+    }
+
+    /**
+     * Class constructor. Models are loaded from file, using the key as filename.
+     * @param budget the maximum estimated footprint (in bytes) of the cached models.
+     * @see ModelRegistry
+     * */
+    public ModelRegistry(long budget) {
+        this(ModelRegistry::loadFile, budget, Policy.LRU);
+    }
+
+    /**
+     * Gets a model, loading it if it is not already cached.
+     * @param key the model's key.
+     * @return the model.
+     * @throws IOException if the model cannot be loaded.
+     * */
+    public OPF get(String key) throws IOException {
+        CompletableFuture<OPF> future;
+        boolean owner = false;
+
+        synchronized (this) {
+            // check if the model is already cached
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                entry.uses++;
+                return entry.model;
+            }
+
+            misses.incrementAndGet();
+
+            // check if someone else is already loading the model
+            future = loading.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                loading.put(key, future);
+                owner = true;
+            }
+        }
+
+        // if another thread is loading the model, wait for it
+        if (!owner)
+            return await(future);
+
+        try {
+            logger.info("Loading model: " + key);
+            OPF model = loader.load(key);
+            if (model == null)
+                throw new IOException("Model could not be loaded: " + key);
+
+            // insert the model in the cache
+            synchronized (this) {
+                Entry entry = new Entry(model, estimateFootprint(model));
+                entries.put(key, entry);
+                footprint += entry.footprint;
+                loading.remove(key);
+                evict(key);
+            }
+
+            future.complete(model);
+            return model;
+
+        } catch (IOException | ClassNotFoundException | RuntimeException | Error e) {
+            // waiting threads are released whatever went wrong, e.g. an OutOfMemoryError
+            synchronized (this) {
+                loading.remove(key);
+            }
+            future.completeExceptionally(e);
+            if (e instanceof Error)
+                throw (Error) e;
+            if (e instanceof IOException)
+                throw (IOException) e;
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Removes a model from the cache.
+     * @param key the model's key.
+     * @return true if the model was cached, false otherwise.
+     * */
+    public synchronized boolean invalidate(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null)
+            return false;
+        footprint -= entry.footprint;
+        return true;
+    }
+
+    /**
+     * Removes every model from the cache.
+     * */
+    public synchronized void clear() {
+        entries.clear();
+        footprint = 0;
+    }
+
+    /**
+     * Checks if a model is cached.
+     * @param key the model's key.
+     * @return true if the model is cached, false otherwise.
+     * */
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * @return the number of cached models.
+     * */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated footprint (in bytes) of the cached models.
+     * */
+    public synchronized long getFootprint() {
+        return footprint;
+    }
+
+    /**
+     * @return the memory budget (in bytes).
+     * */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the eviction policy.
+     * */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of requests served from the cache.
+     * */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests that were not served from the cache.
+     * */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of evicted models.
+     * */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Estimates the memory footprint of a model, based on its nodes and features.
+     * Features in a feature matrix are counted with the bytes of the matrix, once per matrix.
+     * @param model the OPF instance.
+     * @return the estimated footprint in bytes.
+     * */
+    public static long estimateFootprint(OPF model) {
+        Graph graph = model.getGraph();
+        if (graph == null)
+            return MODEL_OVERHEAD;
+
+        long nodes = graph.getNodes().size();
+        long features = graph.getFeatures();
+
+        if (!graph.isDense()) {
+            // nodes share the matrix holding their features
+            Set<FeatureMatrix> matrices = Collections.newSetFromMap(new IdentityHashMap<>());
+            long bytes = 0;
+            for (Node node : graph.getNodes())
+                if (matrices.add(node.getMatrix()))
+                    bytes += node.getMatrix().bytes();
+            return MODEL_OVERHEAD + nodes * NODE_OVERHEAD + bytes;
+        }
+
+        // gather the size of a single feature from the first node
+        long featureSize = Double.BYTES;
+        if (nodes > 0) {
+            Node node = graph.getNodes().get(0);
+            if (node.getFeatures() != null)
+                featureSize = node.getFeatures().data().getElementSize();
+        }
+
+        return MODEL_OVERHEAD + nodes * (NODE_OVERHEAD + features * featureSize);
+    }
+
+    /**
+     * Evicts models until the footprint fits the budget.
+     * The last inserted model is never evicted, even if it alone exceeds the budget.
+     * @param keep the key of the model to keep.
+     * */
+    private void evict(String keep) {
+        while (footprint > budget && entries.size() > 1) {
+            String victim = null;
+
+            if (policy == Policy.LRU) {
+                // the first key is the least recently used one
+                for (String key : entries.keySet()) {
+                    if (!key.equals(keep)) {
+                        victim = key;
+                        break;
+                    }
+                }
+            } else {
+                // find the least frequently used one, ties are broken by recency
+                long minUses = Long.MAX_VALUE;
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    if (!e.getKey().equals(keep) && e.getValue().uses < minUses) {
+                        minUses = e.getValue().uses;
+                        victim = e.getKey();
+                    }
+                }
+            }
+
+            if (victim == null)
+                break;
+
+            footprint -= entries.remove(victim).footprint;
+            evictions.incrementAndGet();
+            logger.info("Evicted model: " + victim);
+        }
+    }
+
+    /**
+     * Waits for a model that is being loaded by another thread.
+     * */
+    private static OPF await(CompletableFuture<OPF> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Loads a model from file, according to its extension.
+     * */
+    private static OPF loadFile(String filename) throws IOException, ClassNotFoundException {
+        if (filename.endsWith("json"))
+            return JSONConverter.fromJSONFile(filename);
+        return OPF.load(filename);
+    }
+
+    /**
+     * This interface is used to load a model given its key.
+     * */
+    public interface ModelLoader {
+
+        /**
+         * @param key the model's key.
+         * @return the loaded model.
+         * */
+        OPF load(String key) throws IOException, ClassNotFoundException;
+    }
+
+    /**
+     * Eviction policy enumeration class.
+     * */
+    public enum Policy {
+        LRU,
+        LFU
+    }
+
+    /**
+     * A cached model.
+     * */
+    private static class Entry {
+        Entry(OPF model, long footprint) {
+            this.model = model;
+            this.footprint = footprint;
+            this.uses = 1;
+        }
+
+        final OPF model;
+        final long footprint;
+        long uses;
+    }
+
+    // estimated overhead of a single node: object, boxed index in the ordered list and array view
+    private static final long NODE_OVERHEAD = 256;
+
+    // estimated overhead of a single model
+    private static final long MODEL_OVERHEAD = 1024;
+
+    private final ModelLoader loader;
+    private final long budget;
+    private final Policy policy;
+    private final LinkedHashMap<String, Entry> entries;
+    private final HashMap<String, CompletableFuture<OPF>> loading;
+    private long footprint;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+}
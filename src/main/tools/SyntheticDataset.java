@@ -0,0 +1,194 @@
+package tools;
+
+import org.nd4j.linalg.factory.Nd4j;
+import stream.BinaryDataset;
+import stream.Dataset;
+import stream.LibOPF;
+import utils.exceptions.ValueError;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * This class generates reproducible synthetic labeled datasets, used to benchmark and to test the classifiers
+ * without downloading data. The same kind, size and seed always give the same dataset.
+ *
+ * @author De Caro Antonio
+ */
+public class SyntheticDataset {
+
+    private static final Logger logger = Logger.getLogger(SyntheticDataset.class.getName());
+
+    /**
+     * Generates a dataset. Labels are assigned in turn, so every class has the same number of samples (+/- 1).
+     * @param kind the kind of dataset.
+     * @param n the number of samples.
+     * @param features the number of features.
+     * @param classes the number of classes, must be greater than 1.
+     * @param seed the seed of the random generator.
+     * @return the dataset, with DOUBLE features and INT32 labels from 1 to classes.
+     * */
+    public static Dataset generate(Kind kind, int n, int features, int classes, long seed) {
+        if (classes < 2 || n < classes)
+            throw new ValueError("There must be at least two classes, and a sample for each class");
+        if (features <= 0)
+            throw new ValueError("The number of features must be greater than 0");
+
+        logger.info(String.format("Generating %s dataset: (%d,%d) | %d classes", kind, n, features, classes));
+
+        Random random = new Random(seed);
+        double[] x = new double[n * features];
+        int[] ids = new int[n];
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+            y[i] = i % classes + 1;
+        }
+
+        switch (kind) {
+            case BLOBS:
+                gaussian(x, y, features, classes, BLOBS_SEPARATION, random);
+                break;
+            case OVERLAPPING:
+                gaussian(x, y, features, classes, OVERLAPPING_SEPARATION, random);
+                break;
+            case SPARSE:
+                sparse(x, y, features, classes, random);
+                break;
+        }
+
+        return new Dataset(ids, Nd4j.create(x, n, features), Nd4j.createFromArray(y), classes);
+    }
+
+    /**
+     * Writes a dataset in OPF file format.
+     * @param dataset the dataset.
+     * @param filename the dataset path. Format: .csv, .txt, .json, .opfb, .dat (LibOPF).
+     * @throws IOException if the file cannot be written.
+     * */
+    public static void write(Dataset dataset, String filename) throws IOException {
+        if (filename.endsWith(BinaryDataset.EXTENSION)) {
+            BinaryDataset.write(filename, Nd4j.createFromArray(dataset.getIds()), dataset.getY(), dataset.getX(),
+                    dataset.getX().dataType());
+        } else if (filename.endsWith(LibOPF.EXTENSION)) {
+            LibOPF.writeDataset(filename, Nd4j.createFromArray(dataset.getIds()), dataset.getY(), dataset.getX());
+        } else if (filename.endsWith("csv") || filename.endsWith("txt") || filename.endsWith("json")) {
+            writeText(dataset, filename);
+        } else {
+            throw new IllegalArgumentException("File extension not recognized. It should be `.csv`, `.json`, `.txt`, " +
+                    "`.dat` or `.opfb`");
+        }
+    }
+
+    /**
+     * Writes a dataset as text: one record (id, label, features) per line, or the `data` array of a JSON object.
+     * */
+    private static void writeText(Dataset dataset, String filename) throws IOException {
+        boolean json = filename.endsWith("json");
+        String separator = filename.endsWith("csv") ? "," : " ";
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)) {
+            if (json)
+                writer.write("{\"data\":[");
+
+            for (int i = 0; i < dataset.getRows(); i++) {
+                double[] row = dataset.getX().getRow(i).toDoubleVector();
+                if (json) {
+                    writer.write(i > 0 ? ",{\"id\":" : "{\"id\":");
+                    writer.write(dataset.getIds()[i] + ",\"label\":" + dataset.getY().getInt(i) + ",\"features\":[");
+                    for (int j = 0; j < row.length; j++) {
+                        if (j > 0)
+                            writer.write(',');
+                        writer.write(Double.toString(row[j]));
+                    }
+                    writer.write("]}");
+                } else {
+                    writer.write(dataset.getIds()[i] + separator + dataset.getY().getInt(i));
+                    for (double value : row) {
+                        writer.write(separator);
+                        writer.write(Double.toString(value));
+                    }
+                    writer.newLine();
+                }
+            }
+
+            if (json)
+                writer.write("]}");
+        }
+    }
+
+    /**
+     * Fills the features with unit variance Gaussian blobs, one for each class.
+     * The centers are drawn with the given standard deviation: the smaller it is, the more the classes overlap.
+     * */
+    private static void gaussian(double[] x, int[] y, int features, int classes, double separation, Random random) {
+        double[][] centers = new double[classes][features];
+        for (double[] center : centers)
+            for (int j = 0; j < features; j++)
+                center[j] = random.nextGaussian() * separation;
+
+        for (int i = 0; i < y.length; i++) {
+            double[] center = centers[y[i] - 1];
+            for (int j = 0; j < features; j++)
+                x[i * features + j] = center[j] + random.nextGaussian();
+        }
+    }
+
+    /**
+     * Fills the features with sparse samples: each class has its own subset of active features, and each sample
+     * has a few non zero features, drawn mostly from the subset of its class.
+     * */
+    private static void sparse(double[] x, int[] y, int features, int classes, Random random) {
+        int active = Math.max(1, (int) (features * SPARSE_DENSITY));
+
+        // the active features of each class
+        int[][] supports = new int[classes][active];
+        for (int[] support : supports)
+            for (int k = 0; k < active; k++)
+                support[k] = random.nextInt(features);
+
+        for (int i = 0; i < y.length; i++) {
+            int[] support = supports[y[i] - 1];
+            for (int k = 0; k < active; k++) {
+                // some features are noise, shared by all the classes
+                int j = random.nextDouble() < SPARSE_NOISE ? random.nextInt(features) : support[random.nextInt(active)];
+                x[i * features + j] = 1 + Math.abs(random.nextGaussian());
+            }
+        }
+    }
+
+    /**
+     * The kinds of synthetic datasets.
+     * */
+    public enum Kind {
+        /**
+         * Well separated Gaussian blobs.
+         * */
+        BLOBS,
+        /**
+         * Gaussian blobs whose classes overlap.
+         * */
+        OVERLAPPING,
+        /**
+         * High dimensional sparse samples, e.g. bag of words.
+         * */
+        SPARSE
+    }
+
+    // standard deviation of the centers of well separated blobs
+    private static final double BLOBS_SEPARATION = 4;
+
+    // standard deviation of the centers of overlapping blobs
+    private static final double OVERLAPPING_SEPARATION = 0.5;
+
+    // ratio of non zero features of sparse samples
+    private static final double SPARSE_DENSITY = 0.02;
+
+    // ratio of non zero features of sparse samples that are not related to their class
+    private static final double SPARSE_NOISE = 0.2;
+}
@@ -0,0 +1,243 @@
+package utils;
+
+import utils.exceptions.ValueError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * The execution runtime shared by all the parallel stages of the library: distances pre-computation,
+ * prototypes search, IFT, prediction, loading and cross-validation.
+ * All of them run on a single {@link ForkJoinPool}, so concurrent jobs in a JVM share (and are capped by)
+ * its threads. The pool is, in order of precedence:
+ * <ul>
+ *     <li>a pool injected by the caller with {@link #setPool(ForkJoinPool)};</li>
+ *     <li>a dedicated pool with the parallelism set by {@link #setParallelism(int)}, or by the
+ *     {@code jopf.parallelism} system property;</li>
+ *     <li>the common pool of the JVM.</li>
+ * </ul>
+ * A range is split in a few parts per thread, which at most the requested number of workers claim one after
+ * the other, so a job never runs on more threads than it asked for, and the load is balanced even when the
+ * cost of the parts differs.
+ *
+ * @author De Caro Antonio
+ */
+public final class ExecutionRuntime {
+
+    private static final Logger logger = Logger.getLogger(ExecutionRuntime.class.getName());
+
+    /**
+     * Gets the pool of the runtime.
+     * @return the pool.
+     * */
+    public static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            Integer parallelism = Integer.getInteger(PARALLELISM_PROPERTY);
+            if (parallelism != null && parallelism > 0) {
+                pool = new ForkJoinPool(parallelism);
+                owned = true;
+            } else {
+                pool = ForkJoinPool.commonPool();
+            }
+            logger.info("Execution runtime parallelism: " + pool.getParallelism());
+        }
+        return pool;
+    }
+
+    /**
+     * Injects the pool of the runtime. The caller keeps the ownership of the pool, and should shut it
+     * down only after the jobs using it are over.
+     * @param pool the pool; can be null to go back to the default one.
+     * */
+    public static synchronized void setPool(ForkJoinPool pool) {
+        release();
+        ExecutionRuntime.pool = pool;
+    }
+
+    /**
+     * Replaces the pool of the runtime with a dedicated pool.
+     * @param parallelism the number of threads of the pool, must be greater than 0.
+     * */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new ValueError("The parallelism has to be greater or equals 1");
+
+        release();
+        pool = new ForkJoinPool(parallelism);
+        owned = true;
+    }
+
+    /**
+     * @return the number of threads of the pool of the runtime.
+     * */
+    public static int getParallelism() {
+        return getPool().getParallelism();
+    }
+
+    /**
+     * Runs a body over a range of indexes, in parallel.
+     * @param from the first index.
+     * @param to the end (exclusive) of the range.
+     * @param threads the maximum number of threads running the body at the same time; fewer run if the pool
+     *                is smaller or busy with other jobs.
+     * @param body the body, run over disjoint sub-ranges covering the range.
+     * */
+    public static void forEach(int from, int to, int threads, RangeAction body) {
+        if (to <= from)
+            return;
+
+        int grain = grain(from, to, threads);
+        if (to - from <= grain) {
+            body.run(from, to);
+            return;
+        }
+
+        int parts = parts(from, to, grain);
+        run(parts, threads, part -> body.run(start(from, grain, part), end(from, to, grain, part)));
+    }
+
+    /**
+     * Computes a result over a range of indexes, in parallel, combining the results of its sub-ranges.
+     * @param from the first index.
+     * @param to the end (exclusive) of the range.
+     * @param threads the maximum number of threads running the body at the same time; fewer run if the pool
+     *                is smaller or busy with other jobs.
+     * @param body the body, computing the result of a sub-range.
+     * @param combiner combines the results of two adjacent sub-ranges, the left one first.
+     * @return the result of the whole range.
+     * */
+    public static <R> R reduce(int from, int to, int threads, RangeFunction<R> body, BinaryOperator<R> combiner) {
+        int grain = grain(from, to, threads);
+        if (to - from <= grain)
+            return body.apply(from, to);
+
+        // the results of the parts are combined in order once all of them are computed
+        int parts = parts(from, to, grain);
+        List<R> results = new ArrayList<>(Collections.nCopies(parts, null));
+        run(parts, threads, part ->
+                results.set(part, body.apply(start(from, grain, part), end(from, to, grain, part))));
+
+        R result = results.get(0);
+        for (int part = 1; part < parts; part++)
+            result = combiner.apply(result, results.get(part));
+        return result;
+    }
+
+    /**
+     * Runs a number of parts on the pool, with at most a number of workers at the same time.
+     * Each worker claims the next part left until none is, so a worker that finishes early takes the parts of the
+     * slower ones; if a part fails, the parts not claimed yet are skipped.
+     * @param parts the number of parts.
+     * @param threads the maximum number of workers.
+     * @param part runs a part given its position.
+     * */
+    private static void run(int parts, int threads, IntConsumer part) {
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            try {
+                for (int i = next.getAndIncrement(); i < parts; i = next.getAndIncrement())
+                    part.accept(i);
+            } catch (RuntimeException | Error e) {
+                next.set(parts);
+                throw e;
+            }
+        };
+
+        int workers = Math.min(threads, parts);
+        getPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                // this task is one of the workers
+                List<ForkJoinTask<?>> forked = new ArrayList<>();
+                for (int i = 1; i < workers; i++)
+                    forked.add(ForkJoinTask.adapt(worker).fork());
+                worker.run();
+                for (ForkJoinTask<?> task : forked)
+                    task.join();
+            }
+        });
+    }
+
+    /**
+     * Computes the size of the parts of a range: a few parts for each thread, to let threads take the parts of the
+     * slower ones.
+     * */
+    private static int grain(int from, int to, int threads) {
+        if (threads <= 0)
+            throw new ValueError("The number of threads has to be greater or equals 1");
+        return threads == 1 ? to - from : Math.max(1, (to - from) / (threads * PARTS_PER_THREAD));
+    }
+
+    /**
+     * @return the number of parts of a range, the last one can be smaller than the others.
+     * */
+    private static int parts(int from, int to, int grain) {
+        return (int) (((long) to - from + grain - 1) / grain);
+    }
+
+    /**
+     * @return the first index of a part of a range.
+     * */
+    private static int start(int from, int grain, int part) {
+        return (int) (from + (long) grain * part);
+    }
+
+    /**
+     * @return the end (exclusive) of a part of a range.
+     * */
+    private static int end(int from, int to, int grain, int part) {
+        return (int) Math.min(to, from + (long) grain * (part + 1));
+    }
+
+    /**
+     * Shuts down the current pool, if it has been created by the runtime.
+     * */
+    private static void release() {
+        if (owned)
+            pool.shutdown();
+        pool = null;
+        owned = false;
+    }
+
+    /**
+     * A body run over a range of indexes.
+     * */
+    public interface RangeAction {
+        /**
+         * @param from the first index.
+         * @param to the end (exclusive) of the range.
+         * */
+        void run(int from, int to);
+    }
+
+    /**
+     * A body computing a result over a range of indexes.
+     * */
+    public interface RangeFunction<R> {
+        /**
+         * @param from the first index.
+         * @param to the end (exclusive) of the range.
+         * @return the result of the range.
+         * */
+        R apply(int from, int to);
+    }
+
+    // system property setting the parallelism of the default pool
+    private static final String PARALLELISM_PROPERTY = "jopf.parallelism";
+
+    // parts of a range for each thread
+    private static final int PARTS_PER_THREAD = 4;
+
+    private static ForkJoinPool pool;
+    private static boolean owned;
+
+    private ExecutionRuntime() {}
+}
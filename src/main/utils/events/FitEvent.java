@@ -0,0 +1,56 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A whole training of a classifier: prototypes search and optimum paths.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.Fit")
+@Label("OPF Fit")
+@Category({"JOPF", "Training"})
+@Description("Training of a classifier")
+@StackTrace(false)
+public class FitEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param samples the number of training samples.
+     * @param features the number of features.
+     * @param threads the number of threads.
+     * @param distance the name of the distance function.
+     * @param precomputed whether the distances are pre-computed.
+     * */
+    public void commit(int samples, int features, int threads, String distance, boolean precomputed) {
+        if (!shouldCommit())
+            return;
+
+        this.samples = samples;
+        this.features = features;
+        this.threads = threads;
+        this.distance = distance;
+        this.precomputed = precomputed;
+        commit();
+    }
+
+    @Label("Samples")
+    public int samples;
+
+    @Label("Features")
+    public int features;
+
+    @Label("Threads")
+    public int threads;
+
+    @Label("Distance")
+    public String distance;
+
+    @Label("Pre-computed Distances")
+    public boolean precomputed;
+}
@@ -0,0 +1,56 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The computation of the optimum paths from the prototypes (Image Foresting Transform).
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.IFT")
+@Label("OPF IFT")
+@Category({"JOPF", "Training"})
+@Description("Computation of the optimum paths of a training")
+@StackTrace(false)
+public class IFTEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param samples the number of training samples.
+     * @param threads the number of threads.
+     * @param conquered the number of nodes conquered.
+     * @param relaxations the number of paths that improved the cost of a node.
+     * @param evaluations the arc weights evaluated.
+     * */
+    public void commit(int samples, int threads, long conquered, long relaxations, long evaluations) {
+        if (!shouldCommit())
+            return;
+
+        this.samples = samples;
+        this.threads = threads;
+        this.conquered = conquered;
+        this.relaxations = relaxations;
+        this.evaluations = evaluations;
+        commit();
+    }
+
+    @Label("Samples")
+    public int samples;
+
+    @Label("Threads")
+    public int threads;
+
+    @Label("Conquered Nodes")
+    public long conquered;
+
+    @Label("Relaxations")
+    public long relaxations;
+
+    @Label("Distance Evaluations")
+    public long evaluations;
+}
@@ -0,0 +1,51 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An iteration of the learning of the best classifier over a validation set.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.LearnIteration")
+@Label("OPF Learn Iteration")
+@Category({"JOPF", "Training"})
+@Description("Iteration of the learning over a validation set")
+@StackTrace(false)
+public class LearnIterationEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param iteration the iteration, from 1.
+     * @param iterations the maximum number of iterations.
+     * @param accuracy the accuracy over the validation set.
+     * @param errors the number of misclassified validation samples.
+     * */
+    public void commit(int iteration, int iterations, double accuracy, int errors) {
+        if (!shouldCommit())
+            return;
+
+        this.iteration = iteration;
+        this.iterations = iterations;
+        this.accuracy = accuracy;
+        this.errors = errors;
+        commit();
+    }
+
+    @Label("Iteration")
+    public int iteration;
+
+    @Label("Iterations")
+    public int iterations;
+
+    @Label("Accuracy")
+    public double accuracy;
+
+    @Label("Errors")
+    public int errors;
+}
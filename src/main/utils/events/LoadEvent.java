@@ -0,0 +1,56 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The loading of a dataset file.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.Load")
+@Label("OPF Dataset Load")
+@Category({"JOPF", "I/O"})
+@Description("Loading of a dataset file")
+@StackTrace(false)
+public class LoadEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param file the dataset path.
+     * @param loader the name of the loader.
+     * @param threads the number of threads.
+     * @param rows the number of records loaded.
+     * @param columns the number of columns of each record.
+     * */
+    public void commit(String file, String loader, int threads, long rows, long columns) {
+        if (!shouldCommit())
+            return;
+
+        this.file = file;
+        this.loader = loader;
+        this.threads = threads;
+        this.rows = rows;
+        this.columns = columns;
+        commit();
+    }
+
+    @Label("File")
+    public String file;
+
+    @Label("Loader")
+    public String loader;
+
+    @Label("Threads")
+    public int threads;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Columns")
+    public long columns;
+}
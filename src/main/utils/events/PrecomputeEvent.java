@@ -0,0 +1,46 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The pre-computation of the distance matrix of a dataset.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.PrecomputeDistances")
+@Label("OPF Pre-compute Distances")
+@Category({"JOPF", "Training"})
+@Description("Pre-computation of a distance matrix")
+@StackTrace(false)
+public class PrecomputeEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param samples the number of samples, i.e. of rows and columns of the matrix.
+     * @param threads the number of threads.
+     * @param distance the name of the distance function.
+     * */
+    public void commit(int samples, int threads, String distance) {
+        if (!shouldCommit())
+            return;
+
+        this.samples = samples;
+        this.threads = threads;
+        this.distance = distance;
+        commit();
+    }
+
+    @Label("Samples")
+    public int samples;
+
+    @Label("Threads")
+    public int threads;
+
+    @Label("Distance")
+    public String distance;
+}
@@ -0,0 +1,56 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The prediction of a batch of samples.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.Predict")
+@Label("OPF Predict")
+@Category({"JOPF", "Prediction"})
+@Description("Prediction of a batch of samples")
+@StackTrace(false)
+public class PredictEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param samples the number of predicted samples.
+     * @param nodes the number of nodes of the trained classifier.
+     * @param distance the name of the distance function.
+     * @param precomputed whether the distances are pre-computed.
+     * @param evaluations the arc weights evaluated.
+     * */
+    public void commit(int samples, int nodes, String distance, boolean precomputed, long evaluations) {
+        if (!shouldCommit())
+            return;
+
+        this.samples = samples;
+        this.nodes = nodes;
+        this.distance = distance;
+        this.precomputed = precomputed;
+        this.evaluations = evaluations;
+        commit();
+    }
+
+    @Label("Samples")
+    public int samples;
+
+    @Label("Training Nodes")
+    public int nodes;
+
+    @Label("Distance")
+    public String distance;
+
+    @Label("Pre-computed Distances")
+    public boolean precomputed;
+
+    @Label("Distance Evaluations")
+    public long evaluations;
+}
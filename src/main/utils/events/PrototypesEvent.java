@@ -0,0 +1,51 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The search of the prototypes, over the minimum spanning tree of the training samples.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.FindPrototypes")
+@Label("OPF Find Prototypes")
+@Category({"JOPF", "Training"})
+@Description("Search of the prototypes of a training")
+@StackTrace(false)
+public class PrototypesEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param samples the number of training samples.
+     * @param prototypes the number of prototypes found.
+     * @param evaluations the arc weights evaluated.
+     * @param resumed whether the search has been resumed from a checkpoint.
+     * */
+    public void commit(int samples, int prototypes, long evaluations, boolean resumed) {
+        if (!shouldCommit())
+            return;
+
+        this.samples = samples;
+        this.prototypes = prototypes;
+        this.evaluations = evaluations;
+        this.resumed = resumed;
+        commit();
+    }
+
+    @Label("Samples")
+    public int samples;
+
+    @Label("Prototypes")
+    public int prototypes;
+
+    @Label("Distance Evaluations")
+    public long evaluations;
+
+    @Label("Resumed")
+    public boolean resumed;
+}
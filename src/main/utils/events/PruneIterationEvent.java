@@ -0,0 +1,51 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An iteration of the pruning of the irrelevant nodes of a classifier.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.PruneIteration")
+@Label("OPF Prune Iteration")
+@Category({"JOPF", "Training"})
+@Description("Iteration of the pruning of irrelevant nodes")
+@StackTrace(false)
+public class PruneIterationEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param iteration the iteration, from 1.
+     * @param nodes the number of training nodes left.
+     * @param pruned the number of irrelevant nodes moved to the validation set.
+     * @param accuracy the accuracy over the validation set.
+     * */
+    public void commit(int iteration, int nodes, int pruned, double accuracy) {
+        if (!shouldCommit())
+            return;
+
+        this.iteration = iteration;
+        this.nodes = nodes;
+        this.pruned = pruned;
+        this.accuracy = accuracy;
+        commit();
+    }
+
+    @Label("Iteration")
+    public int iteration;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Pruned Nodes")
+    public int pruned;
+
+    @Label("Accuracy")
+    public double accuracy;
+}
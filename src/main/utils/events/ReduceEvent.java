@@ -0,0 +1,57 @@
+package utils.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The dimensionality reduction of the features given to a classifier, including the fit of the reducer on the
+ * training ones.
+ *
+ * @author De Caro Antonio
+ */
+@Name("jopf.Reduce")
+@Label("OPF Reduce")
+@Category({"JOPF", "Training"})
+@Description("Dimensionality reduction of the features")
+@StackTrace(false)
+public class ReduceEvent extends Event {
+
+    /**
+     * Commits the event, if it is enabled and over the recording threshold.
+     * @param samples the number of samples.
+     * @param features the number of features.
+     * @param components the number of components the features are reduced to.
+     * @param reducer the name of the reducer.
+     * @param fit whether the reducer has been fitted on the samples.
+     * */
+    public void commit(int samples, int features, int components, String reducer, boolean fit) {
+        if (!shouldCommit())
+            return;
+
+        this.samples = samples;
+        this.features = features;
+        this.components = components;
+        this.reducer = reducer;
+        this.fit = fit;
+        commit();
+    }
+
+    @Label("Samples")
+    public int samples;
+
+    @Label("Features")
+    public int features;
+
+    @Label("Components")
+    public int components;
+
+    @Label("Reducer")
+    public String reducer;
+
+    @Label("Fit")
+    public boolean fit;
+}
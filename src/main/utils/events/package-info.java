@@ -0,0 +1,8 @@
+/**
+ * Java Flight Recorder events of the OPF phases, so a recording tells which phase, iteration or file
+ * a slow job is in.
+ * Events are created and committed in place: when recording is off they are never committed, and their fields
+ * are never computed.
+ * @author De Caro Antonio
+ * */
+package utils.events;
@@ -0,0 +1,14 @@
+package utils.exceptions;
+
+/**
+ * A CancelledError class for logging errors related to trainings cancelled or out of their time budget.
+ * @author De Caro Antonio
+ * */
+public class CancelledError extends RuntimeException {
+    public CancelledError(String msg) {
+        super(msg);
+    }
+    public CancelledError() {
+        super();
+    }
+}
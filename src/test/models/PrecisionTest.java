@@ -0,0 +1,82 @@
+package models;
+
+import math.Distance;
+import math.DistancesImplementor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import stream.Dataset;
+import tools.SyntheticDataset;
+import utils.Precision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Trains the same data in double and single precision, and compares the predictions.
+ * Euclidean arcs are accumulated in {@code float} in both precisions, so the predictions are the same; the log
+ * distances are rounded to the nearest {@code float}, which can only break a few ties differently.
+ *
+ * @author De Caro Antonio
+ */
+class PrecisionTest {
+
+    @BeforeAll
+    static void generate() {
+        Dataset dataset = SyntheticDataset.generate(SyntheticDataset.Kind.OVERLAPPING, TRAIN + TEST, 16, 3, 1);
+        xTrain = dataset.getX().get(NDArrayIndex.interval(0, TRAIN), NDArrayIndex.all());
+        yTrain = dataset.getY().get(NDArrayIndex.interval(0, TRAIN));
+        xTest = dataset.getX().get(NDArrayIndex.interval(TRAIN, TRAIN + TEST), NDArrayIndex.all());
+    }
+
+    @Test
+    void euclideanPredictionsAreTheSame() {
+        Distance distance = DistancesImplementor.euclideanDistance;
+        assertEquals(predict(distance, Precision.DOUBLE), predict(distance, Precision.FLOAT));
+    }
+
+    @Test
+    void logEuclideanPredictionsAgree() {
+        assertAgree(DistancesImplementor.logEuclideanDistance);
+    }
+
+    @Test
+    void logSquaredEuclideanPredictionsAgree() {
+        assertAgree(DistancesImplementor.logSquaredEuclideanDistance);
+    }
+
+    /**
+     * Checks that at most a fraction of the test samples is predicted differently in the two precisions.
+     * */
+    private static void assertAgree(Distance distance) {
+        INDArray expected = predict(distance, Precision.DOUBLE);
+        INDArray actual = predict(distance, Precision.FLOAT);
+
+        int disagreements = 0;
+        for (int i = 0; i < TEST; i++)
+            if (expected.getInt(i) != actual.getInt(i))
+                disagreements++;
+        assertTrue(disagreements <= TEST * MAX_DISAGREEMENT,
+                disagreements + " of " + TEST + " predictions differ between double and single precision");
+    }
+
+    /**
+     * Trains a classifier in a precision and predicts the test samples.
+     * */
+    private static INDArray predict(Distance distance, Precision precision) {
+        SupervisedEOPF opf = new SupervisedEOPF(distance);
+        opf.setPrecision(precision);
+        opf.fit(xTrain, yTrain);
+        return opf.predict(xTest);
+    }
+
+    // samples of the training and test sets
+    private static final int TRAIN = 400;
+    private static final int TEST = 200;
+
+    // fraction of the test samples allowed to be predicted differently
+    private static final double MAX_DISAGREEMENT = 0.01;
+
+    private static INDArray xTrain, yTrain, xTest;
+}